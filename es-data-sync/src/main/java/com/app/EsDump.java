@@ -1,10 +1,18 @@
 package com.app;
 
 import com.app.core.DataSyncProcessor;
+import com.app.core.SyncDaemon;
 import com.app.client.impl.ElasticsearchClientBuilder;
+import com.app.model.DaemonOption;
+import com.app.model.SourceClusterOption;
+import com.app.model.SyncOptions;
+import com.app.model.TargetClusterOption;
 import lombok.extern.slf4j.Slf4j;
 import org.elasticsearch.client.RestHighLevelClient;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @Author miaoyoulin
  * @ClassName EsDump
@@ -15,6 +23,11 @@ import org.elasticsearch.client.RestHighLevelClient;
 @Slf4j
 public class EsDump {
 
+    /**
+     * 以守护进程模式启动的参数,通过 HTTP 接口提交同步任务
+     */
+    private static final String DAEMON_ARG = "--daemon";
+
     /**
      * 数据迁移步骤
      * 1、初始化输入和输出客户端，将不存在的索引先创建，将需要同步的索引的数据
@@ -33,6 +46,11 @@ public class EsDump {
      * @throws Exception
      */
     public static void main(String[] args) throws Exception {
+        if(args.length > 0 && DAEMON_ARG.equals(args[0])){
+            //守护进程模式,第二个参数为守护进程配置文件路径,可选
+            new SyncDaemon(DaemonOption.load(args.length > 1 ? args[1] : null)).start();
+            return;
+        }
         //数据源es配置
         String host1 = args[0];
         String username1 = args[1];
@@ -61,13 +79,32 @@ public class EsDump {
         //如果 isCustomOutputIndex = true，即自定义输出索引，那么自定义索引数组长度必须是偶数，数组值组成形式为 [inputIndex1,outputIndex1, inputIndex2,outputIndex12, inputIndex3,outputIndex3],输入索引和输出索引一一对应
         Boolean isCustomOutputIndex = Boolean.parseBoolean(args[12]);
 
+        //扩展配置文件路径,可选参数,json格式,例如索引的查询条件和_source过滤配置
+        SyncOptions syncOptions = args.length > 13 ? SyncOptions.load(args[13]) : new SyncOptions();
+
         long startTime = System.currentTimeMillis();
         //构建es输入客户端
-        RestHighLevelClient inputClient = new ElasticsearchClientBuilder(username1, password1, host1, port1).buildClient();
+        ElasticsearchClientBuilder inputClientBuilder = new ElasticsearchClientBuilder(username1, password1, host1, port1, syncOptions.getInputClientOptions());
+        RestHighLevelClient inputClient = inputClientBuilder.buildClient();
         //构建es输出客户端
-        RestHighLevelClient outputClient = new ElasticsearchClientBuilder(username2, password2, host2, port2).buildClient();
+        ElasticsearchClientBuilder outputClientBuilder = new ElasticsearchClientBuilder(username2, password2, host2, port2, syncOptions.getOutputClientOptions());
+        RestHighLevelClient outputClient = outputClientBuilder.buildClient();
         //构建数据迁移任务处理器
-        DataSyncProcessor dataSyncProcessor = DataSyncProcessor.buildDataSyncProcessor(inputClient, outputClient, indexArray, dequeSize, singleTransferSize, isCustomOutputIndex,dequeListenerTimeout);
+        DataSyncProcessor dataSyncProcessor = DataSyncProcessor.buildDataSyncProcessor(inputClient, outputClient, indexArray, dequeSize, singleTransferSize, isCustomOutputIndex,dequeListenerTimeout,syncOptions);
+        //额外的数据源,多个集群的数据汇聚到同一个目标集群
+        List<ElasticsearchClientBuilder> sourceClientBuilders = new ArrayList<>(syncOptions.getSources().size());
+        for (SourceClusterOption sourceOption : syncOptions.getSources()) {
+            ElasticsearchClientBuilder sourceClientBuilder = new ElasticsearchClientBuilder(sourceOption.getUsername(), sourceOption.getPassword(), sourceOption.getHost(), sourceOption.getPort(), sourceOption.getClientOptions());
+            dataSyncProcessor.addSource(sourceOption.getName(), sourceClientBuilder.buildClient(), sourceOption.getIndices().split(","), sourceOption.getReaderThreads());
+            sourceClientBuilders.add(sourceClientBuilder);
+        }
+        //额外的目标集群,数据读取一次后同时写入多个目标集群
+        List<ElasticsearchClientBuilder> targetClientBuilders = new ArrayList<>(syncOptions.getTargets().size());
+        for (TargetClusterOption targetOption : syncOptions.getTargets()) {
+            ElasticsearchClientBuilder targetClientBuilder = new ElasticsearchClientBuilder(targetOption.getUsername(), targetOption.getPassword(), targetOption.getHost(), targetOption.getPort(), targetOption.getClientOptions());
+            dataSyncProcessor.addTarget(targetOption.getName(), targetClientBuilder.buildClient(), targetOption.getMaxInFlightBulks());
+            targetClientBuilders.add(targetClientBuilder);
+        }
         try {
             //初始化
             dataSyncProcessor.init();
@@ -82,5 +119,12 @@ public class EsDump {
         }
         long endTime = System.currentTimeMillis();
         log.info("数据迁移任务结束,耗时[{}]ms, [{}]s", (endTime - startTime), (endTime - startTime) / 1000);
+        log.info("数据源es网络传输: {}; 目标es网络传输: {}", inputClientBuilder.getTrafficStats(), outputClientBuilder.getTrafficStats());
+        for (int i = 0; i < sourceClientBuilders.size(); i++) {
+            log.info("数据源[{}]es网络传输: {}", syncOptions.getSources().get(i).getName(), sourceClientBuilders.get(i).getTrafficStats());
+        }
+        for (int i = 0; i < targetClientBuilders.size(); i++) {
+            log.info("目标集群[{}]es网络传输: {}", syncOptions.getTargets().get(i).getName(), targetClientBuilders.get(i).getTrafficStats());
+        }
     }
 }
@@ -0,0 +1,179 @@
+package com.app.client.impl;
+
+import com.app.model.TrafficStats;
+import org.apache.http.nio.reactor.IOSession;
+import org.apache.http.nio.reactor.SessionBufferStatus;
+import org.apache.http.nio.reactor.SocketAccessor;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ByteChannel;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName CountingIOSession
+ * @Description IOSession包装类,统计通过socket通道读写的字节数,其余方法全部委托给原始session
+ * @Date 2026/10/19 11:35
+ * @Version 1.0
+ **/
+class CountingIOSession implements IOSession, SocketAccessor {
+
+    private final IOSession session;
+
+    private final ByteChannel channel;
+
+    CountingIOSession(IOSession session, TrafficStats trafficStats) {
+        this.session = session;
+        this.channel = new CountingByteChannel(session.channel(), trafficStats);
+    }
+
+    @Override
+    public ByteChannel channel() {
+        return channel;
+    }
+
+    @Override
+    public SocketAddress getRemoteAddress() {
+        return session.getRemoteAddress();
+    }
+
+    @Override
+    public SocketAddress getLocalAddress() {
+        return session.getLocalAddress();
+    }
+
+    @Override
+    public int getEventMask() {
+        return session.getEventMask();
+    }
+
+    @Override
+    public void setEventMask(int ops) {
+        session.setEventMask(ops);
+    }
+
+    @Override
+    public void setEvent(int op) {
+        session.setEvent(op);
+    }
+
+    @Override
+    public void clearEvent(int op) {
+        session.clearEvent(op);
+    }
+
+    @Override
+    public void close() {
+        session.close();
+    }
+
+    @Override
+    public void shutdown() {
+        session.shutdown();
+    }
+
+    @Override
+    public int getStatus() {
+        return session.getStatus();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return session.isClosed();
+    }
+
+    @Override
+    public int getSocketTimeout() {
+        return session.getSocketTimeout();
+    }
+
+    @Override
+    public void setSocketTimeout(int timeout) {
+        session.setSocketTimeout(timeout);
+    }
+
+    @Override
+    public void setBufferStatus(SessionBufferStatus status) {
+        session.setBufferStatus(status);
+    }
+
+    @Override
+    public boolean hasBufferedInput() {
+        return session.hasBufferedInput();
+    }
+
+    @Override
+    public boolean hasBufferedOutput() {
+        return session.hasBufferedOutput();
+    }
+
+    @Override
+    public void setAttribute(String name, Object obj) {
+        session.setAttribute(name, obj);
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return session.getAttribute(name);
+    }
+
+    @Override
+    public Object removeAttribute(String name) {
+        return session.removeAttribute(name);
+    }
+
+    @Override
+    public Socket getSocket() {
+        return session instanceof SocketAccessor ? ((SocketAccessor) session).getSocket() : null;
+    }
+
+    @Override
+    public String toString() {
+        return session.toString();
+    }
+
+    /**
+     * 统计读写字节数的通道
+     */
+    private static class CountingByteChannel implements ByteChannel {
+
+        private final ByteChannel channel;
+
+        private final TrafficStats trafficStats;
+
+        private CountingByteChannel(ByteChannel channel, TrafficStats trafficStats) {
+            this.channel = channel;
+            this.trafficStats = trafficStats;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            int n = channel.read(dst);
+            if(n > 0){
+                trafficStats.receivedIncr(n);
+            }
+            return n;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int n = channel.write(src);
+            if(n > 0){
+                trafficStats.sentIncr(n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
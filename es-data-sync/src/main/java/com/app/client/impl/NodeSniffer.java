@@ -0,0 +1,161 @@
+package com.app.client.impl;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpHost;
+import org.elasticsearch.client.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName NodeSniffer
+ * @Description 集群节点嗅探,定时从 /_nodes/http 获取可用的http节点并刷新到客户端,请求在多个节点间轮询
+ * 节点请求失败时会立即触发一次嗅探,以便尽快剔除下线的节点
+ * @Date 2026/10/19 14:10
+ * @Version 1.0
+ **/
+@Slf4j
+class NodeSniffer extends RestClient.FailureListener {
+
+    /**
+     * 协议
+     */
+    private final String scheme;
+
+    /**
+     * 嗅探间隔,单位秒
+     */
+    private final long intervalSeconds;
+
+    /**
+     * 定时任务线程
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 是否有正在执行的失败后嗅探
+     */
+    private final AtomicBoolean sniffOnFailureRunning = new AtomicBoolean(false);
+
+    /**
+     * 低级别客户端,客户端构建完成后设置
+     */
+    private volatile RestClient restClient;
+
+    NodeSniffer(String scheme, long intervalSeconds) {
+        this.scheme = scheme;
+        this.intervalSeconds = intervalSeconds;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("es-node-sniffer-%d").setDaemon(true).build());
+    }
+
+    /**
+     * 开始定时嗅探
+     * @param restClient 低级别客户端
+     */
+    void start(RestClient restClient) {
+        this.restClient = restClient;
+        this.scheduler.scheduleWithFixedDelay(this::sniff, 0L, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void onFailure(Node node) {
+        log.warn("es节点[{}]请求失败,触发节点嗅探", node.getHost());
+        if(restClient != null && sniffOnFailureRunning.compareAndSet(false, true)){
+            scheduler.execute(() -> {
+                try {
+                    sniff();
+                } finally {
+                    sniffOnFailureRunning.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * 嗅探一次集群节点,失败时保留原有节点
+     */
+    private void sniff() {
+        if(restClient.isRunning() == false){
+            //客户端已关闭,停止嗅探
+            scheduler.shutdown();
+            return;
+        }
+        try {
+            List<Node> nodeList = readHttpNodes();
+            if(nodeList.isEmpty()){
+                log.warn("未嗅探到可用的es节点,继续使用原有节点:{}", restClient.getNodes());
+                return;
+            }
+            restClient.setNodes(nodeList);
+            log.debug("es节点嗅探完成,可用节点数:[{}]", nodeList.size());
+        }catch (Exception e){
+            log.warn("es节点嗅探失败,继续使用原有节点. errorMsg:" + e.getMessage());
+        }
+    }
+
+    /**
+     * 读取集群中开启了http的节点,跳过专用主节点
+     * @return 节点集合
+     * @throws Exception
+     */
+    private List<Node> readHttpNodes() throws Exception {
+        Response response = restClient.performRequest(new Request("GET", "/_nodes/http"));
+        JSONObject nodes = JSONObject.parseObject(IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8)).getJSONObject("nodes");
+        List<Node> nodeList = new ArrayList<>(nodes.size());
+        for (Map.Entry<String, Object> entry : nodes.entrySet()) {
+            JSONObject node = (JSONObject) entry.getValue();
+            JSONObject http = node.getJSONObject("http");
+            if(http == null || isDedicatedMaster(node.getJSONArray("roles"))){
+                continue;
+            }
+            nodeList.add(new Node(toHttpHost(http.getString("publish_address"))));
+        }
+        return nodeList;
+    }
+
+    /**
+     * 是否为专用主节点,专用主节点不处理读写请求
+     * @param roles 节点角色
+     * @return true - 是，false - 否
+     */
+    private static boolean isDedicatedMaster(JSONArray roles){
+        if(roles == null || roles.isEmpty()){
+            //仅协调节点
+            return false;
+        }
+        for (Object role : roles) {
+            String roleName = role.toString();
+            if(roleName.startsWith("data") || "ingest".equals(roleName)){
+                return false;
+            }
+        }
+        return roles.contains("master");
+    }
+
+    /**
+     * 解析 publish_address,格式可能为 ip:port 或 hostname/ip:port,有hostname时优先使用hostname
+     * @param publishAddress 发布地址
+     * @return HttpHost
+     */
+    private HttpHost toHttpHost(String publishAddress){
+        int index = publishAddress.indexOf('/');
+        if(index > 0){
+            String hostName = publishAddress.substring(0, index);
+            String port = publishAddress.substring(publishAddress.lastIndexOf(':') + 1);
+            return new HttpHost(hostName, Integer.parseInt(port), scheme);
+        }
+        String address = index == 0 ? publishAddress.substring(1) : publishAddress;
+        return HttpHost.create(scheme + "://" + address);
+    }
+}
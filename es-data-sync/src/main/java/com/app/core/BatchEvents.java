@@ -0,0 +1,137 @@
+package com.app.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName BatchEvents
+ * @Description 批次各阶段的 JFR 事件,每个阶段一种事件类型,事件的持续时间即该阶段的耗时
+ * 只能通过 BatchTracer 使用,jdk不支持JFR时不会加载本类
+ * @Date 2026/10/19 15:17
+ * @Version 1.0
+ **/
+final class BatchEvents {
+
+    private BatchEvents() {
+    }
+
+    static BatchTracer.Trace begin(BatchTracer.Stage stage){
+        BatchEvent event;
+        switch (stage){
+            case READ:
+                event = new ReadEvent();
+                break;
+            case ENQUEUE_WAIT:
+                event = new EnqueueWaitEvent();
+                break;
+            case DEQUEUE:
+                event = new DequeueEvent();
+                break;
+            case DISPATCH:
+                event = new DispatchEvent();
+                break;
+            case SERIALIZE:
+                event = new SerializeEvent();
+                break;
+            case BULK:
+                event = new BulkEvent();
+                break;
+            case RETRY:
+                event = new RetryEvent();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown stage [" + stage + "]");
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * 所有批次事件的公共字段,不记录调用栈以降低开销
+     */
+    @Category("es-dump")
+    @StackTrace(false)
+    abstract static class BatchEvent extends Event implements BatchTracer.Trace {
+
+        @Label("Index")
+        @Description("索引任务名称或目标索引名称")
+        String index;
+
+        @Label("Slice")
+        @Description("切片或分区")
+        String slice;
+
+        @Label("Target")
+        @Description("目标集群名称")
+        String target;
+
+        @Label("Docs")
+        int docs;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        @Override
+        public void finish(String index, String slice, String target, int docs, long bytes) {
+            this.end();
+            if(this.shouldCommit() == false){
+                return;
+            }
+            this.index = index;
+            this.slice = slice;
+            this.target = target;
+            this.docs = docs;
+            this.bytes = bytes;
+            this.commit();
+        }
+    }
+
+    @Name("es.dump.Read")
+    @Label("Read")
+    @Description("从数据源读取一页数据")
+    static class ReadEvent extends BatchEvent {
+    }
+
+    @Name("es.dump.EnqueueWait")
+    @Label("Enqueue Wait")
+    @Description("队列已满时读取任务等待放入队列")
+    static class EnqueueWaitEvent extends BatchEvent {
+    }
+
+    @Name("es.dump.Dequeue")
+    @Label("Dequeue")
+    @Description("队列为空时队列监听器等待取出批次")
+    static class DequeueEvent extends BatchEvent {
+    }
+
+    @Name("es.dump.Dispatch")
+    @Label("Dispatch")
+    @Description("队列监听器等待写入许可并提交写出任务")
+    static class DispatchEvent extends BatchEvent {
+    }
+
+    @Name("es.dump.Serialize")
+    @Label("Serialize")
+    @Description("生成批量写入的请求体")
+    static class SerializeEvent extends BatchEvent {
+    }
+
+    @Name("es.dump.Bulk")
+    @Label("Bulk")
+    @Description("批量写入请求")
+    static class BulkEvent extends BatchEvent {
+    }
+
+    @Name("es.dump.Retry")
+    @Label("Retry")
+    @Description("写入失败后等待重试")
+    static class RetryEvent extends BatchEvent {
+    }
+}
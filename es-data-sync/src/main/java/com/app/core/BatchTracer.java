@@ -0,0 +1,93 @@
+package com.app.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName BatchTracer
+ * @Description 批次各阶段耗时的追踪入口,当前jdk支持 Java Flight Recorder 时每个阶段提交一个 JFR 事件,否则不做任何处理
+ * 事件只在开启 JFR 录制时写入,例如 -XX:StartFlightRecording=filename=es-dump.jfr,settings=profile,
+ * 录制文件中 es-dump 分类下按阶段统计耗时,即可定位吞吐下降时的瓶颈阶段
+ * jdk8u262 以下没有 jdk.jfr,事件类只在检测通过后才会加载
+ * @Date 2026/10/19 15:17
+ * @Version 1.0
+ **/
+@Slf4j
+public final class BatchTracer {
+
+    /**
+     * 批次的处理阶段
+     */
+    public enum Stage {
+        /**
+         * 从数据源读取一页数据
+         */
+        READ,
+        /**
+         * 队列已满时读取任务等待放入队列,耗时长说明写出是瓶颈
+         */
+        ENQUEUE_WAIT,
+        /**
+         * 队列为空时队列监听器等待取出批次,耗时长说明读取是瓶颈
+         */
+        DEQUEUE,
+        /**
+         * 队列监听器取出批次后等待写入许可并提交写出任务
+         */
+        DISPATCH,
+        /**
+         * 生成批量写入的请求体
+         */
+        SERIALIZE,
+        /**
+         * 批量写入请求
+         */
+        BULK,
+        /**
+         * 写入失败后等待重试
+         */
+        RETRY
+    }
+
+    /**
+     * 一个阶段的追踪,开始时创建,阶段结束时调用 finish
+     */
+    public interface Trace {
+
+        /**
+         * 结束追踪
+         * @param index 索引任务名称或目标索引名称
+         * @param slice 切片或分区,没有时为空
+         * @param target 目标集群名称,读取阶段为空
+         * @param docs 文档数
+         * @param bytes _source字节数
+         */
+        void finish(String index, String slice, String target, int docs, long bytes);
+    }
+
+    private static final Trace NOOP = (index, slice, target, docs, bytes) -> {};
+
+    private static final boolean AVAILABLE = detect();
+
+    private BatchTracer() {
+    }
+
+    /**
+     * 开始追踪一个阶段
+     * @param stage 阶段
+     * @return 追踪,jdk不支持JFR时返回空实现
+     */
+    public static Trace begin(Stage stage){
+        return AVAILABLE ? BatchEvents.begin(stage) : NOOP;
+    }
+
+    private static boolean detect(){
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        }catch (ClassNotFoundException | LinkageError e){
+            log.info("当前jdk版本[{}]不支持 Java Flight Recorder,不记录批次事件", System.getProperty("java.version"));
+            return false;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.app.core;
+
+import com.app.model.DataTotalCount;
+import com.app.model.DataWrapperPool;
+import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.RateLimitOption;
+import com.app.model.SyncSource;
+import com.app.model.SyncTarget;
+import com.app.service.ElasticsearchService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName CapacityPlanner
+ * @Description 试运行容量评估,不迁移数据
+ * 从每个索引中抽样读取几页数据,估算每个文档的字节数和单个读取任务的速率,
+ * 再将抽样数据写入目标集群的临时索引估算单个写入任务的速率,最后打印预计耗时和推荐的参数
+ * @Date 2026/10/19 14:44
+ * @Version 1.0
+ **/
+@Slf4j
+public class CapacityPlanner {
+
+    /**
+     * 推荐的单次bulk字节数,es官方建议5~15MB
+     */
+    private static final long RECOMMENDED_BULK_BYTES = 10L * 1024 * 1024;
+
+    private static final int MIN_BULK_DOCS = 100;
+
+    private static final int MAX_BULK_DOCS = 10000;
+
+    /**
+     * 临时索引名称前缀
+     */
+    private static final String PLAN_INDEX_PREFIX = "es-dump-plan-";
+
+    private final DataSyncProcessor.DataSyncConfig config;
+
+    public CapacityPlanner(DataSyncProcessor.DataSyncConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 评估所有索引并打印结果
+     */
+    public void plan() {
+        int samplePages = Math.max(this.config.getSyncOptions().getPlanSamplePages(), 1);
+        log.info("试运行容量评估开始! 每个索引抽样读取[{}]页,每页[{}]条", samplePages, this.config.getSingleTransferSize());
+        double totalSeconds = 0D;
+        for (Map.Entry<String, DataTotalCount> entry : this.config.getTotalCountMap().entrySet()) {
+            DataTotalCount totalCount = entry.getValue();
+            //统计key的形式为 数据源名称/索引任务
+            String indexTask = entry.getKey().substring(totalCount.getSourceName().length() + 1);
+            try {
+                totalSeconds += this.planIndex(totalCount, indexTask, samplePages);
+            }catch (Exception e){
+                log.error("索引[" + totalCount.getInputIndexName() + "]容量评估异常:" + e.getMessage(), e);
+            }
+        }
+        log.info("试运行容量评估完成! 按推荐参数依次执行所有索引的预计耗时:[{}]", formatSeconds(totalSeconds));
+    }
+
+    /**
+     * 评估单个索引
+     * @param totalCount 索引统计
+     * @param indexTask 索引任务名称
+     * @param samplePages 抽样页数
+     * @return 预计耗时,单位秒
+     */
+    private double planIndex(DataTotalCount totalCount, String indexTask, int samplePages) throws Exception {
+        ElasticsearchService service = this.config.getElasticsearchService();
+        SyncSource source = this.findSource(totalCount.getSourceName());
+        //1、抽样读取
+        List<ElasticsearchDataWrapper> samples = new ArrayList<>(samplePages);
+        List<String> scrollIds = new ArrayList<>(samplePages);
+        long sampleDocs = 0L;
+        long sampleBytes = 0L;
+        long start = System.nanoTime();
+        ElasticsearchDataWrapper dataWrapper = service.scrollBefore(source.getClient(), indexTask, this.config.getSingleTransferSize(), this.config.getSyncOptions().getIndexQueryOption(totalCount.getInputIndexName()));
+        while (dataWrapper != null && dataWrapper.isEmpty() == false){
+            samples.add(dataWrapper);
+            sampleDocs += dataWrapper.size();
+            sampleBytes += dataWrapper.getByteSize();
+            scrollIds.add(dataWrapper.getScrollId());
+            if(samples.size() >= samplePages){
+                break;
+            }
+            dataWrapper = service.scrollSearch(source.getClient(), indexTask, dataWrapper.getScrollId());
+        }
+        double readSeconds = (System.nanoTime() - start) / 1e9;
+        if(scrollIds.isEmpty() == false){
+            service.closeScroll(source.getClient(), scrollIds);
+        }
+        if(sampleDocs == 0L){
+            log.warn("索引[{}]没有抽样到数据,忽略评估", indexTask);
+            return 0D;
+        }
+        double readRate = sampleDocs / Math.max(readSeconds, 0.001D);
+        long bytesPerDoc = Math.max(sampleBytes / sampleDocs, 1L);
+        //2、抽样数据写入每个目标集群的临时索引,取最慢的目标集群
+        double writeRate = Double.MAX_VALUE;
+        String mapping = service.getIndexMapping(source.getClient(), totalCount.getInputIndexName());
+        for (SyncTarget target : this.config.getTargets()) {
+            String planIndex = PLAN_INDEX_PREFIX + System.currentTimeMillis();
+            service.createIndex(target.getClient(), planIndex, mapping);
+            try {
+                start = System.nanoTime();
+                for (ElasticsearchDataWrapper sample : samples) {
+                    service.bulkSave(target.getClient(), sample, planIndex);
+                }
+                double writeSeconds = (System.nanoTime() - start) / 1e9;
+                double targetWriteRate = sampleDocs / Math.max(writeSeconds, 0.001D);
+                log.info("索引[{}]目标集群[{}]单个写入任务的速率:[{}/s]", indexTask, target.getName(), Math.round(targetWriteRate));
+                writeRate = Math.min(writeRate, targetWriteRate);
+            }finally {
+                service.deleteIndex(target.getClient(), planIndex);
+            }
+        }
+        DataWrapperPool pool = this.config.getDataWrapperPool();
+        if(pool != null){
+            samples.forEach(pool::release);
+        }
+        //3、推荐参数: 切片数与数据源主分片数一致,写入并发数保证写入速率跟得上读取速率
+        int slices = service.getNumberOfShards(source.getClient(), totalCount.getInputIndexName());
+        int writers = (int) Math.max(Math.ceil(readRate * slices / writeRate), 1D);
+        long bulkDocs = Math.min(Math.max(RECOMMENDED_BULK_BYTES / bytesPerDoc, MIN_BULK_DOCS), MAX_BULK_DOCS);
+        double throughput = this.applyRateLimit(Math.min(readRate * slices, writeRate * writers));
+        double seconds = totalCount.getExpectedTotalCount() / throughput;
+        log.info("索引[{}]评估结果: 数据量:[{}], 平均文档大小:[{}B], 预计数据总量:[{}MB], 单个读取任务速率:[{}/s], 单个写入任务速率:[{}/s], 推荐切片数:[{}], 推荐单次传输数量:[{}], 推荐写入并发数:[{}], 预计耗时:[{}]",
+                indexTask, totalCount.getExpectedTotalCount(), bytesPerDoc, totalCount.getExpectedTotalCount() * bytesPerDoc / 1024 / 1024,
+                Math.round(readRate), Math.round(writeRate), slices, bulkDocs, writers, formatSeconds(seconds));
+        return seconds;
+    }
+
+    /**
+     * 配置了全局限速时,速率不超过限速值
+     */
+    private double applyRateLimit(double docsPerSecond){
+        RateLimitOption rateLimit = this.config.getSyncOptions().getRateLimit();
+        if(rateLimit == null){
+            return docsPerSecond;
+        }
+        if(rateLimit.getReadDocsPerSecond() != null && rateLimit.getReadDocsPerSecond() > 0){
+            docsPerSecond = Math.min(docsPerSecond, rateLimit.getReadDocsPerSecond());
+        }
+        if(rateLimit.getWriteDocsPerSecond() != null && rateLimit.getWriteDocsPerSecond() > 0){
+            docsPerSecond = Math.min(docsPerSecond, rateLimit.getWriteDocsPerSecond());
+        }
+        return docsPerSecond;
+    }
+
+    private SyncSource findSource(String sourceName){
+        for (SyncSource source : this.config.getSources()) {
+            if(source.getName().equals(sourceName)){
+                return source;
+            }
+        }
+        throw new IllegalStateException("数据源[" + sourceName + "]不存在");
+    }
+
+    private static String formatSeconds(double seconds){
+        long total = (long) Math.ceil(seconds);
+        return String.format("%dh%02dm%02ds", total / 3600, total % 3600 / 60, total % 60);
+    }
+}
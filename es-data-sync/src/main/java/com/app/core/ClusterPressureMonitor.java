@@ -0,0 +1,155 @@
+package com.app.core;
+
+import com.alibaba.fastjson.JSONObject;
+import com.app.model.PressureOption;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName ClusterPressureMonitor
+ * @Description 集群压力监控,定时读取 _cluster/health 和 _nodes/stats/thread_pool
+ * 集群为red或线程池队列过长时暂停,集群为yellow、队列变长或出现拒绝时降速,读写任务每次请求前调用 await()
+ * @Date 2026/10/19 18:10
+ * @Version 1.0
+ **/
+@Slf4j
+public class ClusterPressureMonitor {
+
+    /**
+     * 数据源监控的线程池
+     */
+    public static final String SEARCH_THREAD_POOL = "search";
+
+    /**
+     * 目标集群监控的线程池
+     */
+    public static final String WRITE_THREAD_POOL = "write";
+
+    /**
+     * 集群名称,用于日志
+     */
+    private final String clusterName;
+
+    private final RestClient client;
+
+    /**
+     * 监控的线程池名称
+     */
+    private final String threadPoolName;
+
+    private final PressureOption option;
+
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 上一次统计的拒绝数,用于计算两次检查之间新增的拒绝数
+     */
+    private long lastRejected = -1L;
+
+    /**
+     * 是否暂停
+     */
+    private volatile boolean paused = false;
+
+    /**
+     * 是否降速
+     */
+    private volatile boolean slowed = false;
+
+    /**
+     * 构造方法
+     * @param clusterName 集群名称
+     * @param client 低级别客户端
+     * @param threadPoolName 监控的线程池名称
+     * @param option 压力感知配置
+     */
+    public ClusterPressureMonitor(String clusterName, RestClient client, String threadPoolName, PressureOption option) {
+        this.clusterName = clusterName;
+        this.client = client;
+        this.threadPoolName = threadPoolName;
+        this.option = option;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("es-dump-pressure-" + clusterName + "-%d").setDaemon(true).build());
+    }
+
+    /**
+     * 开始定时检查
+     */
+    public void start(){
+        this.scheduler.scheduleWithFixedDelay(this::poll, 0L, option.getPollInterval(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止检查,同时解除暂停
+     */
+    public void stop(){
+        this.scheduler.shutdownNow();
+        this.paused = false;
+        this.slowed = false;
+    }
+
+    /**
+     * 请求前调用,集群压力大时在此等待,暂停超过最长暂停时间后按降速继续
+     * @throws InterruptedException
+     */
+    public void await() throws InterruptedException {
+        long pausedSeconds = 0L;
+        while (paused && pausedSeconds < option.getMaxPauseSeconds()){
+            TimeUnit.SECONDS.sleep(1L);
+            pausedSeconds++;
+        }
+        if(slowed || paused){
+            TimeUnit.MILLISECONDS.sleep(option.getSlowDelayMillis());
+        }
+    }
+
+    /**
+     * 检查一次集群压力,检查失败时保持上一次的状态
+     */
+    private void poll(){
+        try {
+            String status = this.get("/_cluster/health?filter_path=status").getString("status");
+            JSONObject nodes = this.get("/_nodes/stats/thread_pool?filter_path=nodes.*.thread_pool." + threadPoolName).getJSONObject("nodes");
+            int maxQueue = 0;
+            long rejected = 0L;
+            if(nodes != null){
+                for (Map.Entry<String, Object> entry : nodes.entrySet()) {
+                    JSONObject threadPool = ((JSONObject) entry.getValue()).getJSONObject("thread_pool").getJSONObject(threadPoolName);
+                    maxQueue = Math.max(maxQueue, threadPool.getIntValue("queue"));
+                    rejected += threadPool.getLongValue("rejected");
+                }
+            }
+            long newRejected = lastRejected < 0 ? 0L : Math.max(0L, rejected - lastRejected);
+            lastRejected = rejected;
+
+            boolean pause = "red".equals(status)
+                    || ("yellow".equals(status) && option.getPauseOnYellow())
+                    || maxQueue >= option.getQueuePauseThreshold();
+            boolean slow = pause == false && ("yellow".equals(status) || maxQueue >= option.getQueueSlowThreshold() || newRejected > 0);
+            if(pause != paused || slow != slowed){
+                log.warn("集群[{}]压力状态变化: status=[{}], {}线程池最大队列长度=[{}], 新增拒绝数=[{}] -> {}",
+                        clusterName, status, threadPoolName, maxQueue, newRejected, pause ? "暂停" : (slow ? "降速" : "恢复正常"));
+            }
+            this.paused = pause;
+            this.slowed = slow;
+        }catch (Exception e){
+            log.warn("集群[{}]压力检查失败,保持当前状态. errorMsg:{}", clusterName, e.getMessage());
+        }
+    }
+
+    private JSONObject get(String endpoint) throws Exception {
+        Response response = client.performRequest(new Request("GET", endpoint));
+        JSONObject result = JSONObject.parseObject(IOUtils.toString(response.getEntity().getContent(), StandardCharsets.UTF_8));
+        return result != null ? result : new JSONObject();
+    }
+}
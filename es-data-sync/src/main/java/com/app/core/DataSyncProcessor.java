@@ -2,16 +2,33 @@ package com.app.core;
 
 import com.app.service.ElasticsearchService;
 import com.app.model.ConstantModel;
+import com.app.model.DataTotalCount;
+import com.app.model.DataWrapperPool;
+import com.app.model.DistributedOption;
 import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.IndexQueryOption;
+import com.app.model.PressureOption;
+import com.app.model.SyncOptions;
+import com.app.model.SyncSource;
+import com.app.model.SyncTarget;
+import com.app.model.WorkUnit;
 import com.app.task.DataQueueListener;
+import com.app.task.RangePartitionTask;
 import com.app.task.ScrollSearchTask;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchStatusException;
 import org.elasticsearch.client.RestHighLevelClient;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.search.slice.SliceBuilder;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Author miaoyoulin
@@ -41,41 +58,151 @@ public class DataSyncProcessor {
      * @return
      */
     public static DataSyncProcessor buildDataSyncProcessor(RestHighLevelClient inputClient, RestHighLevelClient outputClient, String[] indexArray, Integer dequeSize, Integer singleTransferSize, Boolean isCustomOutputIndex, Long dequeListenerTimeout){
+        return buildDataSyncProcessor(inputClient, outputClient, indexArray, dequeSize, singleTransferSize, isCustomOutputIndex, dequeListenerTimeout, new SyncOptions());
+    }
+
+    /**
+     * 构数据同步任务处理器
+     * @param inputClient es数据输入客户端
+     * @param outputClient es数据输出客户端
+     * @param indexArray 索引数组
+     * @param dequeSize 双端阻塞队列长度
+     * @param singleTransferSize 单次传输数量
+     * @param isCustomOutputIndex 是否自定义输出索引 true - 是，false - 否, 默认值为false
+     * @param dequeListenerTimeout 双端队列监听阻塞时长，单位秒
+     * @param syncOptions 扩展配置
+     * @return
+     */
+    public static DataSyncProcessor buildDataSyncProcessor(RestHighLevelClient inputClient, RestHighLevelClient outputClient, String[] indexArray, Integer dequeSize, Integer singleTransferSize, Boolean isCustomOutputIndex, Long dequeListenerTimeout, SyncOptions syncOptions){
         DataSyncProcessor.DataSyncConfig config = new DataSyncProcessor.DataSyncConfig(inputClient,outputClient,indexArray,dequeSize,singleTransferSize,isCustomOutputIndex,dequeListenerTimeout);
+        config.setSyncOptions(syncOptions);
+        //命令行参数中的数据源和目标集群使用扩展配置中的并发配置
+        config.sources.get(0).setReaderThreads(config.syncOptions.getReaderThreads());
+        config.targets.set(0, new SyncTarget(SyncTarget.DEFAULT_NAME, outputClient, config.syncOptions.getMaxInFlightBulks()));
         //构建任务处理对象
         return new DataSyncProcessor(config);
     }
 
 
 
+    /**
+     * 客户端是否由多个任务共用,共用时销毁任务不关闭客户端
+     */
+    private boolean sharedClients = false;
+
     private DataSyncProcessor(DataSyncProcessor.DataSyncConfig config){
         this.config = config;
     }
 
+    public DataSyncConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * 使用守护进程中多个任务共用的资源,需要在 init() 之前调用
+     * 共用的客户端在 destroy() 时不关闭,写入许可限制所有任务合计同时写入的批次数
+     * @param writePermits 共用的写入许可,为空时按本任务的配置创建
+     */
+    public void useSharedResources(Semaphore writePermits){
+        this.sharedClients = true;
+        this.config.writePermits = writePermits;
+    }
+
+    /**
+     * 添加一个数据源,与命令行参数中的数据源共用写出线程和队列,需要在 init() 之前调用
+     * @param name 数据源名称,不能重复
+     * @param client 数据源es客户端
+     * @param indexArray 需要迁移的索引
+     * @param readerThreads 同时读取的索引数,小于等于0时所有索引同时读取
+     */
+    public void addSource(String name, RestHighLevelClient client, String[] indexArray, Integer readerThreads){
+        for (SyncSource source : this.config.sources) {
+            if(source.getName().equals(name)){
+                throw new IllegalArgumentException("duplicate source name [" + name + "]");
+            }
+        }
+        this.config.sources.add(new SyncSource(name, client, indexArray, readerThreads));
+    }
+
+    /**
+     * 添加一个目标集群,每批数据读取一次后并行写入所有目标集群,需要在 init() 之前调用
+     * @param name 目标集群名称,不能重复
+     * @param client 目标es客户端
+     * @param maxInFlightBulks 同时写入的最大批次数,小于等于0时不限制
+     */
+    public void addTarget(String name, RestHighLevelClient client, Integer maxInFlightBulks){
+        for (SyncTarget target : this.config.targets) {
+            if(target.getName().equals(name)){
+                throw new IllegalArgumentException("duplicate target name [" + name + "]");
+            }
+        }
+        this.config.targets.add(new SyncTarget(name, client, maxInFlightBulks));
+    }
+
     /**
      * 数据迁移初始化
      */
     public void init() throws Exception {
         log.info("es数据同步资源初始化开始......");
-        //判断是否为自定义输出索引
-        List<String> indexList = null;
-        if(this.config.isCustomOutputIndex){
-            log.info("使用自定义索引方式初始化...");
-            indexList = this.customOutputIndex();
-        }else {
-            log.info("使用非自定义索引方式初始化...");
-            indexList = this.notCustomOutputIndex();
+        int indexTaskNum = 0;
+        //流式启动时,索引的检查、创建和统计在开始同步后执行,每个索引完成后立即开始迁移
+        this.config.streamingStart = this.config.syncOptions.getStreamingStart() && this.config.syncOptions.getDryRun() == false && this.config.singleTransferSize > 0
+                && this.config.syncOptions.getReindexOption().getEnabled() == false && this.config.syncOptions.getDistributedOption().getEnabled() == false;
+        //初始化目标索引路由,校验路由配置,索引初始化时需要判断索引是否路由
+        this.config.targetIndexRouter = new TargetIndexRouter(this.config);
+        if(this.config.targetIndexRouter.isEnabled() && this.config.syncOptions.getReindexOption().getEnabled()){
+            throw new IllegalArgumentException("index routing is not supported by server-side reindex");
         }
-
-        if(indexList != null && indexList.size() != this.config.indexArray.length){
-            //获取一个新索引数组
-            String[] newIndexArray = indexList.toArray(new String[indexList.size()]);
-            this.config.indexArray = newIndexArray;
+        for (SyncSource source : this.config.sources) {
+            //判断是否为自定义输出索引
+            log.info("数据源[{}]使用{}索引方式初始化...", source.getName(), this.config.isCustomOutputIndex ? "自定义" : "非自定义");
+            List<String> indexList = this.prepareIndexTasks(source);
+            if(this.config.syncOptions.getReindexOption().getEnabled()){
+                this.validateReindexSource(source, indexList);
+            }
+            if(this.config.streamingStart == false){
+                indexList = this.initIndexTasks(source, indexList);
+            }
+            source.setIndexArray(indexList.toArray(new String[indexList.size()]));
+            indexTaskNum += source.getIndexArray().length;
+            log.info("数据源[{}]需要迁移的索引有[{}]个,任务名为{}", source.getName(), source.getIndexArray().length, Arrays.toString(source.getIndexArray()));
         }
+        this.config.indexArray = this.config.sources.get(0).getIndexArray();
+        //初始化全局读写限速
+        this.config.throughputLimiter = new ThroughputLimiter(this.config.syncOptions.getRateLimit(), this.config.syncOptions.getRateLimitSchedules(), this.config.syncOptions.getRateLimitControlFile());
+        this.config.throughputLimiter.start();
+        //初始化集群压力监控
+        this.startPressureMonitors();
         //初始化索引线程池
-        ExecutorService executorService = this.config.buildExecutorService(this.config.indexArray.length);
+        if(this.config.syncOptions.getMaxConcurrentReaders() > 0){
+            this.config.readerPermits = new Semaphore(this.config.syncOptions.getMaxConcurrentReaders());
+        }
+        ExecutorService executorService = this.config.buildExecutorService(indexTaskNum);
+        //分页预读线程池,每个读取任务一个预读线程,不占用读写线程池
+        int prefetchDepth = Math.max(this.config.syncOptions.getPrefetchDepth(), 0);
+        if(prefetchDepth > 0){
+            this.config.prefetchExecutor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("es-dump-prefetch-%d").setDaemon(true).build());
+        }
+        //数据包装类对象池,保留队列中、写出中和预读中的批次数量
+        this.config.dataWrapperPool = new DataWrapperPool(this.config.blockingDeque.remainingCapacity() * 2 + indexTaskNum * (prefetchDepth + 1));
+        this.config.elasticsearchService.setDataWrapperPool(this.config.dataWrapperPool);
+        this.config.elasticsearchService.setPreserveVersion(this.config.syncOptions.getPreserveVersion());
+        this.config.elasticsearchService.setLowLevelBulk(this.config.syncOptions.getLowLevelBulk());
+        this.config.elasticsearchService.setStreamingSearch(this.config.syncOptions.getStreamingSearch());
+        XContentType wireFormat = XContentType.fromMediaTypeOrFormat(this.config.syncOptions.getWireFormat());
+        if(wireFormat != XContentType.JSON && wireFormat != XContentType.SMILE && wireFormat != XContentType.CBOR){
+            throw new IllegalArgumentException("unsupported wire format [" + this.config.syncOptions.getWireFormat() + "], only json, smile and cbor are supported");
+        }
+        if(wireFormat != XContentType.JSON && this.config.syncOptions.getStreamingSearch() == false){
+            //高级客户端的查询只使用json,配置的格式不会生效
+            throw new IllegalArgumentException("wire format [" + this.config.syncOptions.getWireFormat() + "] requires streamingSearch to be enabled");
+        }
+        this.config.elasticsearchService.setWireFormat(wireFormat);
+        if(this.config.syncOptions.getLongIdOption() != null){
+            this.config.elasticsearchService.setLongIdOption(this.config.syncOptions.getLongIdOption());
+        }
         this.config.executorService = executorService;
-        log.info("es数据迁移资源初始化完成! 开始准备迁移数据,迁移的索引有[{}]个,任务名为{}",this.config.indexArray.length, Arrays.toString(this.config.indexArray));
+        log.info("es数据迁移资源初始化完成! 开始准备迁移数据,数据源[{}]个,迁移的索引有[{}]个",this.config.sources.size(), indexTaskNum);
     }
 
 
@@ -87,45 +214,238 @@ public class DataSyncProcessor {
             log.info("设置单次的传输数量为[{}],本次只同步索引结构! 数据迁移任务结束!",this.config.singleTransferSize);
             return;
         }
-        log.info("es数据迁移任务开始执行! 任务数量:[{}]",this.config.indexArray.length);
+        if(this.config.syncOptions.getDryRun()){
+            //试运行,只评估不迁移
+            new CapacityPlanner(this.config).plan();
+            return;
+        }
+        //未完成的索引任务数,读取结束或初始化后不需要迁移时减1
+        for (SyncSource source : this.config.sources) {
+            this.config.pendingIndexTasks.addAndGet(source.getIndexArray().length);
+        }
+        log.info("es数据迁移任务开始执行! 任务数量:[{}]",this.config.pendingIndexTasks.get());
+        //定时打印同步进度汇总
+        if(this.config.syncOptions.getProgressInterval() > 0){
+            this.config.progressReporter = new ProgressReporter(this.config, this.config.syncOptions.getProgressInterval());
+            this.config.progressReporter.start();
+        }
+        String result;
+        if(this.config.syncOptions.getReindexOption().getEnabled()){
+            //服务端reindex,数据不经过本程序
+            result = new ReindexDelegator(this.config).run();
+            this.config.executorService.shutdown();
+        }else if(this.config.syncOptions.getDistributedOption().getEnabled()){
+            //多进程协作,只迁移本进程领取的工作单元
+            result = this.runDistributed();
+        }else {
+            result = this.runPipeline();
+        }
+        boolean multiSource = this.config.sources.size() > 1;
+        for (DataTotalCount totalCount : this.config.totalCountMap.values()) {
+            String sourcePrefix = multiSource ? "[" + totalCount.getSourceName() + "]" : "";
+            for (SyncTarget target : this.config.targets) {
+                //多个目标集群时,分别打印每个目标集群的写入数据量
+                String targetPrefix = this.config.targets.size() > 1 ? "[" + target.getName() + "]" : "";
+                if(this.config.isCustomOutputIndex){
+                    //自定义输出索引
+                    log.info("{}从数据源索引:[{}]中读取的数据量:[{}] -> {}往目标索引:[{}]中写入的数据量:[{}]",sourcePrefix,totalCount.getInputIndexName(),totalCount.getReadTotalCount(),targetPrefix,totalCount.getOutputIndexName(),totalCount.getWriteTotalCount(target.getName()));
+                }else {
+                    //非自定义输出索引
+                    log.info("{}索引名称为[{}]的同步任务,读取的数据量:[{}],{}写入的数据量:[{}]",sourcePrefix,totalCount.getInputIndexName(),totalCount.getReadTotalCount(),targetPrefix,totalCount.getWriteTotalCount(target.getName()));
+                }
+            }
+        }
+        long longIdTotalCount = this.config.elasticsearchService.getLongIdTotalCount();
+        if(longIdTotalCount > 0){
+            log.warn("id字段字节数超过最大值的文档数:[{}],处理方式:[{}]",longIdTotalCount,this.config.syncOptions.getLongIdOption().getStrategy());
+        }
+        if(this.config.isAborted()){
+            throw new IllegalStateException("es数据迁移任务已终止! " + this.config.getAbortReason());
+        }
+        log.info("es数据迁移任务执行完成! result = [{}]",result);
+    }
+
+    /**
+     * 客户端迁移,读取任务将数据放入队列,队列监听器将数据写出到目标集群
+     * @return 执行结果
+     */
+    private String runPipeline() throws Exception {
         //1、启动队列监听
         DataQueueListener dataQueueListener = new DataQueueListener(this.config);
         Future<String> submit = this.config.executorService.submit(dataQueueListener);
-        //2、启动读取数据任务
-        for (String indexTask : this.config.indexArray) {
-            ScrollSearchTask scrollSearchTask = new ScrollSearchTask(this.config, indexTask);
-            ///不实用searchAfter读取数据,海量数据时较慢
-            //SearchAfterTask searchAfterTask = new SearchAfterTask(this.config,indexTask);
-            this.config.executorService.execute(scrollSearchTask);
+        //2、启动读取数据任务,每个数据源按各自的读取并发数读取
+        for (SyncSource source : this.config.sources) {
+            if(this.config.streamingStart){
+                this.startStreamingReaders(source);
+            }else {
+                this.startReaders(source);
+            }
         }
         String result = submit.get();
         //监听器线程任务完成后,关闭线程池,因为不会给线程池添加新任务了
         this.config.executorService.shutdown();
         //等待所有写出线程任务结束才关闭线程池,最长阻塞时间60分钟
         this.config.executorService.awaitTermination(60L,TimeUnit.MINUTES);
-        for (int i = 0; i < this.config.totalCountArray.length;) {
-            if(this.config.isCustomOutputIndex){
-                //自定义输出索引
-                log.info("从数据源索引:[{}]中读取的数据量:[{}] -> 往目标索引:[{}]中写入的数据量:[{}]",this.config.totalCountArray[i++],this.config.totalCountArray[i++],this.config.totalCountArray[i++],this.config.totalCountArray[i++]);
-            }else {
-                //非自定义输出索引
-                log.info("索引名称为[{}]的同步任务,读取的数据量:[{}],写入的数据量:[{}]",this.config.totalCountArray[i++],this.config.totalCountArray[i++],this.config.totalCountArray[i++]);
+        return result;
+    }
+
+    /**
+     * 多进程协作迁移,每个索引按切片拆分为工作单元注册到任务状态文件中,
+     * 本进程的多个线程依次领取工作单元,以切片scroll方式读取,写出完成后标记为完成,
+     * 所有工作单元都结束(包括其他进程领取的)后结束
+     * @return 执行结果
+     */
+    private String runDistributed() throws Exception {
+        DistributedOption option = this.config.syncOptions.getDistributedOption();
+        String workerId = option.getWorkerId() != null && option.getWorkerId().isEmpty() == false ? option.getWorkerId() : ManagementFactory.getRuntimeMXBean().getName();
+        long leaseMillis = TimeUnit.SECONDS.toMillis(Math.max(option.getLeaseSeconds(), 3L));
+        JobLeaseStore store = new JobLeaseStore(new File(option.getStateFile()), leaseMillis, option.getMaxAttempts());
+        int added = store.register(this.buildWorkUnits(option));
+        log.info("多进程协作迁移,进程[{}],任务状态文件[{}],新注册的工作单元[{}]个,工作单元状态:{}",workerId,option.getStateFile(),added,store.countByStatus());
+        //领取线程结束前,队列监听器不结束
+        this.config.pendingIndexTasks.set(1);
+        Future<String> submit = this.config.executorService.submit(new DataQueueListener(this.config));
+        //执行中的工作单元,定时续约,租约被其他进程领取时停止读取
+        Map<String, ScrollSearchTask> runningUnits = new ConcurrentHashMap<>();
+        ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("es-dump-lease-%d").setDaemon(true).build());
+        heartbeat.scheduleAtFixedRate(() -> {
+            try {
+                for (String unitId : store.renew(workerId, new ArrayList<>(runningUnits.keySet()))) {
+                    ScrollSearchTask task = runningUnits.get(unitId);
+                    if(task != null){
+                        log.warn("工作单元[{}]的租约已被其他进程领取,停止读取",unitId);
+                        task.stop();
+                    }
+                }
+            }catch (Exception e){
+                log.warn("工作单元续约异常:{}",e.getMessage());
             }
+        }, leaseMillis / 3, leaseMillis / 3, TimeUnit.MILLISECONDS);
+        int threadNum = Math.max(option.getConcurrentUnits(), 1);
+        ExecutorService unitExecutor = Executors.newFixedThreadPool(threadNum, new ThreadFactoryBuilder().setNameFormat("es-dump-unit-%d").setDaemon(true).build());
+        for (int i = 0; i < threadNum; i++) {
+            unitExecutor.execute(() -> this.claimUnits(store, workerId, runningUnits, leaseMillis));
+        }
+        unitExecutor.shutdown();
+        try {
+            unitExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }finally {
+            heartbeat.shutdownNow();
+            this.config.pendingIndexTasks.decrementAndGet();
+        }
+        String result = submit.get();
+        this.config.executorService.shutdown();
+        this.config.executorService.awaitTermination(60L,TimeUnit.MINUTES);
+        log.info("多进程协作迁移,进程[{}]结束,工作单元状态:{}",workerId,store.countByStatus());
+        return result;
+    }
 
+    /**
+     * 拆分工作单元,每个索引的切片数默认与数据源索引的主分片数一致
+     */
+    private List<WorkUnit> buildWorkUnits(DistributedOption option) throws IOException {
+        List<WorkUnit> units = new ArrayList<>();
+        for (SyncSource source : this.config.sources) {
+            for (String indexTask : source.getIndexArray()) {
+                DataTotalCount totalCount = this.config.getTotalCount(source.getName(), indexTask);
+                if(totalCount == null){
+                    //初始化时判断为不需要迁移的索引
+                    continue;
+                }
+                int slices = option.getSlicesPerIndex() > 0 ? option.getSlicesPerIndex() : this.config.elasticsearchService.getNumberOfShards(source.getClient(), totalCount.getInputIndexName());
+                for (int i = 0; i < slices; i++) {
+                    units.add(new WorkUnit(source.getName(), indexTask, i, slices));
+                }
+            }
         }
-        log.info("es数据迁移任务执行完成! result = [{}]",result);
+        return units;
+    }
+
+    /**
+     * 领取线程,依次领取并迁移工作单元,没有可领取的工作单元时等待其他进程的工作单元结束或租约过期
+     */
+    private void claimUnits(JobLeaseStore store, String workerId, Map<String, ScrollSearchTask> runningUnits, long leaseMillis){
+        try {
+            while (this.config.isAborted() == false){
+                WorkUnit unit = store.claim(workerId);
+                if(unit == null){
+                    if(store.isFinished()){
+                        return;
+                    }
+                    //其他进程执行中,等待其完成或租约过期后重新领取
+                    TimeUnit.MILLISECONDS.sleep(leaseMillis / 3);
+                    continue;
+                }
+                SyncSource source = this.findSource(unit.getSourceName());
+                AtomicInteger pendingBatches = new AtomicInteger();
+                AtomicBoolean writeFailed = new AtomicBoolean();
+                SliceBuilder slice = unit.getSliceMax() > 1 ? new SliceBuilder(unit.getSliceId(), unit.getSliceMax()) : null;
+                ScrollSearchTask task = new ScrollSearchTask(this.config, source, unit.getIndexTask(), slice, pendingBatches, writeFailed);
+                log.info("进程[{}]领取工作单元[{}],第[{}]次领取",workerId,unit.getId(),unit.getAttempts());
+                runningUnits.put(unit.getId(), task);
+                try {
+                    task.run();
+                    //读取的批次全部写出后才标记为完成,进程在此之前退出时由其他进程重新迁移
+                    while (pendingBatches.get() > 0 && this.config.isAborted() == false){
+                        TimeUnit.MILLISECONDS.sleep(100L);
+                    }
+                }finally {
+                    runningUnits.remove(unit.getId());
+                }
+                //有批次重试后仍写出失败时不标记为完成,由其他进程重新迁移
+                boolean success = task.isFailed() == false && writeFailed.get() == false && pendingBatches.get() == 0 && this.config.isAborted() == false;
+                if(store.complete(workerId, unit.getId(), success)){
+                    log.info("进程[{}]工作单元[{}]{}",workerId,unit.getId(),success ? "迁移完成" : "迁移失败,释放后重新领取");
+                }
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }catch (Exception e){
+            log.error("进程[" + workerId + "]领取工作单元异常." + e.getMessage(),e);
+        }
+    }
+
+    private SyncSource findSource(String sourceName){
+        for (SyncSource source : this.config.sources) {
+            if(source.getName().equals(sourceName)){
+                return source;
+            }
+        }
+        throw new IllegalStateException("数据源[" + sourceName + "]不存在,所有进程需要使用相同的参数启动");
     }
 
     /**
      * 结束后销毁相关实例的方法
      */
     public void destroy(){
+        if(this.config.throughputLimiter != null){
+            this.config.throughputLimiter.stop();
+        }
+        if(this.config.progressReporter != null){
+            this.config.progressReporter.stop();
+        }
+        if(this.config.prefetchExecutor != null){
+            this.config.prefetchExecutor.shutdownNow();
+        }
+        this.config.sourceMonitors.values().forEach(ClusterPressureMonitor::stop);
+        this.config.targetMonitors.values().forEach(ClusterPressureMonitor::stop);
+        if(this.config.executorService != null){
+            //异常结束时线程池可能未关闭,已提交的写出任务执行完后归还写入许可,线程随之结束
+            this.config.executorService.shutdown();
+        }
+        if(this.sharedClients){
+            return;
+        }
         try {
-            if(this.config.inputClient != null){
-                this.config.inputClient.close();
+            for (SyncSource source : this.config.sources) {
+                if(source.getClient() != null){
+                    source.getClient().close();
+                }
             }
-            if(this.config.outputClient != null){
-                this.config.outputClient.close();
+            for (SyncTarget target : this.config.targets) {
+                if(target.getClient() != null){
+                    target.getClient().close();
+                }
             }
         }catch (IOException e){
             log.error("执行销毁方法时异常,异常信息:" + e.getMessage(), e);
@@ -133,117 +453,355 @@ public class DataSyncProcessor {
     }
 
     /**
-     * 非自定义输出索引的方式初始化
-     * @return
-     * @throws Exception
+     * 等待读写线程结束,需要在 destroy() 之后调用
+     * @param timeout 最长等待时间
+     * @param unit 时间单位
+     * @return 读写线程已全部结束时返回true
      */
-    private List<String> notCustomOutputIndex() throws Exception{
-        //校验索引是否已在es数据源中存在
-        List<String> indexList = new ArrayList<>(this.config.indexArray.length);
-        Long countTotal = 0L;
-        //数据统计下标值
-        Integer totalCountIndex = 0;
-        for (String indexName : this.config.indexArray) {
-            //检查读取数据源中是否存在索引
-            boolean inputExists = this.config.elasticsearchService.isExists(this.config.inputClient, indexName);
-            if(inputExists == false ){
-                //不存在
-                log.warn("名称为[{}]的索引,在读取数据源的es库中不存在! 本次同步忽略该索引.",indexName);
-                continue;
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return this.config.executorService == null || this.config.executorService.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * 启动集群压力监控,数据源监控search线程池,目标集群监控write线程池
+     */
+    private void startPressureMonitors(){
+        PressureOption sourcePressure = this.config.syncOptions.getSourcePressure();
+        if(sourcePressure != null && sourcePressure.getEnabled()){
+            for (SyncSource source : this.config.sources) {
+                ClusterPressureMonitor monitor = new ClusterPressureMonitor("source-" + source.getName(), source.getClient().getLowLevelClient(), ClusterPressureMonitor.SEARCH_THREAD_POOL, sourcePressure);
+                monitor.start();
+                this.config.sourceMonitors.put(source.getName(), monitor);
             }
-            //检查同步的目标数据源中是否存在索引
-            boolean outputExists = this.config.elasticsearchService.isExists(this.config.outputClient, indexName);
-            if(outputExists == false){
-                //不存在，将读取数据源的es库中的索引复制到输出数据源的es库中
-                String indexMapping = this.config.elasticsearchService.getIndexMapping(this.config.inputClient, indexName);
-                this.config.elasticsearchService.createIndex(this.config.outputClient, indexName, indexMapping);
-                log.info("名称为[{}]的索引,在输出数据源的es库中创建完成!",indexName);
-            }
-            //检查数据源索引中是否存在数据
-            Long count = this.config.elasticsearchService.countToTal(this.config.inputClient, indexName);
-            countTotal += count;
-            if(count <= 0L){
-                log.warn("数据源索引[{}]中不存在数据, 本次同步忽略该索引!",indexName);
-                continue;
+        }
+        PressureOption targetPressure = this.config.syncOptions.getTargetPressure();
+        if(targetPressure != null && targetPressure.getEnabled()){
+            for (SyncTarget target : this.config.targets) {
+                ClusterPressureMonitor monitor = new ClusterPressureMonitor("target-" + target.getName(), target.getClient().getLowLevelClient(), ClusterPressureMonitor.WRITE_THREAD_POOL, targetPressure);
+                monitor.start();
+                this.config.targetMonitors.put(target.getName(), monitor);
             }
-            //记录统计数组中索引名称下标
-            this.config.totalCountArrayIndexMap.put(indexName,totalCountIndex);
-            //初始化数据统计,初始值默认为0
-            this.config.totalCountArray[totalCountIndex++] = indexName;
-            //读取数据量的初始值
-            this.config.totalCountArray[totalCountIndex++] = 0;
-            //写出数据量的初始值
-            this.config.totalCountArray[totalCountIndex++] = 0;
-            indexList.add(indexName);
-        }
-        log.info("总数据量为:[{}]",countTotal);
-        return indexList;
+        }
     }
 
     /**
-     * 自定义索引初始化
-     * 自定义索引数组长度必须是偶数，数组形式为 [inputIndex1,outputIndex1, inputIndex2,outputIndex12, inputIndex3,outputIndex3],输入索引和输出索引一一对应
+     * 启动数据源的读取任务
+     * @param source 数据源
      */
-    private List<String> customOutputIndex() throws Exception {
-        if(this.config.indexArray.length % 2 != 0){
-            //自定义索引数组长度必须是偶数
-            throw new RuntimeException("The length of the custom index array must be an even number,but the current array length is [" + this.config.indexArray.length +"]");
-        }
-        Long countTotal = 0L;
-        //数据统计下标值
-        Integer totalCountIndex = 0;
-        List<String> indexList = new ArrayList<>(this.config.indexArray.length / 2);
-        for (int i = 0; i < this.config.indexArray.length;) {
-            //校验数据源索引是否存在
-            //获取数据源索引
-            String sourceIndexName = this.config.indexArray[i++];
-            boolean inputExists = this.config.elasticsearchService.isExists(this.config.inputClient, sourceIndexName);
-            if(inputExists == false){
-                //不存在，同时忽略数据源索引和目标索引，从下一组索引开始
-                //获取目标索引
-                String targetIndexName = this.config.indexArray[i++];
-                log.warn("数据源索引[{}]不存在, 本次同步忽略该组索引! 忽略的索引组为 sourceIndexName -> [{}], targetIndexName -> [{}]",sourceIndexName,sourceIndexName,targetIndexName);
-                continue;
+    private void startReaders(SyncSource source){
+        String[] indexArray = source.getIndexArray();
+        if(source.getReaderThreads() <= 0 || source.getReaderThreads() >= indexArray.length){
+            for (String indexTask : indexArray) {
+                Runnable readerTask = this.newReaderTask(source, indexTask);
+                ///不实用searchAfter读取数据,海量数据时较慢
+                //SearchAfterTask searchAfterTask = new SearchAfterTask(this.config,source,indexTask);
+                this.config.executorService.execute(() -> this.runReader(readerTask));
             }
+            return;
+        }
+        //限制同时读取的索引数,每个读取线程依次从队列中获取索引读取
+        Queue<String> indexQueue = new ConcurrentLinkedQueue<>(Arrays.asList(indexArray));
+        for (int i = 0; i < source.getReaderThreads(); i++) {
+            this.config.executorService.execute(() -> {
+                String indexTask;
+                while ((indexTask = indexQueue.poll()) != null){
+                    this.runReader(this.newReaderTask(source, indexTask));
+                }
+            });
+        }
+    }
 
-            //数据源索引存在,检查目标索引是否存在
-            String targetIndexName = this.config.indexArray[i++];
-            boolean outputExists = this.config.elasticsearchService.isExists(this.config.outputClient, targetIndexName);
-            if(outputExists == false){
-                //目标索引不存在，创建索引
-                String indexMapping = this.config.elasticsearchService.getIndexMapping(this.config.inputClient, sourceIndexName);
-                this.config.elasticsearchService.createIndex(this.config.outputClient, targetIndexName, indexMapping);
-                log.info("目标索引名称为[{}]的索引,在输出数据源的es库中创建完成!",targetIndexName);
-            }
-            //检查数据源索引中是否存在数据
-            Long count = this.config.elasticsearchService.countToTal(this.config.inputClient, sourceIndexName);
-            countTotal += count;
-            if(count <= 0L){
-                log.warn("数据源索引[{}]中不存在数据, 本次同步忽略该组索引! 忽略的索引组为 sourceIndexName -> [{}], targetIndexName -> [{}]",sourceIndexName,sourceIndexName,targetIndexName);
-                continue;
+    /**
+     * 创建索引的读取任务,配置了范围分区时按分区并发读取,否则使用scroll方式读取
+     * @param source 数据源
+     * @param indexTask 索引任务名称
+     * @return 读取任务
+     */
+    private Runnable newReaderTask(SyncSource source, String indexTask){
+        String inputIndexName = indexTask.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS)[0];
+        IndexQueryOption queryOption = this.config.syncOptions.getIndexQueryOption(inputIndexName);
+        if(queryOption != null && queryOption.isRangePartitioned()){
+            return new RangePartitionTask(this.config, source, indexTask);
+        }
+        return new ScrollSearchTask(this.config, source, indexTask);
+    }
+
+    /**
+     * 执行读取任务,同时读取的索引数达到全局上限时等待
+     * @param readerTask 读取任务
+     */
+    private void runReader(Runnable readerTask){
+        try {
+            try {
+                this.config.acquireReader();
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
             }
+            try {
+                readerTask.run();
+            }finally {
+                this.config.releaseReader();
+            }
+        }finally {
+            //读取结束,队列监听器在没有未完成的索引且队列为空时结束
+            this.config.pendingIndexTasks.decrementAndGet();
+        }
+    }
 
-            //记录统计数组中输入索引名称下标
-            this.config.totalCountArrayIndexMap.put(sourceIndexName,totalCountIndex);
-            //初始化数据统计,初始值默认为0
-            this.config.totalCountArray[totalCountIndex++] = sourceIndexName;
-            //读取数据量的初始值
-            this.config.totalCountArray[totalCountIndex++] = 0;
+    /**
+     * 流式启动数据源的读取任务,索引检查、创建和统计完成后立即开始读取
+     * 没有数据或初始化失败的索引直接结束
+     * @param source 数据源
+     */
+    private void startStreamingReaders(SyncSource source){
+        String[] indexArray = source.getIndexArray();
+        if(indexArray.length == 0){
+            return;
+        }
+        boolean limitReaders = source.getReaderThreads() > 0 && source.getReaderThreads() < indexArray.length;
+        //限制同时读取的索引数时,初始化完成的索引放入队列,由读取线程依次获取
+        BlockingQueue<String> readyQueue = new LinkedBlockingQueue<>();
+        CountDownLatch initLatch = new CountDownLatch(indexArray.length);
+        ExecutorService initExecutor = Executors.newFixedThreadPool(Math.max(Math.min(this.config.syncOptions.getInitThreads(), indexArray.length), 1), new ThreadFactoryBuilder().setNameFormat("es-dump-init-%d").setDaemon(true).build());
+        for (String indexTask : indexArray) {
+            initExecutor.execute(() -> {
+                boolean ready = false;
+                try {
+                    ready = this.config.isAborted() == false && this.initIndexTask(source, indexTask);
+                }catch (Exception e){
+                    log.error("数据源[" + source.getName() + "]索引任务[" + indexTask + "]初始化异常,本次同步忽略该索引:" + e.getMessage(), e);
+                }
+                if(ready == false){
+                    this.config.pendingIndexTasks.decrementAndGet();
+                }else if(limitReaders){
+                    readyQueue.add(indexTask);
+                }else {
+                    this.config.executorService.execute(() -> this.runReader(this.newReaderTask(source, indexTask)));
+                }
+                initLatch.countDown();
+            });
+        }
+        initExecutor.shutdown();
+        if(limitReaders == false){
+            return;
+        }
+        for (int i = 0; i < source.getReaderThreads(); i++) {
+            this.config.executorService.execute(() -> {
+                try {
+                    while (true){
+                        String indexTask = readyQueue.poll(1L, TimeUnit.SECONDS);
+                        if(indexTask != null){
+                            this.runReader(this.newReaderTask(source, indexTask));
+                        }else if(initLatch.getCount() == 0 && readyQueue.isEmpty()){
+                            break;
+                        }
+                    }
+                }catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
 
-            //记录统计数组中输出索引名称下标
-            this.config.totalCountArrayIndexMap.put(targetIndexName,totalCountIndex);
-            //初始化数据统计,初始值默认为0
-            this.config.totalCountArray[totalCountIndex++] = targetIndexName;
-            //写出数据量的初始值
-            this.config.totalCountArray[totalCountIndex++] = 0;
+    /**
+     * 在所有目标集群中检查目标索引是否存在,不存在时使用数据源索引的mapping创建
+     * @param source 数据源
+     * @param sourceIndexName 数据源索引名称
+     * @param targetIndexName 目标索引名称
+     * @throws IOException
+     */
+    private void createTargetIndexIfAbsent(SyncSource source, String sourceIndexName, String targetIndexName) throws IOException {
+        if(this.config.syncOptions.getDryRun()){
+            //试运行时不创建目标索引
+            return;
+        }
+        String indexMapping = null;
+        for (SyncTarget target : this.config.targets) {
+            boolean outputExists = this.config.elasticsearchService.isExists(target.getClient(), targetIndexName);
+            if(outputExists){
+                continue;
+            }
+            //目标索引不存在，创建索引,多个目标集群时mapping只读取一次
+            if(indexMapping == null){
+                indexMapping = this.config.elasticsearchService.getIndexMapping(source.getClient(), sourceIndexName);
+            }
+            try {
+                this.config.elasticsearchService.createIndex(target.getClient(), targetIndexName, indexMapping);
+            }catch (ElasticsearchStatusException e){
+                //多个索引任务写入同一个目标索引时并发初始化,其他任务已创建
+                if(e.getDetailedMessage().contains("resource_already_exists_exception")){
+                    continue;
+                }
+                throw e;
+            }
+            log.info("目标索引名称为[{}]的索引,在目标集群[{}]中创建完成!",targetIndexName,target.getName());
+        }
+    }
+
+    /**
+     * 获取数据源的索引任务名称,不检查索引
+     * 非自定义输出索引时,索引名称支持通配符、别名和数据流,一次请求解析为实际的索引
+     * 自定义输出索引时,数组形式为 [inputIndex1,outputIndex1, inputIndex2,outputIndex12, inputIndex3,outputIndex3],输入索引和输出索引一一对应,任务名称为 inputIndex -> outputIndex
+     * @param source 数据源
+     * @return 索引任务名称
+     */
+    private List<String> prepareIndexTasks(SyncSource source) throws Exception {
+        if(this.config.isCustomOutputIndex == false){
+            return this.resolveIndices(source);
+        }
+        String[] indexArray = source.getIndexArray();
+        if(indexArray.length % 2 != 0){
+            //自定义索引数组长度必须是偶数
+            throw new RuntimeException("The length of the custom index array must be an even number,but the current array length is [" + indexArray.length +"]");
+        }
+        List<String> indexTasks = new ArrayList<>(indexArray.length / 2);
+        for (int i = 0; i < indexArray.length; i += 2) {
             //拼接索引名称
-            String indexSplit = new StringBuilder(sourceIndexName).append(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS).append(targetIndexName).toString();
-            indexList.add(indexSplit);
+            indexTasks.add(new StringBuilder(indexArray[i]).append(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS).append(indexArray[i + 1]).toString());
         }
-        log.info("总数据量为:[{}]",countTotal);
+        return indexTasks;
+    }
+
+    /**
+     * 校验服务端reindex的数据源: 未配置远程地址时 reindex 在目标集群本地读取,数据源必须是目标集群,且输入索引与输出索引不能相同
+     * @param source 数据源
+     * @param indexTasks 索引任务名称
+     */
+    private void validateReindexSource(SyncSource source, List<String> indexTasks) throws IOException {
+        if(this.config.syncOptions.getReindexOption().getRemote(source.getName()) != null){
+            return;
+        }
+        String sourceClusterUuid = this.config.elasticsearchService.getClusterUuid(source.getClient());
+        for (SyncTarget target : this.config.targets) {
+            if(sourceClusterUuid.equals(this.config.elasticsearchService.getClusterUuid(target.getClient())) == false){
+                throw new IllegalArgumentException("source [" + source.getName() + "] is not on target cluster [" + target.getName() + "], server-side reindex requires a remote option for this source");
+            }
+        }
+        for (String indexTask : indexTasks) {
+            String[] split = indexTask.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
+            if(split.length == 1 || split[0].equals(split[1])){
+                throw new IllegalArgumentException("index task [" + indexTask + "] of source [" + source.getName() + "] would reindex an index into itself on the same cluster");
+            }
+        }
+    }
+
+    /**
+     * 并发初始化数据源的所有索引任务,全部完成后返回
+     * @param source 数据源
+     * @param indexTasks 索引任务名称
+     * @return 需要迁移的索引任务名称,保持传入的索引任务顺序(非自定义输出索引时为解析后按名称排序的顺序)
+     */
+    private List<String> initIndexTasks(SyncSource source, List<String> indexTasks) throws Exception {
+        List<Callable<Long>> initTasks = new ArrayList<>(indexTasks.size());
+        for (String indexTask : indexTasks) {
+            initTasks.add(() -> this.initIndexTask(source, indexTask) ? 1L : 0L);
+        }
+        List<Long> results = this.runInitTasks(initTasks);
+        List<String> indexList = new ArrayList<>(indexTasks.size());
+        long countTotal = 0L;
+        for (int i = 0; i < indexTasks.size(); i++) {
+            if(results.get(i) > 0L){
+                indexList.add(indexTasks.get(i));
+                countTotal += this.config.getTotalCount(source.getName(), indexTasks.get(i)).getExpectedTotalCount();
+            }
+        }
+        log.info("数据源[{}]总数据量为:[{}]",source.getName(),countTotal);
         return indexList;
     }
 
+    /**
+     * 初始化一个索引任务: 检查数据源索引,不存在时创建目标索引,统计数据量
+     * @param source 数据源
+     * @param indexTask 索引任务名称
+     * @return true - 需要迁移, false - 数据源索引不存在或没有数据
+     */
+    private boolean initIndexTask(SyncSource source, String indexTask) throws IOException {
+        //防止索引名称是否为自定义的输出索引与输入索引拼接而成,类似形式为 inputIndex -> outputIndex,下标为0的是输入索引，下标为1的是输出索引
+        String[] split = indexTask.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
+        String sourceIndexName = split[0];
+        String targetIndexName = split.length > 1 ? split[1] : split[0];
+        if(this.config.isCustomOutputIndex){
+            //校验数据源索引是否存在,非自定义输出索引时解析出的索引都存在
+            if(this.config.elasticsearchService.isExists(source.getClient(), sourceIndexName) == false){
+                //不存在，同时忽略数据源索引和目标索引
+                log.warn("数据源索引[{}]不存在, 本次同步忽略该组索引! 忽略的索引组为 sourceIndexName -> [{}], targetIndexName -> [{}]",sourceIndexName,sourceIndexName,targetIndexName);
+                return false;
+            }
+        }
+        //检查同步的目标数据源中是否存在索引,不存在则将读取数据源的es库中的索引复制到输出数据源的es库中
+        //按文档路由的索引在写入前创建实际的目标索引
+        if(this.config.targetIndexRouter.isRouted(sourceIndexName) == false){
+            this.createTargetIndexIfAbsent(source, sourceIndexName, targetIndexName);
+        }
+        //检查数据源索引中是否存在数据
+        Long count = this.config.elasticsearchService.countToTal(source.getClient(), sourceIndexName, this.config.syncOptions.getIndexQueryOption(sourceIndexName));
+        if(count <= 0L){
+            log.warn("数据源索引[{}]中不存在数据, 本次同步忽略该索引! 索引任务为[{}]",sourceIndexName,indexTask);
+            return false;
+        }
+        //初始化数据统计,初始值默认为0
+        this.config.totalCountMap.put(DataSyncConfig.totalCountKey(source.getName(), indexTask), new DataTotalCount(source.getName(), sourceIndexName, targetIndexName, count));
+        if(this.config.streamingStart){
+            log.info("数据源[{}]索引任务[{}]初始化完成,数据量:[{}],开始迁移",source.getName(),indexTask,count);
+        }
+        return true;
+    }
+
+    /**
+     * 将数据源的索引名称(支持通配符、别名和数据流)解析为实际的索引名称,不存在的索引忽略
+     * @param source 数据源
+     * @return 按名称排序并去重后的索引名称
+     */
+    private List<String> resolveIndices(SyncSource source) throws Exception {
+        String[] patterns = source.getIndexArray();
+        List<String> resolvedIndices = this.config.elasticsearchService.resolveIndices(source.getClient(), patterns);
+        Set<String> resolvedSet = new HashSet<>(resolvedIndices);
+        //未解析到的非通配符名称,可能是不存在的索引,也可能是没有对应索引的别名,检查后打印警告
+        List<Callable<Long>> checkTasks = new ArrayList<>();
+        List<String> unresolvedNames = new ArrayList<>();
+        for (String pattern : patterns) {
+            if(pattern.contains("*") == false && resolvedSet.contains(pattern) == false){
+                unresolvedNames.add(pattern);
+                checkTasks.add(() -> this.config.elasticsearchService.isExists(source.getClient(), pattern) ? 1L : 0L);
+            }
+        }
+        List<Long> exists = this.runInitTasks(checkTasks);
+        for (int i = 0; i < unresolvedNames.size(); i++) {
+            if(exists.get(i) == 0L){
+                log.warn("名称为[{}]的索引,在读取数据源的es库中不存在! 本次同步忽略该索引.",unresolvedNames.get(i));
+            }
+        }
+        log.info("数据源[{}]的索引{}解析后的索引有[{}]个",source.getName(),Arrays.toString(patterns),resolvedIndices.size());
+        return resolvedIndices;
+    }
+
+    /**
+     * 并发执行初始化任务,按提交顺序返回结果,任一任务异常时抛出
+     * @param initTasks 初始化任务
+     * @return 任务结果
+     */
+    private List<Long> runInitTasks(List<Callable<Long>> initTasks) throws Exception {
+        List<Long> results = new ArrayList<>(initTasks.size());
+        if(initTasks.isEmpty()){
+            return results;
+        }
+        int threadNum = Math.max(Math.min(this.config.syncOptions.getInitThreads(), initTasks.size()), 1);
+        ExecutorService initExecutor = Executors.newFixedThreadPool(threadNum, new ThreadFactoryBuilder().setNameFormat("es-dump-init-%d").setDaemon(true).build());
+        try {
+            for (Future<Long> future : initExecutor.invokeAll(initTasks)) {
+                try {
+                    results.add(future.get());
+                }catch (ExecutionException e){
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }finally {
+            initExecutor.shutdownNow();
+        }
+        return results;
+    }
+
 
     /**
      * 数据同步任务配置类
@@ -270,6 +828,46 @@ public class DataSyncProcessor {
          */
         private ExecutorService executorService;
 
+        /**
+         * 同时读取的索引数限制,为空时不限制
+         */
+        private Semaphore readerPermits;
+
+        /**
+         * 同时写入的批次数限制(所有目标集群合计),为空时不限制
+         */
+        private Semaphore writePermits;
+
+        /**
+         * 全局读写限速器
+         */
+        private ThroughputLimiter throughputLimiter;
+
+        /**
+         * 同步进度汇总打印,未开启时为空
+         */
+        private ProgressReporter progressReporter;
+
+        /**
+         * 数据源集群压力监控,key 为数据源名称,未开启时为空
+         */
+        private Map<String, ClusterPressureMonitor> sourceMonitors = new HashMap<>();
+
+        /**
+         * 目标集群压力监控,key 为目标集群名称,未开启时为空
+         */
+        private Map<String, ClusterPressureMonitor> targetMonitors = new HashMap<>();
+
+        /**
+         * 数据包装类对象池
+         */
+        private DataWrapperPool dataWrapperPool;
+
+        /**
+         * 按文档字段路由目标索引
+         */
+        private TargetIndexRouter targetIndexRouter;
+
         /**
          * 阻塞队列
          */
@@ -282,15 +880,19 @@ public class DataSyncProcessor {
         private String[] indexArray;
 
         /**
-         * 数据统计使用
+         * 数据源,第一个为命令行参数中的数据源
+         */
+        private List<SyncSource> sources = new ArrayList<>();
+
+        /**
+         * 目标集群,第一个为命令行参数中的目标集群
          */
-        private Object[] totalCountArray;
+        private List<SyncTarget> targets = new ArrayList<>();
 
         /**
-         * 数据统计数组索引映射,记录每个索引名称在 totalCountArray 中的下标
-         * 例如, index1 -> 0, index2 -> 1
+         * 数据统计使用,key 为 数据源名称/索引任务名称,按key排序便于打印
          */
-        private Map<String, Integer> totalCountArrayIndexMap;
+        private Map<String, DataTotalCount> totalCountMap = new ConcurrentSkipListMap<>();
 
         /**
          * 是否自定义输出索引
@@ -313,6 +915,31 @@ public class DataSyncProcessor {
          */
         private TimeUnit dequeListenerTimeoutUnit = TimeUnit.SECONDS;
 
+        /**
+         * 扩展配置
+         */
+        private SyncOptions syncOptions = new SyncOptions();
+
+        /**
+         * 分页预读线程池,不预读时为空
+         */
+        private ExecutorService prefetchExecutor;
+
+        /**
+         * 是否流式启动,索引初始化完成后立即开始迁移
+         */
+        private boolean streamingStart;
+
+        /**
+         * 未完成的索引任务数(初始化中或读取中)
+         */
+        private final AtomicInteger pendingIndexTasks = new AtomicInteger();
+
+        /**
+         * 终止同步任务的原因,为空时表示未终止
+         */
+        private volatile String abortReason;
+
         /**
          * 构造函数
          * @param inputClient 数据读取的客户端，使用需要迁移的es数据源构建
@@ -334,20 +961,54 @@ public class DataSyncProcessor {
             //设置自定义输出索引标识符
             this.isCustomOutputIndex = isCustomOutputIndex;
             this.dequeListenerTimeout = dequeListenerTimeout;
-            //数据统计数组，存储格式例子:
-            // 非自定义输出索引 -> [index1,readTotal1,writeTotal1,index2,readTotal2,writeTotal2]
-            // 自定义输出索引 -> [inputIndex, readTotal, outputIndex, writeTotal]
-            this.totalCountArray = isCustomOutputIndex ? new Object[indexArray.length * 2] : new Object[indexArray.length * 3];
-            //数据统计数组索引映射,记录每个索引名称在 totalCountArray 中的下标
-            this.totalCountArrayIndexMap = new HashMap<>(indexArray.length);
+            //命令行参数中的数据源
+            this.sources.add(new SyncSource(SyncSource.DEFAULT_NAME, inputClient, indexArray, 0));
+            //命令行参数中的目标集群
+            this.targets.add(new SyncTarget(SyncTarget.DEFAULT_NAME, outputClient, 0));
+        }
+
+        /**
+         * 数据统计的key
+         * @param sourceName 数据源名称
+         * @param indexTask 索引任务名称
+         * @return 数据源名称/索引任务名称
+         */
+        public static String totalCountKey(String sourceName, String indexTask){
+            return sourceName + "/" + indexTask;
+        }
+
+        /**
+         * 获取索引任务的数据统计
+         * @param sourceName 数据源名称
+         * @param indexTask 索引任务名称
+         * @return 数据统计
+         */
+        public DataTotalCount getTotalCount(String sourceName, String indexTask){
+            return this.totalCountMap.get(totalCountKey(sourceName, indexTask));
         }
 
 
         /**
          * 构建线程池
+         * 配置为虚拟线程模式且当前jdk支持虚拟线程时,每个任务一个虚拟线程,并发数由信号量控制,否则使用平台线程池
          * @return
          */
         private ExecutorService buildExecutorService(Integer indexTaskNum){
+            if(SyncOptions.EXECUTOR_MODE_VIRTUAL.equalsIgnoreCase(this.syncOptions.getExecutorMode())){
+                ExecutorService virtualExecutor = buildVirtualThreadExecutor();
+                if(virtualExecutor != null){
+                    int maxConcurrentWrites = this.syncOptions.getMaxConcurrentWrites() > 0 ? this.syncOptions.getMaxConcurrentWrites() : SyncOptions.DEFAULT_VIRTUAL_MAX_CONCURRENT_WRITES;
+                    if(this.writePermits == null){
+                        this.writePermits = new Semaphore(maxConcurrentWrites);
+                    }
+                    log.info("使用虚拟线程执行读写任务,同时读取的索引数上限:[{}],同时写入的批次数上限:[{}]", this.syncOptions.getMaxConcurrentReaders() > 0 ? this.syncOptions.getMaxConcurrentReaders() : "不限制", maxConcurrentWrites);
+                    return virtualExecutor;
+                }
+                log.warn("当前jdk版本[{}]不支持虚拟线程,使用平台线程池执行读写任务", System.getProperty("java.version"));
+            }
+            if(this.syncOptions.getMaxConcurrentWrites() > 0 && this.writePermits == null){
+                this.writePermits = new Semaphore(this.syncOptions.getMaxConcurrentWrites());
+            }
             //核心线程数和最大线程数一样，都为索引任务数的双倍+1,如果索引任务只有一个，固定核心线程数为20
             Integer threadNum = indexTaskNum == 1 ? 20 : indexTaskNum * 2 + 1;
             ThreadPoolExecutor executor = new ThreadPoolExecutor(threadNum,
@@ -360,6 +1021,122 @@ public class DataSyncProcessor {
             return executor;
         }
 
+        /**
+         * 通过反射创建虚拟线程执行器,jdk21以下(或jdk19/20未开启预览特性)返回null
+         * @return 虚拟线程执行器
+         */
+        private static ExecutorService buildVirtualThreadExecutor(){
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            }catch (Exception e){
+                return null;
+            }
+        }
+
+        /**
+         * 获取读取许可,同时读取的索引数达到上限时阻塞
+         * @throws InterruptedException
+         */
+        public void acquireReader() throws InterruptedException {
+            if(this.readerPermits != null){
+                this.readerPermits.acquire();
+            }
+        }
+
+        /**
+         * 释放读取许可
+         */
+        public void releaseReader(){
+            if(this.readerPermits != null){
+                this.readerPermits.release();
+            }
+        }
+
+        /**
+         * 将读取的批次放入队列,队列已满时等待,等待期间任务终止时归还数据包装类并返回false
+         * 队列监听器终止后不再取出批次,不能无限期阻塞在入队上
+         * @param dataWrapper 数据包装类,调用后可能已被写出并归还到池中,调用方不能再使用
+         * @param slice 切片或分区,没有时为空
+         * @return true - 已放入队列, false - 任务已终止,读取任务需要停止读取
+         * @throws InterruptedException
+         */
+        public boolean enqueue(ElasticsearchDataWrapper dataWrapper, String slice) throws InterruptedException {
+            String indexName = dataWrapper.getIndexName();
+            int size = dataWrapper.size();
+            long byteSize = dataWrapper.getByteSize();
+            BatchTracer.Trace trace = BatchTracer.begin(BatchTracer.Stage.ENQUEUE_WAIT);
+            try {
+                while (this.blockingDeque.offer(dataWrapper, 1L, TimeUnit.SECONDS) == false){
+                    if(this.isAborted()){
+                        AtomicInteger pendingBatches = dataWrapper.getPendingBatches();
+                        this.dataWrapperPool.release(dataWrapper);
+                        if(pendingBatches != null){
+                            pendingBatches.decrementAndGet();
+                        }
+                        return false;
+                    }
+                }
+                return true;
+            }finally {
+                trace.finish(indexName, slice, null, size, byteSize);
+            }
+        }
+
+        /**
+         * 获取写入许可,同时写入的批次数达到上限时阻塞
+         * @throws InterruptedException
+         */
+        public void acquireWriter() throws InterruptedException {
+            if(this.writePermits != null){
+                this.writePermits.acquire();
+            }
+        }
+
+        /**
+         * 释放写入许可
+         */
+        public void releaseWriter(){
+            if(this.writePermits != null){
+                this.writePermits.release();
+            }
+        }
+
+        /**
+         * 终止同步任务,读取任务不再读取新的批次,队列监听器不再写出新的批次
+         * @param reason 终止原因,只保留第一次的原因
+         */
+        public synchronized void abort(String reason){
+            if(this.abortReason == null){
+                this.abortReason = reason;
+                log.error("数据同步任务终止! 原因:[{}]", reason);
+            }
+        }
+
+        /**
+         * 是否还有初始化中或读取中的索引任务,有时队列监听器继续等待
+         */
+        public boolean hasPendingIndexTasks(){
+            return this.pendingIndexTasks.get() > 0;
+        }
+
+        /**
+         * 分页预读线程池,未开启预读时为空
+         */
+        public ExecutorService getPrefetchExecutor() {
+            return prefetchExecutor;
+        }
+
+        /**
+         * 同步任务是否已终止
+         */
+        public boolean isAborted(){
+            return this.abortReason != null;
+        }
+
+        public String getAbortReason() {
+            return abortReason;
+        }
+
         /**
          * 设置是否需要自定义输出索引，default value false
          * @param customOutputIndex
@@ -412,6 +1189,42 @@ public class DataSyncProcessor {
             return executorService;
         }
 
+        /**
+         * 读取前调用,数据源集群压力大时在此等待
+         * @param sourceName 数据源名称
+         * @throws InterruptedException
+         */
+        public void awaitSourcePressure(String sourceName) throws InterruptedException {
+            ClusterPressureMonitor monitor = this.sourceMonitors.get(sourceName);
+            if(monitor != null){
+                monitor.await();
+            }
+        }
+
+        /**
+         * 写入前调用,目标集群压力大时在此等待
+         * @param targetName 目标集群名称
+         * @throws InterruptedException
+         */
+        public void awaitTargetPressure(String targetName) throws InterruptedException {
+            ClusterPressureMonitor monitor = this.targetMonitors.get(targetName);
+            if(monitor != null){
+                monitor.await();
+            }
+        }
+
+        public ThroughputLimiter getThroughputLimiter() {
+            return throughputLimiter;
+        }
+
+        public TargetIndexRouter getTargetIndexRouter() {
+            return targetIndexRouter;
+        }
+
+        public DataWrapperPool getDataWrapperPool() {
+            return dataWrapperPool;
+        }
+
         public LinkedBlockingDeque<ElasticsearchDataWrapper> getBlockingDeque() {
             return blockingDeque;
         }
@@ -420,16 +1233,32 @@ public class DataSyncProcessor {
             return indexArray;
         }
 
-        public Map<String, Integer> getTotalCountArrayIndexMap() {
-            return totalCountArrayIndexMap;
+        public List<SyncSource> getSources() {
+            return sources;
+        }
+
+        public List<SyncTarget> getTargets() {
+            return targets;
         }
 
-        public Object[] getTotalCountArray() {
-            return totalCountArray;
+        public Map<String, DataTotalCount> getTotalCountMap() {
+            return totalCountMap;
         }
 
         public Boolean getIsCustomOutputIndex(){
             return isCustomOutputIndex;
         }
+
+        public SyncOptions getSyncOptions() {
+            return syncOptions;
+        }
+
+        /**
+         * 设置扩展配置，为空时使用默认配置
+         * @param syncOptions
+         */
+        public void setSyncOptions(SyncOptions syncOptions) {
+            this.syncOptions = syncOptions != null ? syncOptions : new SyncOptions();
+        }
     }
 }
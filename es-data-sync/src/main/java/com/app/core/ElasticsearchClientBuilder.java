@@ -1,18 +1,26 @@
 package com.app.client.impl;
 
-import com.alibaba.fastjson.JSONObject;
+import com.app.model.ClientOptions;
+import com.app.model.TrafficStats;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.config.RegistryBuilder;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.conn.ManagedNHttpClientConnectionFactory;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
 import org.elasticsearch.client.*;
 
+import javax.net.ssl.SSLContext;
 import java.io.IOException;
-import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * @Author miaoyoulin
@@ -36,7 +44,7 @@ public class ElasticsearchClientBuilder{
     private String password;
 
     /**
-     * ip/域名
+     * ip/域名,多个节点以英文逗号[,]分隔,节点可单独指定端口,例如 host1,host2:9201
      */
     private String host;
 
@@ -51,14 +59,14 @@ public class ElasticsearchClientBuilder{
     private String scheme;
 
     /**
-     * 最大总连接数
+     * 连接参数配置,包括超时、连接数、压缩等
      */
-    private static final Integer MAX_CONN_TOTAL = 500;
+    private ClientOptions clientOptions;
 
     /**
-     * 每个路由值的最大连接数
+     * 网络传输字节数统计
      */
-    private static final Integer MAX_CONN_PER_ROUTE = 300;
+    private final TrafficStats trafficStats = new TrafficStats();
 
 
     /**
@@ -69,11 +77,24 @@ public class ElasticsearchClientBuilder{
      * @param port 端口
      */
     public ElasticsearchClientBuilder(String userName, String password, String host, Integer port) {
+        this(userName, password, host, port, new ClientOptions());
+    }
+
+    /**
+     * 构造方法
+     * @param userName 用户名
+     * @param password 密码
+     * @param host IP或者域名
+     * @param port 端口
+     * @param clientOptions 连接参数配置,为空时使用默认配置
+     */
+    public ElasticsearchClientBuilder(String userName, String password, String host, Integer port, ClientOptions clientOptions) {
         this.userName = userName;
         this.password = password;
         this.host = host;
         this.port = port;
         this.scheme = port == 443 ? "https" : "http";
+        this.clientOptions = clientOptions != null ? clientOptions : new ClientOptions();
     }
 
 
@@ -86,8 +107,16 @@ public class ElasticsearchClientBuilder{
 
         RestHighLevelClient restHighLevelClient = null;
         try {
+            NodeSniffer nodeSniffer = clientOptions.getSniffInterval() > 0 ? new NodeSniffer(scheme, clientOptions.getSniffInterval()) : null;
             RestClientBuilder restClientBuilder = getRestClientBuilder();
+            if(nodeSniffer != null){
+                //节点请求失败时立即嗅探一次
+                restClientBuilder.setFailureListener(nodeSniffer);
+            }
             restHighLevelClient = new RestHighLevelClient(restClientBuilder);
+            if(nodeSniffer != null){
+                nodeSniffer.start(restHighLevelClient.getLowLevelClient());
+            }
             return restHighLevelClient;
         }catch (Exception e){
             log.error("elasticsearch client build failed! errorMsg:" + e.getMessage(),e);
@@ -98,38 +127,84 @@ public class ElasticsearchClientBuilder{
         }
     }
 
+    /**
+     * 获取网络传输字节数统计
+     * @return 该builder构建出的客户端的累计传输字节数
+     */
+    public TrafficStats getTrafficStats() {
+        return trafficStats;
+    }
+
     /**
      * 构建一个restClient的builder
      * @return RestClientBuilder
      */
-    private RestClientBuilder getRestClientBuilder() {
+    private RestClientBuilder getRestClientBuilder() throws Exception {
         CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
         credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(userName, password));
+        PoolingNHttpClientConnectionManager connectionManager = buildConnectionManager();
         return RestClient.builder(
-                new HttpHost(host, port, scheme)
-        ).setRequestConfigCallback(builder -> {
-            builder.setConnectTimeout(60000);
-            builder.setSocketTimeout(60000);
-            builder.setConnectionRequestTimeout(60000);
+                parseHosts()
+        ).setCompressionEnabled(clientOptions.getCompressionEnabled())
+        .setRequestConfigCallback(builder -> {
+            builder.setConnectTimeout(clientOptions.getConnectTimeout());
+            builder.setSocketTimeout(clientOptions.getSocketTimeout());
+            builder.setConnectionRequestTimeout(clientOptions.getConnectionRequestTimeout());
             return builder;
         }).setHttpClientConfigCallback((httpAsyncClientBuilder) -> {
-            httpAsyncClientBuilder.setMaxConnTotal(MAX_CONN_TOTAL);
-            httpAsyncClientBuilder.setMaxConnPerRoute(MAX_CONN_PER_ROUTE);
+            //自定义连接管理器后,连接数需要在连接管理器上设置
+            httpAsyncClientBuilder.setConnectionManager(connectionManager);
+            if(clientOptions.getKeepAlive() > 0){
+                httpAsyncClientBuilder.setKeepAliveStrategy((response, context) -> {
+                    long serverKeepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return serverKeepAlive > 0 ? Math.min(serverKeepAlive, clientOptions.getKeepAlive()) : clientOptions.getKeepAlive();
+                });
+            }
             return httpAsyncClientBuilder.setDefaultCredentialsProvider(credentialsProvider);
         });
     }
 
-    private static JSONObject getFromElasticsearch(RestClient client, String endpoint) throws Exception {
-        Request request = new Request("GET", endpoint);
-        Response response = client.performRequest(request);
-        return (JSONObject) JSONObject.parse(IOUtils.toString(response.getEntity().getContent()));
+    /**
+     * 构建连接管理器,连接建立时包装IOSession,用于统计实际网络传输的字节数
+     * @return 连接管理器
+     * @throws Exception
+     */
+    private PoolingNHttpClientConnectionManager buildConnectionManager() throws Exception {
+        IOReactorConfig.Builder ioReactorConfig = IOReactorConfig.custom()
+                .setConnectTimeout(clientOptions.getConnectTimeout())
+                .setSoTimeout(clientOptions.getSocketTimeout())
+                .setSoKeepAlive(true);
+        if(clientOptions.getIoThreadCount() > 0){
+            ioReactorConfig.setIoThreadCount(clientOptions.getIoThreadCount());
+        }
+        DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(ioReactorConfig.build());
+        PoolingNHttpClientConnectionManager connectionManager = new PoolingNHttpClientConnectionManager(ioReactor,
+                (session, config) -> ManagedNHttpClientConnectionFactory.INSTANCE.create(new CountingIOSession(session, trafficStats), config),
+                RegistryBuilder.<SchemeIOSessionStrategy>create()
+                        .register("http", NoopIOSessionStrategy.INSTANCE)
+                        .register("https", new SSLIOSessionStrategy(SSLContext.getDefault(), SSLIOSessionStrategy.getDefaultHostnameVerifier()))
+                        .build());
+        connectionManager.setMaxTotal(clientOptions.getMaxConnTotal());
+        connectionManager.setDefaultMaxPerRoute(clientOptions.getMaxConnPerRoute());
+        return connectionManager;
     }
 
-    private static void setClusterNodes(RestClient client) throws Exception {
-        final JSONObject nodes = getFromElasticsearch(client, "/_nodes").getJSONObject("nodes");
-        final List<Node> nodeList = nodes.values().stream().map(node ->
-                        new Node(HttpHost.create("http://" + ((JSONObject) node).getJSONObject("http").getString("publish_address"))))
-                .collect(Collectors.toList());
-        client.setNodes(nodeList);
+    /**
+     * 解析种子节点
+     * @return 节点数组
+     */
+    private HttpHost[] parseHosts(){
+        String[] hostArray = host.split(",");
+        HttpHost[] httpHosts = new HttpHost[hostArray.length];
+        for (int i = 0; i < hostArray.length; i++) {
+            String hostItem = hostArray[i].trim();
+            int index = hostItem.lastIndexOf(':');
+            if(index > 0){
+                httpHosts[i] = new HttpHost(hostItem.substring(0, index), Integer.parseInt(hostItem.substring(index + 1)), scheme);
+            }else {
+                httpHosts[i] = new HttpHost(hostItem, port, scheme);
+            }
+        }
+        return httpHosts;
     }
 }
@@ -0,0 +1,211 @@
+package com.app.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.TypeReference;
+import com.alibaba.fastjson.serializer.SerializerFeature;
+import com.app.model.WorkUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName JobLeaseStore
+ * @Description 多进程协作迁移的任务状态文件,记录每个工作单元的状态和租约
+ * 每次读写状态文件前对锁文件加文件锁,保证多个进程的修改互斥;状态文件先写临时文件再原子替换,进程中途退出不会损坏状态文件
+ * 同一个进程内的多个线程通过 synchronized 互斥(同一个进程重复加文件锁会抛出异常)
+ * @Date 2026/10/19 15:11
+ * @Version 1.0
+ **/
+@Slf4j
+public class JobLeaseStore {
+
+    private final File stateFile;
+
+    private final File lockFile;
+
+    private final File tempFile;
+
+    /**
+     * 租约时长,单位毫秒
+     */
+    private final long leaseMillis;
+
+    /**
+     * 单个工作单元的最大领取次数
+     */
+    private final int maxAttempts;
+
+    /**
+     * 构造方法
+     * @param stateFile 任务状态文件
+     * @param leaseMillis 租约时长,单位毫秒
+     * @param maxAttempts 单个工作单元的最大领取次数
+     */
+    public JobLeaseStore(File stateFile, long leaseMillis, int maxAttempts) {
+        this.stateFile = stateFile.getAbsoluteFile();
+        this.lockFile = new File(this.stateFile.getPath() + ".lock");
+        this.tempFile = new File(this.stateFile.getPath() + ".tmp");
+        this.leaseMillis = leaseMillis;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * 注册工作单元,已存在的工作单元保留原状态,多个进程重复注册不会重复迁移
+     * @param units 工作单元
+     * @return 新注册的工作单元数
+     */
+    public int register(List<WorkUnit> units) throws IOException {
+        return this.update(state -> {
+            int added = 0;
+            for (WorkUnit unit : units) {
+                if(state.putIfAbsent(unit.getId(), unit) == null){
+                    added++;
+                }
+            }
+            return added;
+        }, true);
+    }
+
+    /**
+     * 领取一个待迁移或租约已过期的工作单元
+     * @param workerId 进程标识
+     * @return 没有可领取的工作单元时返回null
+     */
+    public WorkUnit claim(String workerId) throws IOException {
+        return this.update(state -> {
+            long now = System.currentTimeMillis();
+            for (WorkUnit unit : state.values()) {
+                boolean expired = WorkUnit.STATUS_LEASED.equals(unit.getStatus()) && unit.getLeaseExpireTime() != null && unit.getLeaseExpireTime() < now;
+                if(WorkUnit.STATUS_PENDING.equals(unit.getStatus()) == false && expired == false){
+                    continue;
+                }
+                if(expired){
+                    log.warn("工作单元[{}]的租约已过期,进程[{}]未续约,由进程[{}]重新领取",unit.getId(),unit.getOwner(),workerId);
+                }
+                if(unit.getAttempts() >= this.maxAttempts){
+                    unit.setStatus(WorkUnit.STATUS_FAILED);
+                    log.error("工作单元[{}]已领取[{}]次,超过最大领取次数,标记为失败",unit.getId(),unit.getAttempts());
+                    continue;
+                }
+                unit.setStatus(WorkUnit.STATUS_LEASED);
+                unit.setOwner(workerId);
+                unit.setLeaseExpireTime(now + this.leaseMillis);
+                unit.setAttempts(unit.getAttempts() + 1);
+                return unit;
+            }
+            return null;
+        }, true);
+    }
+
+    /**
+     * 为进程持有的工作单元续约
+     * @param workerId 进程标识
+     * @param unitIds 进程中执行中的工作单元
+     * @return 已被其他进程领取或已结束的工作单元,进程需要停止迁移这些工作单元
+     */
+    public Set<String> renew(String workerId, Collection<String> unitIds) throws IOException {
+        if(unitIds.isEmpty()){
+            return new HashSet<>();
+        }
+        return this.update(state -> {
+            Set<String> lost = new HashSet<>();
+            long expireTime = System.currentTimeMillis() + this.leaseMillis;
+            for (String unitId : unitIds) {
+                WorkUnit unit = state.get(unitId);
+                if(unit == null || WorkUnit.STATUS_LEASED.equals(unit.getStatus()) == false || workerId.equals(unit.getOwner()) == false){
+                    lost.add(unitId);
+                    continue;
+                }
+                unit.setLeaseExpireTime(expireTime);
+            }
+            return lost;
+        }, true);
+    }
+
+    /**
+     * 工作单元迁移结束,成功时标记为完成,失败时释放租约由其他进程重新领取
+     * @param workerId 进程标识
+     * @param unitId 工作单元ID
+     * @param success 是否成功
+     * @return 是否更新了状态,租约已被其他进程领取时返回false
+     */
+    public boolean complete(String workerId, String unitId, boolean success) throws IOException {
+        return this.update(state -> {
+            WorkUnit unit = state.get(unitId);
+            if(unit == null || WorkUnit.STATUS_LEASED.equals(unit.getStatus()) == false || workerId.equals(unit.getOwner()) == false){
+                return false;
+            }
+            unit.setStatus(success ? WorkUnit.STATUS_DONE : WorkUnit.STATUS_PENDING);
+            unit.setLeaseExpireTime(null);
+            return true;
+        }, true);
+    }
+
+    /**
+     * 所有工作单元是否都已结束
+     */
+    public boolean isFinished() throws IOException {
+        return this.update(state -> state.values().stream().allMatch(WorkUnit::isFinished), false);
+    }
+
+    /**
+     * 各状态的工作单元数
+     */
+    public Map<String, Integer> countByStatus() throws IOException {
+        return this.update(state -> {
+            Map<String, Integer> counts = new TreeMap<>();
+            state.values().forEach(unit -> counts.merge(unit.getStatus(), 1, Integer::sum));
+            return counts;
+        }, false);
+    }
+
+    /**
+     * 加锁后读取状态文件,执行操作后写回
+     * @param action 操作
+     * @param write 是否写回
+     * @return 操作的结果
+     */
+    private synchronized <T> T update(Function<Map<String, WorkUnit>, T> action, boolean write) throws IOException {
+        try (RandomAccessFile lockAccess = new RandomAccessFile(this.lockFile, "rw");
+             FileChannel channel = lockAccess.getChannel()) {
+            FileLock lock = channel.lock();
+            try {
+                Map<String, WorkUnit> state = this.read();
+                T result = action.apply(state);
+                if(write){
+                    FileUtils.writeStringToFile(this.tempFile, JSON.toJSONString(state, SerializerFeature.PrettyFormat), StandardCharsets.UTF_8);
+                    Files.move(this.tempFile.toPath(), this.stateFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+                return result;
+            }finally {
+                lock.release();
+            }
+        }
+    }
+
+    private Map<String, WorkUnit> read() throws IOException {
+        if(this.stateFile.isFile() == false || this.stateFile.length() == 0){
+            return new LinkedHashMap<>();
+        }
+        String json = FileUtils.readFileToString(this.stateFile, StandardCharsets.UTF_8);
+        Map<String, WorkUnit> state = JSON.parseObject(json, new TypeReference<LinkedHashMap<String, WorkUnit>>(){});
+        return state != null ? state : new LinkedHashMap<>();
+    }
+}
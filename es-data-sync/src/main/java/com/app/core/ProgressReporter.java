@@ -0,0 +1,139 @@
+package com.app.core;
+
+import com.app.model.DataTotalCount;
+import com.app.model.SyncTarget;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName ProgressReporter
+ * @Description 同步进度汇总,定时打印总进度和读写速率,以及进度有变化的索引,代替每批次打印日志
+ * @Date 2026/10/19 14:42
+ * @Version 1.0
+ **/
+@Slf4j
+public class ProgressReporter {
+
+    private final DataSyncProcessor.DataSyncConfig config;
+
+    /**
+     * 打印间隔,单位秒
+     */
+    private final long intervalSeconds;
+
+    /**
+     * 上一次打印时每个索引的读取和写入数量,只在定时线程中访问
+     */
+    private final Map<String, Long> lastCounts = new HashMap<>();
+
+    /**
+     * 上一次打印时的读取总数
+     */
+    private long lastReadTotal;
+
+    /**
+     * 上一次打印时每个目标集群的写入总数
+     */
+    private final Map<String, Long> lastWriteTotals = new HashMap<>();
+
+    /**
+     * 上一次打印的时间
+     */
+    private long lastReportTime;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 构造方法
+     * @param config es数据同步相关配置
+     * @param intervalSeconds 打印间隔,单位秒
+     */
+    public ProgressReporter(DataSyncProcessor.DataSyncConfig config, long intervalSeconds) {
+        this.config = config;
+        this.intervalSeconds = intervalSeconds;
+    }
+
+    /**
+     * 开始定时打印
+     */
+    public void start(){
+        this.lastReportTime = System.currentTimeMillis();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("es-dump-progress-%d").setDaemon(true).build());
+        this.scheduler.scheduleAtFixedRate(this::report, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止定时打印
+     */
+    public void stop(){
+        if(scheduler != null){
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 打印一次进度
+     */
+    private void report(){
+        try {
+            long now = System.currentTimeMillis();
+            double seconds = Math.max(now - lastReportTime, 1L) / 1000.0;
+            long expectedTotal = 0L;
+            long readTotal = 0L;
+            int finishedIndexCount = 0;
+            Map<String, Long> writeTotals = new HashMap<>();
+            for (Map.Entry<String, DataTotalCount> entry : this.config.getTotalCountMap().entrySet()) {
+                DataTotalCount totalCount = entry.getValue();
+                long read = totalCount.getReadTotalCount();
+                expectedTotal += totalCount.getExpectedTotalCount();
+                readTotal += read;
+                StringBuilder writeDetail = new StringBuilder();
+                long writeSum = 0L;
+                boolean finished = read >= totalCount.getExpectedTotalCount();
+                for (SyncTarget target : this.config.getTargets()) {
+                    long write = totalCount.getWriteTotalCount(target.getName());
+                    writeTotals.merge(target.getName(), write, Long::sum);
+                    writeSum += write;
+                    finished = finished && write >= read;
+                    writeDetail.append(writeDetail.length() > 0 ? ", " : "").append(target.getName()).append('=').append(write);
+                }
+                if(finished){
+                    finishedIndexCount++;
+                }
+                //只打印进度有变化的索引
+                Long lastRead = lastCounts.put(entry.getKey() + "#read", read);
+                Long lastWrite = lastCounts.put(entry.getKey() + "#write", writeSum);
+                if(lastRead != null && lastRead == read && lastWrite != null && lastWrite == writeSum){
+                    continue;
+                }
+                log.info("同步进度 -> [{}], 读取:[{}/{}]({}), 写入:[{}]", entry.getKey(), read, totalCount.getExpectedTotalCount(), percent(read, totalCount.getExpectedTotalCount()), writeDetail);
+            }
+            StringBuilder writeSummary = new StringBuilder();
+            for (Map.Entry<String, Long> entry : writeTotals.entrySet()) {
+                long lastWriteTotal = lastWriteTotals.getOrDefault(entry.getKey(), 0L);
+                writeSummary.append(writeSummary.length() > 0 ? ", " : "").append(entry.getKey()).append('=').append(entry.getValue())
+                        .append('(').append(Math.round((entry.getValue() - lastWriteTotal) / seconds)).append("/s)");
+            }
+            log.info("同步进度汇总: 已完成索引:[{}/{}], 读取:[{}/{}]({}), 读取速率:[{}/s], 写入:[{}]", finishedIndexCount, this.config.getTotalCountMap().size(), readTotal, expectedTotal, percent(readTotal, expectedTotal), Math.round((readTotal - lastReadTotal) / seconds), writeSummary);
+            this.lastReadTotal = readTotal;
+            this.lastWriteTotals.putAll(writeTotals);
+            this.lastReportTime = now;
+        }catch (Exception e){
+            log.error("打印同步进度异常:" + e.getMessage(), e);
+        }
+    }
+
+    private static String percent(long count, long total){
+        if(total <= 0L){
+            return "-";
+        }
+        return String.format("%.1f%%", count * 100.0 / total);
+    }
+}
@@ -0,0 +1,313 @@
+package com.app.core;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.app.model.DataTotalCount;
+import com.app.model.ReindexOption;
+import com.app.model.ReindexRemoteOption;
+import com.app.model.SyncSource;
+import com.app.model.SyncTarget;
+import com.app.service.ElasticsearchService;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName ReindexDelegator
+ * @Description 服务端 reindex 迁移,每个索引在每个目标集群提交一个 reindex 任务,由目标集群直接从数据源拉取数据
+ * 定时通过 tasks API 查询任务进度并累加到与客户端迁移相同的索引统计中,
+ * 写入限速(writeDocsPerSecond)平均分配给执行中的任务,限速随限速计划和控制文件变化时通过 _rethrottle 调整
+ * 每个数据源同时迁移的索引数与客户端迁移的读取并发数(readerThreads)一致
+ * @Date 2026/10/19 15:07
+ * @Version 1.0
+ **/
+@Slf4j
+public class ReindexDelegator {
+
+    /**
+     * 连续查询任务状态失败的最大次数,超过后认为任务失败
+     */
+    private static final int MAX_POLL_FAILURES = 10;
+
+    /**
+     * 速率变化超过该比例时才调整
+     */
+    private static final double RETHROTTLE_TOLERANCE = 0.01D;
+
+    private final DataSyncProcessor.DataSyncConfig config;
+
+    private final ReindexOption option;
+
+    /**
+     * 执行中的任务
+     */
+    private final List<ReindexTask> runningTasks = new ArrayList<>();
+
+    /**
+     * 所有提交的任务,用于计算每个索引的读取数量
+     */
+    private final List<ReindexTask> allTasks = new ArrayList<>();
+
+    private int failedTaskCount;
+
+    public ReindexDelegator(DataSyncProcessor.DataSyncConfig config) {
+        this.config = config;
+        this.option = config.getSyncOptions().getReindexOption();
+    }
+
+    /**
+     * 提交并等待所有索引的 reindex 任务完成,任务终止时取消执行中的任务,有任务失败时终止迁移任务
+     * @return 执行结果
+     */
+    public String run() throws InterruptedException {
+        Map<SyncSource, Queue<String>> pendingIndexTasks = new LinkedHashMap<>();
+        for (SyncSource source : this.config.getSources()) {
+            pendingIndexTasks.put(source, new ArrayDeque<>(Arrays.asList(source.getIndexArray())));
+        }
+        long pollMillis = TimeUnit.SECONDS.toMillis(Math.max(this.option.getPollInterval(), 1L));
+        boolean completed = false;
+        try {
+            while (this.config.isAborted() == false){
+                this.submitPending(pendingIndexTasks);
+                if(this.runningTasks.isEmpty() && pendingIndexTasks.values().stream().allMatch(Queue::isEmpty)){
+                    completed = true;
+                    break;
+                }
+                TimeUnit.MILLISECONDS.sleep(pollMillis);
+                this.pollTasks();
+                this.rethrottle();
+            }
+        }finally {
+            if(completed == false){
+                this.cancelRunning();
+            }
+        }
+        String result = "reindex任务数:[" + this.allTasks.size() + "],失败:[" + this.failedTaskCount + "]";
+        if(this.failedTaskCount > 0){
+            //提交失败、执行出错或无法查询状态的任务,迁移结果不完整,不能报告为成功
+            this.config.abort("有reindex任务失败! " + result);
+        }
+        return result;
+    }
+
+    /**
+     * 按每个数据源的并发数提交待迁移的索引
+     */
+    private void submitPending(Map<SyncSource, Queue<String>> pendingIndexTasks){
+        for (Map.Entry<SyncSource, Queue<String>> entry : pendingIndexTasks.entrySet()) {
+            SyncSource source = entry.getKey();
+            Queue<String> indexTasks = entry.getValue();
+            while (indexTasks.isEmpty() == false && (source.getReaderThreads() <= 0 || this.runningIndexCount(source) < source.getReaderThreads())){
+                this.submit(source, indexTasks.poll());
+            }
+        }
+    }
+
+    /**
+     * 在每个目标集群提交一个索引的 reindex 任务
+     */
+    private void submit(SyncSource source, String indexTask){
+        DataTotalCount totalCount = this.config.getTotalCount(source.getName(), indexTask);
+        if(totalCount == null){
+            //初始化时判断为不需要迁移的索引
+            return;
+        }
+        ElasticsearchService service = this.config.getElasticsearchService();
+        ReindexRemoteOption remote = this.option.getRemote(source.getName());
+        String inputIndexName = totalCount.getInputIndexName();
+        for (SyncTarget target : this.config.getTargets()) {
+            //新任务加入后平均分配的速率,其他任务在下一次调整时生效
+            Double rate = this.ratePerTask(this.runningTasks.size() + 1);
+            try {
+                String taskId = service.submitReindex(target.getClient(), inputIndexName, totalCount.getOutputIndexName(),
+                        this.config.getSyncOptions().getIndexQueryOption(inputIndexName), remote, this.option.getSlices(), this.config.getSingleTransferSize(), rate);
+                ReindexTask task = new ReindexTask(source, indexTask, target, taskId, totalCount, rate);
+                this.runningTasks.add(task);
+                this.allTasks.add(task);
+                log.info("索引同步任务 -> [{}], 目标集群 -> [{}], 已提交{}reindex任务[{}], 每秒写入文档数:[{}]",indexTask,target.getName(),remote != null ? "远程" : "本地",taskId,rate != null ? rate : "不限速");
+            }catch (Exception e){
+                this.failedTaskCount++;
+                log.error("索引同步任务 -> [" + indexTask + "], 目标集群 -> [" + target.getName() + "],提交reindex任务异常." + e.getMessage(),e);
+            }
+        }
+    }
+
+    /**
+     * 查询执行中任务的进度,累加到索引统计中
+     */
+    private void pollTasks(){
+        ElasticsearchService service = this.config.getElasticsearchService();
+        for (ReindexTask task : new ArrayList<>(this.runningTasks)) {
+            JSONObject taskInfo;
+            try {
+                taskInfo = service.getTask(task.target.getClient(), task.taskId);
+                task.pollFailures = 0;
+            }catch (Exception e){
+                log.warn("索引同步任务 -> [{}], 目标集群 -> [{}],查询reindex任务[{}]状态异常:{}",task.indexTask,task.target.getName(),task.taskId,e.getMessage());
+                if(++task.pollFailures >= MAX_POLL_FAILURES){
+                    this.runningTasks.remove(task);
+                    this.failedTaskCount++;
+                    log.error("索引同步任务 -> [{}], 目标集群 -> [{}],reindex任务[{}]连续[{}]次查询状态失败,不再等待该任务",task.indexTask,task.target.getName(),task.taskId,MAX_POLL_FAILURES);
+                }
+                continue;
+            }
+            boolean completed = taskInfo.getBooleanValue("completed");
+            //完成后 response 中为最终结果,执行中 task.status 为当前进度
+            JSONObject status = completed && taskInfo.getJSONObject("response") != null ? taskInfo.getJSONObject("response") : taskInfo.getJSONObject("task").getJSONObject("status");
+            if(status != null){
+                long processed = status.getLongValue("created") + status.getLongValue("updated") + status.getLongValue("deleted")
+                        + status.getLongValue("version_conflicts") + status.getLongValue("noops");
+                if(processed > task.processed){
+                    task.totalCount.writeTotalCountIncr(task.target.getName(), (int) (processed - task.processed));
+                    task.processed = processed;
+                }
+            }
+            if(completed){
+                this.runningTasks.remove(task);
+                this.logCompleted(task, taskInfo, status);
+            }
+        }
+        this.updateReadCounts();
+    }
+
+    /**
+     * 每个索引的读取数量取各目标集群任务中处理数量的最大值
+     */
+    private void updateReadCounts(){
+        Map<DataTotalCount, Long> processedByIndex = new HashMap<>();
+        for (ReindexTask task : this.allTasks) {
+            processedByIndex.merge(task.totalCount, task.processed, Math::max);
+        }
+        for (Map.Entry<DataTotalCount, Long> entry : processedByIndex.entrySet()) {
+            long delta = entry.getValue() - entry.getKey().getReadTotalCount();
+            if(delta > 0){
+                entry.getKey().readTotalIncr((int) delta);
+            }
+        }
+    }
+
+    private void logCompleted(ReindexTask task, JSONObject taskInfo, JSONObject status){
+        JSONObject error = taskInfo.getJSONObject("error");
+        JSONArray failures = status != null ? status.getJSONArray("failures") : null;
+        if(error != null || (failures != null && failures.isEmpty() == false)){
+            this.failedTaskCount++;
+            Object firstError = error != null ? error : failures.get(0);
+            log.error("索引同步任务 -> [{}], 目标集群 -> [{}],reindex任务[{}]执行失败,失败数:[{}],第一条错误:{}",task.indexTask,task.target.getName(),task.taskId,failures != null ? failures.size() : 1,firstError);
+            return;
+        }
+        log.info("索引同步任务 -> [{}], 目标集群 -> [{}],reindex任务[{}]完成! 创建:[{}],更新:[{}],已存在:[{}],耗时[{}ms]",task.indexTask,task.target.getName(),task.taskId,
+                status != null ? status.getLongValue("created") : 0L, status != null ? status.getLongValue("updated") : 0L,
+                status != null ? status.getLongValue("version_conflicts") : 0L, status != null ? status.getLongValue("took") : 0L);
+    }
+
+    /**
+     * 写入限速平均分配给执行中的任务,速率有变化时调整
+     */
+    private void rethrottle(){
+        if(this.runningTasks.isEmpty()){
+            return;
+        }
+        Double rate = this.ratePerTask(this.runningTasks.size());
+        for (ReindexTask task : this.runningTasks) {
+            if(sameRate(task.requestsPerSecond, rate)){
+                continue;
+            }
+            try {
+                this.config.getElasticsearchService().rethrottleReindex(task.target.getClient(), task.taskId, rate);
+                log.info("索引同步任务 -> [{}], 目标集群 -> [{}],reindex任务[{}]每秒写入文档数调整为:[{}]",task.indexTask,task.target.getName(),task.taskId,rate != null ? rate : "不限速");
+                task.requestsPerSecond = rate;
+            }catch (Exception e){
+                //任务可能刚好完成,下一次查询状态时处理
+                log.warn("索引同步任务 -> [{}], 目标集群 -> [{}],调整reindex任务[{}]速率异常:{}",task.indexTask,task.target.getName(),task.taskId,e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 取消执行中的任务
+     */
+    private void cancelRunning(){
+        for (ReindexTask task : this.runningTasks) {
+            try {
+                this.config.getElasticsearchService().cancelTask(task.target.getClient(), task.taskId);
+                log.warn("索引同步任务 -> [{}], 目标集群 -> [{}],已取消reindex任务[{}]",task.indexTask,task.target.getName(),task.taskId);
+            }catch (Exception e){
+                log.error("索引同步任务 -> [" + task.indexTask + "], 目标集群 -> [" + task.target.getName() + "],取消reindex任务[" + task.taskId + "]异常." + e.getMessage(),e);
+            }
+        }
+        this.runningTasks.clear();
+    }
+
+    /**
+     * 每个任务的速率
+     * @param taskCount 任务数
+     * @return 不限速时返回null
+     */
+    private Double ratePerTask(int taskCount){
+        Double writeDocsRate = this.config.getThroughputLimiter() != null ? this.config.getThroughputLimiter().getWriteDocsRate() : null;
+        if(writeDocsRate == null){
+            return null;
+        }
+        return writeDocsRate / Math.max(taskCount, 1);
+    }
+
+    private static boolean sameRate(Double a, Double b){
+        if(a == null || b == null){
+            return a == b;
+        }
+        return Math.abs(a - b) <= Math.max(a, b) * RETHROTTLE_TOLERANCE;
+    }
+
+    /**
+     * 数据源中执行中的索引数,同一个索引在多个目标集群的任务算一个
+     */
+    private long runningIndexCount(SyncSource source){
+        return this.runningTasks.stream().filter(task -> task.source == source).map(task -> task.indexTask).distinct().count();
+    }
+
+    /**
+     * 一个索引在一个目标集群的 reindex 任务
+     */
+    private static class ReindexTask {
+
+        private final SyncSource source;
+
+        private final String indexTask;
+
+        private final SyncTarget target;
+
+        private final String taskId;
+
+        private final DataTotalCount totalCount;
+
+        /**
+         * 当前的速率,为空表示不限速
+         */
+        private Double requestsPerSecond;
+
+        /**
+         * 已处理的文档数
+         */
+        private long processed;
+
+        private int pollFailures;
+
+        private ReindexTask(SyncSource source, String indexTask, SyncTarget target, String taskId, DataTotalCount totalCount, Double requestsPerSecond) {
+            this.source = source;
+            this.indexTask = indexTask;
+            this.target = target;
+            this.taskId = taskId;
+            this.totalCount = totalCount;
+            this.requestsPerSecond = requestsPerSecond;
+        }
+    }
+}
@@ -0,0 +1,425 @@
+package com.app.core;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONException;
+import com.alibaba.fastjson.JSONObject;
+import com.app.client.impl.ElasticsearchClientBuilder;
+import com.app.model.ClientOptions;
+import com.app.model.DaemonOption;
+import com.app.model.SourceClusterOption;
+import com.app.model.SyncJob;
+import com.app.model.SyncOptions;
+import com.app.model.TargetClusterOption;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.IOUtils;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName SyncDaemon
+ * @Description 同步任务守护进程,常驻运行并通过本地 HTTP 接口接收同步任务
+ * 相同集群、账号和连接参数的客户端只构建一次,多个任务共用,省去每次启动 JVM、预热和建立连接的耗时;
+ * 任务按优先级排队,同时执行的任务数和所有任务合计的写入并发数由守护进程配置限制
+ * 接口:
+ * POST   /jobs      提交任务,请求体为 SyncJob 的 json,返回任务ID
+ * GET    /jobs      查询所有任务的状态
+ * GET    /jobs/{id} 查询单个任务的状态
+ * DELETE /jobs/{id} 取消排队中的任务或终止执行中的任务,执行中的任务在读写线程结束后才变为已取消
+ * GET    /status    查询守护进程状态
+ * @Date 2026/10/19 15:14
+ * @Version 1.0
+ **/
+@Slf4j
+public class SyncDaemon {
+
+    private static final String JOBS_PATH = "/jobs";
+
+    /**
+     * 任务结束时等待读写线程结束的最长时间,与单次迁移等待写出线程的时间一致
+     */
+    private static final long STOP_TIMEOUT_MINUTES = 60L;
+
+    /**
+     * 优先级高的先执行,相同优先级先提交的先执行
+     */
+    private static final Comparator<SyncJob> JOB_ORDER = Comparator.comparing(SyncJob::getPriority, Comparator.reverseOrder()).thenComparingLong(SyncJob::getSequence);
+
+    private final DaemonOption option;
+
+    /**
+     * 所有任务合计的写入许可,为空时按各任务的配置限制
+     */
+    private final Semaphore writePermits;
+
+    /**
+     * 共用的客户端,key 为集群地址、账号和连接参数
+     */
+    private final Map<String, SharedClient> clients = new ConcurrentHashMap<>();
+
+    private final PriorityBlockingQueue<SyncJob> queue = new PriorityBlockingQueue<>(16, JOB_ORDER);
+
+    /**
+     * 所有未删除的任务,包括排队中、执行中和已结束的任务
+     */
+    private final Map<String, SyncJob> jobs = new ConcurrentHashMap<>();
+
+    /**
+     * 执行中的任务处理器,用于终止任务
+     */
+    private final Map<String, DataSyncProcessor> runningProcessors = new ConcurrentHashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private ExecutorService jobExecutor;
+
+    private HttpServer server;
+
+    private volatile boolean stopped = false;
+
+    public SyncDaemon(DaemonOption option) {
+        this.option = option;
+        this.writePermits = option.getMaxConcurrentWrites() > 0 ? new Semaphore(option.getMaxConcurrentWrites()) : null;
+    }
+
+    /**
+     * 启动任务执行线程和 HTTP 接口
+     */
+    public void start() throws IOException {
+        int jobThreads = Math.max(this.option.getMaxConcurrentJobs(), 1);
+        this.jobExecutor = Executors.newFixedThreadPool(jobThreads, new ThreadFactoryBuilder().setNameFormat("es-dump-job-%d").build());
+        for (int i = 0; i < jobThreads; i++) {
+            this.jobExecutor.execute(this::takeJobs);
+        }
+        this.server = HttpServer.create(new InetSocketAddress(this.option.getBindHost(), this.option.getPort()), 0);
+        this.server.createContext(JOBS_PATH, this::handleJobs);
+        this.server.createContext("/status", exchange -> respond(exchange, 200, this.status()));
+        this.server.setExecutor(Executors.newFixedThreadPool(2, new ThreadFactoryBuilder().setNameFormat("es-dump-http-%d").setDaemon(true).build()));
+        this.server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::stop, "es-dump-daemon-shutdown"));
+        log.info("同步任务守护进程启动完成! 监听地址[{}:{}],同时执行的任务数[{}],合计同时写入的批次数[{}]",
+                this.option.getBindHost(), this.option.getPort(), jobThreads, this.writePermits != null ? this.option.getMaxConcurrentWrites() : "不限制");
+    }
+
+    /**
+     * 停止接收任务,终止执行中的任务并关闭共用的客户端
+     */
+    public synchronized void stop(){
+        if(this.stopped){
+            return;
+        }
+        this.stopped = true;
+        log.info("同步任务守护进程停止中,排队中的任务[{}]个,执行中的任务[{}]个",this.queue.size(),this.runningProcessors.size());
+        if(this.server != null){
+            this.server.stop(0);
+        }
+        this.runningProcessors.values().forEach(processor -> processor.getConfig().abort("守护进程停止"));
+        if(this.jobExecutor != null){
+            this.jobExecutor.shutdownNow();
+            try {
+                this.jobExecutor.awaitTermination(60L, TimeUnit.SECONDS);
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SharedClient sharedClient : this.clients.values()) {
+            try {
+                sharedClient.client.close();
+            }catch (IOException e){
+                log.warn("关闭客户端[{}]异常:{}",sharedClient.name,e.getMessage());
+            }
+        }
+        this.clients.clear();
+    }
+
+    /**
+     * 提交任务
+     * @param job 任务
+     * @return 任务ID
+     */
+    public String submit(SyncJob job){
+        if(job.getSource() == null || job.getTarget() == null || job.getSource().getIndices() == null){
+            throw new IllegalArgumentException("source, target and source.indices are required");
+        }
+        if(this.stopped){
+            throw new IllegalStateException("daemon is stopped");
+        }
+        job.setId(UUID.randomUUID().toString().replace("-", ""));
+        job.setSequence(this.sequence.incrementAndGet());
+        job.setPriority(job.getPriority() != null ? job.getPriority() : 0);
+        job.setOptions(job.getOptions() != null ? job.getOptions() : new SyncOptions());
+        job.setStatus(SyncJob.STATUS_QUEUED);
+        job.setSubmitTime(System.currentTimeMillis());
+        this.jobs.put(job.getId(), job);
+        this.queue.put(job);
+        this.evictFinishedJobs();
+        log.info("提交同步任务[{}],优先级[{}],索引[{}],排队中的任务[{}]个",job.getId(),job.getPriority(),job.getSource().getIndices(),this.queue.size());
+        return job.getId();
+    }
+
+    /**
+     * 取消任务,排队中的任务直接移出队列,执行中的任务终止并等待读写线程结束后结束
+     * @param jobId 任务ID
+     * @return 任务不存在或已结束时返回false
+     */
+    public boolean cancel(String jobId){
+        SyncJob job = this.jobs.get(jobId);
+        if(job == null || job.isFinished()){
+            return false;
+        }
+        job.setCancelRequested(true);
+        if(this.queue.remove(job)){
+            this.finish(job, SyncJob.STATUS_CANCELLED, "任务在排队中取消");
+            return true;
+        }
+        DataSyncProcessor processor = this.runningProcessors.get(jobId);
+        if(processor != null){
+            //状态保持执行中,读写线程结束后才标记为已取消
+            job.setMessage("取消中,等待读写线程结束");
+            processor.getConfig().abort("任务已取消");
+        }
+        return true;
+    }
+
+    /**
+     * 任务执行线程,依次从队列中取出优先级最高的任务执行
+     */
+    private void takeJobs(){
+        while (this.stopped == false){
+            SyncJob job;
+            try {
+                job = this.queue.take();
+            }catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            }
+            this.runJob(job);
+        }
+    }
+
+    private void runJob(SyncJob job){
+        job.setStatus(SyncJob.STATUS_RUNNING);
+        job.setStartTime(System.currentTimeMillis());
+        log.info("同步任务[{}]开始执行,排队耗时[{}]ms",job.getId(),job.getStartTime() - job.getSubmitTime());
+        DataSyncProcessor processor = null;
+        String status = SyncJob.STATUS_FAILED;
+        String message = null;
+        try {
+            SourceClusterOption source = job.getSource();
+            TargetClusterOption target = job.getTarget();
+            RestHighLevelClient inputClient = this.getClient(source.getHost(), source.getPort(), source.getUsername(), source.getPassword(), source.getClientOptions());
+            RestHighLevelClient outputClient = this.getClient(target.getHost(), target.getPort(), target.getUsername(), target.getPassword(), target.getClientOptions());
+            processor = DataSyncProcessor.buildDataSyncProcessor(inputClient, outputClient, source.getIndices().split(","), job.getDequeSize(), job.getSingleTransferSize(),
+                    job.getCustomOutputIndex(), job.getDequeListenerTimeout(), job.getOptions());
+            processor.useSharedResources(this.writePermits);
+            for (SourceClusterOption sourceOption : job.getOptions().getSources()) {
+                processor.addSource(sourceOption.getName(), this.getClient(sourceOption.getHost(), sourceOption.getPort(), sourceOption.getUsername(), sourceOption.getPassword(), sourceOption.getClientOptions()),
+                        sourceOption.getIndices().split(","), sourceOption.getReaderThreads());
+            }
+            for (TargetClusterOption targetOption : job.getOptions().getTargets()) {
+                processor.addTarget(targetOption.getName(), this.getClient(targetOption.getHost(), targetOption.getPort(), targetOption.getUsername(), targetOption.getPassword(), targetOption.getClientOptions()),
+                        targetOption.getMaxInFlightBulks());
+            }
+            this.runningProcessors.put(job.getId(), processor);
+            if(job.isCancelRequested()){
+                //取消请求在处理器登记前到达
+                processor.getConfig().abort("任务已取消");
+            }
+            processor.init();
+            processor.start();
+            status = SyncJob.STATUS_SUCCEEDED;
+        }catch (Exception e){
+            log.error("同步任务[" + job.getId() + "]执行异常." + e.getMessage(),e);
+            status = job.isCancelRequested() ? SyncJob.STATUS_CANCELLED : SyncJob.STATUS_FAILED;
+            message = e.getMessage();
+        }finally {
+            if(processor != null){
+                this.stopProcessor(job, processor);
+            }
+            this.runningProcessors.remove(job.getId());
+            //读写线程都已结束,任务不会再读写数据
+            this.finish(job, status, message);
+        }
+    }
+
+    /**
+     * 释放任务的资源,等待读写线程结束
+     */
+    private void stopProcessor(SyncJob job, DataSyncProcessor processor){
+        processor.destroy();
+        try {
+            if(processor.awaitTermination(STOP_TIMEOUT_MINUTES, TimeUnit.MINUTES) == false){
+                log.warn("同步任务[{}]的读写线程在[{}]分钟内未结束",job.getId(),STOP_TIMEOUT_MINUTES);
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void finish(SyncJob job, String status, String message){
+        job.setEndTime(System.currentTimeMillis());
+        job.setMessage(message);
+        job.setStatus(status);
+        log.info("同步任务[{}]结束,状态[{}],执行耗时[{}]ms",job.getId(),status,job.getStartTime() != null ? job.getEndTime() - job.getStartTime() : 0L);
+    }
+
+    /**
+     * 获取共用的客户端,不存在时构建
+     */
+    private RestHighLevelClient getClient(String host, Integer port, String username, String password, ClientOptions clientOptions){
+        ClientOptions options = clientOptions != null ? clientOptions : new ClientOptions();
+        //密码不同的相同账号视为不同客户端,避免使用错误的凭据复用连接
+        String key = host + ":" + port + "|" + username + "|" + password + "|" + JSON.toJSONString(options);
+        return this.clients.computeIfAbsent(key, k -> {
+            ElasticsearchClientBuilder builder = new ElasticsearchClientBuilder(username, password, host, port, options);
+            try {
+                RestHighLevelClient client = builder.buildClient();
+                log.info("构建共用客户端[{}:{}],账号[{}]",host,port,username);
+                return new SharedClient(host + ":" + port, builder, client);
+            }catch (IOException e){
+                throw new IllegalStateException("elasticsearch client build failed! " + e.getMessage(), e);
+            }
+        }).client;
+    }
+
+    /**
+     * 已结束的任务超过保留数时,删除最早提交的已结束任务
+     */
+    private void evictFinishedJobs(){
+        List<SyncJob> finished = new ArrayList<>();
+        for (SyncJob job : this.jobs.values()) {
+            if(job.isFinished()){
+                finished.add(job);
+            }
+        }
+        int evictCount = finished.size() - Math.max(this.option.getRetainedJobs(), 0);
+        if(evictCount <= 0){
+            return;
+        }
+        finished.sort(Comparator.comparingLong(SyncJob::getSequence));
+        for (int i = 0; i < evictCount; i++) {
+            this.jobs.remove(finished.get(i).getId());
+        }
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String jobId = path.length() > JOBS_PATH.length() + 1 ? path.substring(JOBS_PATH.length() + 1) : null;
+            String method = exchange.getRequestMethod();
+            if(jobId == null && "POST".equals(method)){
+                String body = IOUtils.toString(exchange.getRequestBody(), StandardCharsets.UTF_8);
+                SyncJob job = JSON.parseObject(body, SyncJob.class);
+                if(job == null){
+                    respond(exchange, 400, error("request body is required"));
+                    return;
+                }
+                String id = this.submit(job);
+                JSONObject result = new JSONObject();
+                result.put("id", id);
+                result.put("status", job.getStatus());
+                respond(exchange, 200, result);
+            }else if(jobId == null && "GET".equals(method)){
+                List<JSONObject> views = new ArrayList<>();
+                this.jobs.values().stream().sorted(Comparator.comparingLong(SyncJob::getSequence)).forEach(job -> views.add(view(job)));
+                respond(exchange, 200, views);
+            }else if(jobId != null && "GET".equals(method)){
+                SyncJob job = this.jobs.get(jobId);
+                respond(exchange, job != null ? 200 : 404, job != null ? view(job) : error("job [" + jobId + "] not found"));
+            }else if(jobId != null && "DELETE".equals(method)){
+                boolean cancelled = this.cancel(jobId);
+                respond(exchange, cancelled ? 200 : 404, cancelled ? view(this.jobs.get(jobId)) : error("job [" + jobId + "] not found or finished"));
+            }else {
+                respond(exchange, 405, error("unsupported request [" + method + " " + path + "]"));
+            }
+        }catch (IllegalArgumentException | IllegalStateException | JSONException e){
+            respond(exchange, 400, error(e.getMessage()));
+        }catch (Exception e){
+            log.error("处理请求异常." + e.getMessage(), e);
+            respond(exchange, 500, error(e.getMessage()));
+        }
+    }
+
+    private JSONObject status(){
+        JSONObject status = new JSONObject();
+        status.put("queued", this.queue.size());
+        status.put("running", this.runningProcessors.size());
+        status.put("jobs", this.jobs.size());
+        status.put("clients", this.clients.size());
+        status.put("availableWritePermits", this.writePermits != null ? this.writePermits.availablePermits() : null);
+        JSONObject traffic = new JSONObject();
+        this.clients.values().forEach(sharedClient -> traffic.put(sharedClient.name, sharedClient.builder.getTrafficStats().toString()));
+        status.put("traffic", traffic);
+        return status;
+    }
+
+    /**
+     * 任务状态,不包含集群账号密码等请求参数
+     */
+    private static JSONObject view(SyncJob job){
+        JSONObject view = new JSONObject(true);
+        view.put("id", job.getId());
+        view.put("priority", job.getPriority());
+        view.put("status", job.getStatus());
+        view.put("source", job.getSource().getHost() + ":" + job.getSource().getPort());
+        view.put("target", job.getTarget().getHost() + ":" + job.getTarget().getPort());
+        view.put("indices", job.getSource().getIndices());
+        view.put("submitTime", job.getSubmitTime());
+        view.put("startTime", job.getStartTime());
+        view.put("endTime", job.getEndTime());
+        view.put("message", job.getMessage());
+        return view;
+    }
+
+    private static JSONObject error(String message){
+        JSONObject error = new JSONObject();
+        error.put("error", message);
+        return error;
+    }
+
+    private static void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = JSON.toJSONString(body).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * 共用的客户端和构建它的builder(用于统计网络传输字节数)
+     */
+    private static class SharedClient {
+
+        private final String name;
+
+        private final ElasticsearchClientBuilder builder;
+
+        private final RestHighLevelClient client;
+
+        SharedClient(String name, ElasticsearchClientBuilder builder, RestHighLevelClient client) {
+            this.name = name;
+            this.builder = builder;
+            this.client = client;
+        }
+    }
+}
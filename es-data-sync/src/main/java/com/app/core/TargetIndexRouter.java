@@ -0,0 +1,476 @@
+package com.app.core;
+
+import com.app.model.ConstantModel;
+import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.IndexRouteOption;
+import com.app.model.SyncSource;
+import com.app.model.SyncTarget;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName TargetIndexRouter
+ * @Description 按文档字段路由目标索引,每个文档只解析到路由字段为止,不解析整个_source
+ * 同一批次中路由到不同目标索引的文档仍在同一个 bulk 请求中写入,每个文档的 action 指定各自的目标索引
+ * 目标索引第一次出现时在目标集群中检查是否存在,不存在时使用数据源索引的mapping创建,已确认存在的索引按目标集群缓存
+ * @Date 2026/10/19 15:20
+ * @Version 1.0
+ **/
+@Slf4j
+public class TargetIndexRouter {
+
+    /**
+     * 模板中的原始值占位符
+     */
+    private static final String VALUE_PLACEHOLDER = "value";
+
+    /**
+     * 未配置日期格式时支持的日期时间格式
+     */
+    private static final DateTimeFormatter DEFAULT_DATE_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * 索引名称中不允许出现的字符
+     */
+    private static final String INVALID_INDEX_CHARS = " \\/*?\"<>|,#:";
+
+    /**
+     * 索引名称的最大字节数
+     */
+    private static final int MAX_INDEX_NAME_BYTES = 255;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+
+    private static final CBORFactory CBOR_FACTORY = new CBORFactory();
+
+    /**
+     * 不路由的索引
+     */
+    private static final Route NONE = new Route();
+
+    private final DataSyncProcessor.DataSyncConfig config;
+
+    /**
+     * 数据源索引名称对应的路由规则
+     */
+    private final Map<String, Route> routes = new ConcurrentHashMap<>();
+
+    /**
+     * 数据源索引的mapping,key 为数据源名称/数据源索引名称
+     */
+    private final Map<String, String> sourceMappings = new ConcurrentHashMap<>();
+
+    /**
+     * 每个目标集群中已确认存在的目标索引
+     */
+    private final Map<String, Set<String>> existingIndices = new ConcurrentHashMap<>();
+
+    /**
+     * 是否配置了路由
+     */
+    private final boolean enabled;
+
+    /**
+     * 构造方法,校验所有路由配置,配置错误时抛出 IllegalArgumentException
+     * @param config es数据同步相关配置
+     */
+    public TargetIndexRouter(DataSyncProcessor.DataSyncConfig config) {
+        this.config = config;
+        Map<String, IndexRouteOption> routeOptions = config.getSyncOptions().getIndexRouteOptions();
+        if(routeOptions != null){
+            routeOptions.forEach((inputIndexName, option) -> this.routes.put(inputIndexName, new Route(inputIndexName, option)));
+        }
+        this.enabled = this.routes.isEmpty() == false;
+    }
+
+    /**
+     * 是否有需要路由的索引
+     */
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * 数据源索引是否按文档路由,路由时目标索引在写入前创建
+     * @param inputIndexName 数据源索引名称
+     */
+    public boolean isRouted(String inputIndexName) {
+        return this.getRoute(inputIndexName) != NONE;
+    }
+
+    /**
+     * 计算批次中每个文档的目标索引,同一批次只计算一次,结果保存在数据包装类中由所有目标集群共用
+     * @param dataWrapper 数据
+     * @return 与文档一一对应的目标索引名称,不路由时为空
+     */
+    public String[] route(ElasticsearchDataWrapper dataWrapper) {
+        //第一个写出该批次的目标集群计算,其他目标集群等待后直接使用
+        synchronized (dataWrapper){
+            if(dataWrapper.isRouted() == false){
+                dataWrapper.setDocIndices(this.resolveDocIndices(dataWrapper));
+                dataWrapper.setRouted(true);
+            }
+            return dataWrapper.getDocIndices();
+        }
+    }
+
+    private String[] resolveDocIndices(ElasticsearchDataWrapper dataWrapper) {
+        String[] split = dataWrapper.getIndexName().split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
+        Route route = this.getRoute(split[0]);
+        if(route == NONE){
+            return null;
+        }
+        String fallbackIndex = route.option.getFallbackIndex() != null ? route.option.getFallbackIndex() : split.length > 1 ? split[1] : split[0];
+        JsonFactory factory = factory(dataWrapper.getSourceType());
+        String[] docIndices = new String[dataWrapper.size()];
+        int fallbackCount = 0;
+        for (int i = 0; i < dataWrapper.size(); i++) {
+            int sourceLength = dataWrapper.getSourceLength(i);
+            String indexName = sourceLength < 0 ? null : route.resolve(factory, dataWrapper.getSourceBuffer(), dataWrapper.getSourceOffset(i), sourceLength);
+            if(indexName == null){
+                indexName = fallbackIndex;
+                fallbackCount++;
+            }
+            docIndices[i] = indexName;
+        }
+        if(fallbackCount > 0){
+            log.warn("索引任务[{}]的本批次数据中,有[{}]条文档的路由字段[{}]不存在、无法解析或生成的索引名称不合法,写入索引[{}]",dataWrapper.getIndexName(),fallbackCount,route.option.getField(),fallbackIndex);
+        }
+        return docIndices;
+    }
+
+    /**
+     * 在目标集群中创建不存在的目标索引,使用数据源索引的mapping
+     * @param target 目标集群
+     * @param dataWrapper 数据
+     * @param docIndices 每个文档的目标索引
+     */
+    public void createTargetIndices(SyncTarget target, ElasticsearchDataWrapper dataWrapper, String[] docIndices) throws IOException {
+        Set<String> existing = this.existingIndices.computeIfAbsent(target.getName(), name -> ConcurrentHashMap.newKeySet());
+        Set<String> missing = null;
+        for (String indexName : docIndices) {
+            if(existing.contains(indexName) == false){
+                if(missing == null){
+                    missing = new LinkedHashSet<>();
+                }
+                missing.add(indexName);
+            }
+        }
+        if(missing == null){
+            return;
+        }
+        String inputIndexName = dataWrapper.getIndexName().split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS)[0];
+        for (String indexName : missing) {
+            if(this.config.getElasticsearchService().isExists(target.getClient(), indexName) == false){
+                try {
+                    this.config.getElasticsearchService().createIndex(target.getClient(), indexName, this.getSourceMapping(dataWrapper.getSourceName(), inputIndexName));
+                    log.info("路由的目标索引[{}]在目标集群[{}]中创建完成!",indexName,target.getName());
+                }catch (ElasticsearchStatusException e){
+                    //多个写出线程同时创建同一个目标索引,其他线程已创建
+                    if(e.getDetailedMessage().contains("resource_already_exists_exception") == false){
+                        throw e;
+                    }
+                }
+            }
+            existing.add(indexName);
+        }
+    }
+
+    private Route getRoute(String inputIndexName){
+        return this.routes.computeIfAbsent(inputIndexName, name -> {
+            IndexRouteOption option = this.config.getSyncOptions().getIndexRouteOption(name);
+            return option != null ? new Route(name, option) : NONE;
+        });
+    }
+
+    private String getSourceMapping(String sourceName, String inputIndexName) throws IOException {
+        String key = sourceName + "/" + inputIndexName;
+        String mapping = this.sourceMappings.get(key);
+        if(mapping == null){
+            SyncSource source = null;
+            for (SyncSource syncSource : this.config.getSources()) {
+                if(syncSource.getName().equals(sourceName)){
+                    source = syncSource;
+                }
+            }
+            if(source == null){
+                throw new IllegalStateException("source [" + sourceName + "] not found");
+            }
+            mapping = this.config.getElasticsearchService().getIndexMapping(source.getClient(), inputIndexName);
+            this.sourceMappings.put(key, mapping);
+        }
+        return mapping;
+    }
+
+    /**
+     * 是否为合法的索引名称:小写,不包含非法字符,不以 _ - + 开头,不超过255字节
+     * @param indexName 索引名称
+     */
+    static boolean isValidIndexName(String indexName){
+        if(indexName.isEmpty() || ".".equals(indexName) || "..".equals(indexName) || isValidIndexStart(indexName) == false){
+            return false;
+        }
+        return isValidIndexText(indexName) && indexName.getBytes(StandardCharsets.UTF_8).length <= MAX_INDEX_NAME_BYTES;
+    }
+
+    private static boolean isValidIndexStart(String text){
+        char first = text.charAt(0);
+        return first != '_' && first != '-' && first != '+';
+    }
+
+    /**
+     * 索引名称的片段是否只包含允许的字符
+     */
+    private static boolean isValidIndexText(String text){
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(INVALID_INDEX_CHARS.indexOf(c) >= 0 || Character.isWhitespace(c) || Character.isUpperCase(c)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static JsonFactory factory(XContentType sourceType){
+        switch (sourceType){
+            case SMILE:
+                return SMILE_FACTORY;
+            case CBOR:
+                return CBOR_FACTORY;
+            default:
+                return JSON_FACTORY;
+        }
+    }
+
+    /**
+     * 一个数据源索引的路由规则,模板在创建时解析为固定文本和占位符
+     */
+    private static class Route {
+
+        private final IndexRouteOption option;
+
+        /**
+         * 路由字段的各级名称
+         */
+        private final String[] path;
+
+        /**
+         * 路由字段从每一级开始的剩余路径,用于匹配_source中带句号的字段名
+         */
+        private final String[] remainingPaths;
+
+        /**
+         * 模板的固定文本,与占位符交替出现,第一个为固定文本
+         */
+        private final List<String> literals = new ArrayList<>();
+
+        /**
+         * 模板的占位符,为空表示原始值,否则为日期格式
+         */
+        private final List<DateTimeFormatter> placeholders = new ArrayList<>();
+
+        private final ZoneId zoneId;
+
+        private final DateTimeFormatter dateFormat;
+
+        private final boolean dateRequired;
+
+        private Route() {
+            this.option = null;
+            this.path = null;
+            this.remainingPaths = null;
+            this.zoneId = null;
+            this.dateFormat = null;
+            this.dateRequired = false;
+        }
+
+        Route(String inputIndexName, IndexRouteOption option) {
+            if(option.getField() == null || option.getField().isEmpty() || option.getTargetPattern() == null || option.getTargetPattern().isEmpty()){
+                throw new IllegalArgumentException("index route of [" + inputIndexName + "] requires field and targetPattern");
+            }
+            this.option = option;
+            this.path = option.getField().split("\\.");
+            this.remainingPaths = new String[this.path.length];
+            for (int i = 0; i < this.path.length; i++) {
+                this.remainingPaths[i] = String.join(".", Arrays.asList(this.path).subList(i, this.path.length));
+            }
+            this.zoneId = ZoneId.of(option.getTimeZone() != null ? option.getTimeZone() : "UTC");
+            this.dateFormat = option.getDateFormat() != null ? DateTimeFormatter.ofPattern(option.getDateFormat(), Locale.ROOT) : null;
+            String pattern = option.getTargetPattern();
+            int start = 0;
+            boolean dateRequired = false;
+            while (true){
+                int open = pattern.indexOf('{', start);
+                if(open < 0){
+                    this.literals.add(pattern.substring(start));
+                    break;
+                }
+                int close = pattern.indexOf('}', open);
+                if(close < 0){
+                    throw new IllegalArgumentException("invalid targetPattern [" + pattern + "] of [" + inputIndexName + "]");
+                }
+                this.literals.add(pattern.substring(start, open));
+                String placeholder = pattern.substring(open + 1, close);
+                if(VALUE_PLACEHOLDER.equals(placeholder)){
+                    this.placeholders.add(null);
+                }else {
+                    this.placeholders.add(DateTimeFormatter.ofPattern(placeholder, Locale.ROOT).withZone(this.zoneId));
+                    dateRequired = true;
+                }
+                start = close + 1;
+            }
+            this.dateRequired = dateRequired;
+            //模板的固定文本在启动时校验,占位符的值在每个文档解析后校验
+            for (String literal : this.literals) {
+                if(isValidIndexText(literal) == false){
+                    throw new IllegalArgumentException("targetPattern [" + pattern + "] of [" + inputIndexName + "] contains uppercase or invalid index name characters");
+                }
+            }
+            if(this.literals.get(0).isEmpty() == false && isValidIndexStart(this.literals.get(0)) == false){
+                throw new IllegalArgumentException("targetPattern [" + pattern + "] of [" + inputIndexName + "] must not start with '_', '-' or '+'");
+            }
+            if(this.placeholders.isEmpty() && isValidIndexName(pattern) == false){
+                throw new IllegalArgumentException("targetPattern [" + pattern + "] of [" + inputIndexName + "] is not a valid index name");
+            }
+            if(option.getFallbackIndex() != null && isValidIndexName(option.getFallbackIndex()) == false){
+                throw new IllegalArgumentException("fallbackIndex [" + option.getFallbackIndex() + "] of [" + inputIndexName + "] is not a valid index name");
+            }
+        }
+
+        /**
+         * 计算一个文档的目标索引
+         * @return 字段不存在或无法解析时返回null
+         */
+        String resolve(JsonFactory factory, byte[] buffer, int offset, int length){
+            if(this.placeholders.isEmpty()){
+                //合并为一个索引
+                return this.literals.get(0);
+            }
+            String value;
+            try (JsonParser parser = factory.createParser(buffer, offset, length)) {
+                value = this.readField(parser);
+            }catch (IOException e){
+                return null;
+            }
+            if(value == null || value.isEmpty()){
+                return null;
+            }
+            Instant instant = null;
+            if(this.dateRequired){
+                instant = this.parseDate(value);
+                if(instant == null){
+                    return null;
+                }
+            }
+            StringBuilder indexName = new StringBuilder(64);
+            for (int i = 0; i < this.placeholders.size(); i++) {
+                indexName.append(this.literals.get(i));
+                DateTimeFormatter formatter = this.placeholders.get(i);
+                //索引名称只能是小写
+                indexName.append(formatter == null ? value.toLowerCase(Locale.ROOT) : formatter.format(instant));
+            }
+            indexName.append(this.literals.get(this.placeholders.size()));
+            //字段值或日期格式可能生成不合法的索引名称,写入兜底索引
+            String name = indexName.toString();
+            return isValidIndexName(name) ? name : null;
+        }
+
+        /**
+         * 按路径读取字段的值,只读取到该字段为止,对象和数组类型的值视为不存在
+         */
+        private String readField(JsonParser parser) throws IOException {
+            if(parser.nextToken() != JsonToken.START_OBJECT){
+                return null;
+            }
+            int depth = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if(name.equals(this.remainingPaths[depth])){
+                    return token.isScalarValue() && token != JsonToken.VALUE_NULL ? parser.getText() : null;
+                }
+                if(name.equals(this.path[depth]) && token == JsonToken.START_OBJECT){
+                    //进入下一级对象,不再返回上一级
+                    depth++;
+                    continue;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+
+        private Instant parseDate(String value){
+            try {
+                if(this.dateFormat != null){
+                    TemporalAccessor parsed = this.dateFormat.parseBest(value, ZonedDateTime::from, LocalDateTime::from, LocalDate::from);
+                    return toInstant(parsed);
+                }
+                if(isDigits(value)){
+                    return Instant.ofEpochMilli(Long.parseLong(value));
+                }
+                if(value.length() == 19 && value.charAt(10) == ' '){
+                    return LocalDateTime.parse(value, DEFAULT_DATE_TIME).atZone(this.zoneId).toInstant();
+                }
+                TemporalAccessor parsed = DateTimeFormatter.ISO_DATE_TIME.parseBest(value, ZonedDateTime::from, LocalDateTime::from);
+                return toInstant(parsed);
+            }catch (DateTimeParseException | NumberFormatException e){
+                try {
+                    return LocalDate.parse(value).atStartOfDay(this.zoneId).toInstant();
+                }catch (DateTimeParseException ex){
+                    return null;
+                }
+            }
+        }
+
+        private Instant toInstant(TemporalAccessor parsed){
+            if(parsed instanceof ZonedDateTime){
+                return ((ZonedDateTime) parsed).toInstant();
+            }
+            if(parsed instanceof LocalDateTime){
+                return ((LocalDateTime) parsed).atZone(this.zoneId).toInstant();
+            }
+            return ((LocalDate) parsed).atStartOfDay(this.zoneId).toInstant();
+        }
+
+        private static boolean isDigits(String value){
+            int start = value.charAt(0) == '-' ? 1 : 0;
+            if(start == value.length()){
+                return false;
+            }
+            for (int i = start; i < value.length(); i++) {
+                if(Character.isDigit(value.charAt(i)) == false){
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.app.core;
+
+import com.app.model.RateLimitOption;
+import com.app.model.RateLimitSchedule;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName ThroughputLimiter
+ * @Description 全局读写限速器,读取和写入分别按文档数和字节数限速,所有数据源和目标集群共用
+ * 生效的限速 = 基础配置 <- 当前时间段的配置 <- 控制文件中的配置,后者不为空的项覆盖前者
+ * 控制文件为properties格式,运行过程中修改后定时重新加载,例如 readDocsPerSecond=5000
+ * @Date 2026/10/19 17:15
+ * @Version 1.0
+ **/
+@Slf4j
+public class ThroughputLimiter {
+
+    /**
+     * 重新计算限速的间隔,单位秒
+     */
+    private static final long REFRESH_INTERVAL_SECONDS = 5L;
+
+    /**
+     * 基础限速配置
+     */
+    private final RateLimitOption baseOption;
+
+    /**
+     * 按时间段生效的限速配置
+     */
+    private final List<RateLimitSchedule> schedules;
+
+    /**
+     * 控制文件
+     */
+    private final File controlFile;
+
+    private final Limiter readDocsLimiter = new Limiter("readDocsPerSecond");
+
+    private final Limiter readBytesLimiter = new Limiter("readBytesPerSecond");
+
+    private final Limiter writeDocsLimiter = new Limiter("writeDocsPerSecond");
+
+    private final Limiter writeBytesLimiter = new Limiter("writeBytesPerSecond");
+
+    /**
+     * 定时刷新限速配置的线程
+     */
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 构造方法
+     * @param baseOption 基础限速配置,可为空
+     * @param schedules 按时间段生效的限速配置,可为空
+     * @param controlFilePath 控制文件路径,可为空
+     */
+    public ThroughputLimiter(RateLimitOption baseOption, List<RateLimitSchedule> schedules, String controlFilePath) {
+        this.baseOption = baseOption;
+        this.schedules = schedules;
+        this.controlFile = controlFilePath != null && controlFilePath.isEmpty() == false ? new File(controlFilePath) : null;
+        this.refresh();
+    }
+
+    /**
+     * 开启定时刷新,只有配置了时间段或控制文件时才需要
+     */
+    public void start(){
+        if((schedules == null || schedules.isEmpty()) && controlFile == null){
+            return;
+        }
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("es-dump-limiter-%d").setDaemon(true).build());
+        this.scheduler.scheduleWithFixedDelay(this::refresh, REFRESH_INTERVAL_SECONDS, REFRESH_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * 停止定时刷新
+     */
+    public void stop(){
+        if(scheduler != null){
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 读取限速,读取一批数据后调用,超出限速时阻塞
+     * @param docs 文档数
+     * @param bytes 字节数
+     */
+    public void acquireRead(int docs, long bytes){
+        readDocsLimiter.acquire(docs);
+        readBytesLimiter.acquire(bytes);
+    }
+
+    /**
+     * 写入限速,写入一批数据前调用,超出限速时阻塞
+     * @param docs 文档数
+     * @param bytes 字节数
+     */
+    public void acquireWrite(int docs, long bytes){
+        writeDocsLimiter.acquire(docs);
+        writeBytesLimiter.acquire(bytes);
+    }
+
+    /**
+     * 当前生效的每秒写入文档数
+     * @return 不限速时返回null
+     */
+    public Double getWriteDocsRate(){
+        RateLimiter limiter = writeDocsLimiter.rateLimiter;
+        return limiter != null ? limiter.getRate() : null;
+    }
+
+    /**
+     * 重新计算生效的限速配置
+     */
+    private void refresh(){
+        RateLimitOption effective = new RateLimitOption();
+        effective.override(baseOption);
+        if(schedules != null){
+            LocalTime now = LocalTime.now();
+            for (RateLimitSchedule schedule : schedules) {
+                if(schedule.contains(now)){
+                    effective.override(schedule);
+                    break;
+                }
+            }
+        }
+        if(controlFile != null && controlFile.isFile()){
+            effective.override(this.loadControlFile());
+        }
+        readDocsLimiter.setRate(effective.getReadDocsPerSecond());
+        readBytesLimiter.setRate(effective.getReadBytesPerSecond());
+        writeDocsLimiter.setRate(effective.getWriteDocsPerSecond());
+        writeBytesLimiter.setRate(effective.getWriteBytesPerSecond());
+    }
+
+    /**
+     * 加载控制文件,读取失败时忽略控制文件
+     * @return 控制文件中的限速配置
+     */
+    private RateLimitOption loadControlFile(){
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(controlFile)){
+            properties.load(in);
+        }catch (Exception e){
+            log.warn("限速控制文件[{}]读取失败,本次忽略. errorMsg:{}", controlFile, e.getMessage());
+            return null;
+        }
+        RateLimitOption option = new RateLimitOption();
+        option.setReadDocsPerSecond(parseRate(properties, readDocsLimiter.name));
+        option.setReadBytesPerSecond(parseRate(properties, readBytesLimiter.name));
+        option.setWriteDocsPerSecond(parseRate(properties, writeDocsLimiter.name));
+        option.setWriteBytesPerSecond(parseRate(properties, writeBytesLimiter.name));
+        return option;
+    }
+
+    private static Double parseRate(Properties properties, String key){
+        String value = properties.getProperty(key);
+        if(value == null || value.trim().isEmpty()){
+            return null;
+        }
+        try {
+            return Double.parseDouble(value.trim());
+        }catch (NumberFormatException e){
+            log.warn("限速控制文件中[{}]的值[{}]不是数字,本次忽略", key, value);
+            return null;
+        }
+    }
+
+    /**
+     * 单项限速,速率小于等于0时不限速
+     */
+    private static class Limiter {
+
+        private final String name;
+
+        private volatile RateLimiter rateLimiter;
+
+        private Limiter(String name) {
+            this.name = name;
+        }
+
+        private void acquire(long permits){
+            RateLimiter limiter = this.rateLimiter;
+            if(limiter == null || permits <= 0){
+                return;
+            }
+            //单次获取的许可数不能超过int最大值
+            limiter.acquire((int) Math.min(permits, Integer.MAX_VALUE));
+        }
+
+        private synchronized void setRate(Double rate){
+            if(rate == null || rate <= 0){
+                if(this.rateLimiter != null){
+                    log.info("限速项[{}]调整为不限速", name);
+                }
+                this.rateLimiter = null;
+                return;
+            }
+            if(this.rateLimiter == null){
+                this.rateLimiter = RateLimiter.create(rate);
+                log.info("限速项[{}]设置为[{}]/s", name, rate);
+            }else if(this.rateLimiter.getRate() != rate){
+                this.rateLimiter.setRate(rate);
+                log.info("限速项[{}]调整为[{}]/s", name, rate);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.app.core;
+
+import com.app.model.ElasticsearchDataWrapper;
+import com.app.service.LowLevelBulkWriter;
+import com.app.service.StreamingSearchReader;
+import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName WireFormatBenchmark
+ * @Description 对比 JSON、SMILE、CBOR 三种格式的传输字节数和同步工具端的编解码耗时
+ * 按与线上相似的文档结构生成一页查询响应,分别测量流式解析一页的耗时和生成 bulk 请求体的耗时
+ * 只测量同步工具端,数据源中_source以 JSON 存储时,集群返回二进制格式需要对每个文档转换格式,这部分耗时不在统计内
+ * 运行方式: java -cp es-data-sync.jar com.app.core.WireFormatBenchmark [每页文档数] [测量轮数]
+ * @Date 2026/10/19 15:05
+ * @Version 1.0
+ **/
+@Slf4j
+public class WireFormatBenchmark {
+
+    private static final XContentType[] FORMATS = {XContentType.JSON, XContentType.SMILE, XContentType.CBOR};
+
+    private static final String[] LEVELS = {"INFO", "WARN", "ERROR", "DEBUG"};
+
+    private static final String[] TAGS = {"order", "payment", "refund", "logistics", "coupon", "member", "promotion"};
+
+    private static final String[] CITIES = {"北京", "上海", "广州", "深圳", "杭州", "成都", "武汉"};
+
+    public static void main(String[] args) throws IOException {
+        int pageSize = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+        log.info("格式对比开始! 每页[{}]条文档,测量[{}]轮", pageSize, rounds);
+        for (XContentType format : FORMATS) {
+            benchmark(format, pageSize, rounds);
+        }
+    }
+
+    private static void benchmark(XContentType format, int pageSize, int rounds) throws IOException {
+        byte[] response = buildResponse(format, pageSize);
+        StreamingSearchReader reader = new StreamingSearchReader(format);
+        LowLevelBulkWriter writer = new LowLevelBulkWriter();
+        //预热
+        for (int i = 0; i < rounds; i++) {
+            writer.buildBody(parse(reader, response, pageSize), "bench", false);
+        }
+        long parseNanos = 0L;
+        long bulkNanos = 0L;
+        long sourceBytes = 0L;
+        int bulkBytes = 0;
+        for (int i = 0; i < rounds; i++) {
+            long start = System.nanoTime();
+            ElasticsearchDataWrapper dataWrapper = parse(reader, response, pageSize);
+            long parsed = System.nanoTime();
+            byte[] body = writer.buildBody(dataWrapper, "bench", false);
+            bulkNanos += System.nanoTime() - parsed;
+            parseNanos += parsed - start;
+            sourceBytes = dataWrapper.getByteSize();
+            bulkBytes = body.length;
+        }
+        log.info("格式[{}]: 查询响应[{}KB], _source[{}KB], 解析一页[{}ms], bulk请求体[{}KB], 生成请求体[{}ms]",
+                format.shortName(), response.length / 1024, sourceBytes / 1024, String.format("%.2f", parseNanos / 1e6 / rounds),
+                bulkBytes / 1024, String.format("%.2f", bulkNanos / 1e6 / rounds));
+    }
+
+    private static ElasticsearchDataWrapper parse(StreamingSearchReader reader, byte[] response, int pageSize) throws IOException {
+        ElasticsearchDataWrapper dataWrapper = new ElasticsearchDataWrapper("bench", pageSize);
+        dataWrapper.setSourceType(reader.getSourceType());
+        reader.parse(response, dataWrapper::add);
+        return dataWrapper;
+    }
+
+    /**
+     * 生成一页查询响应,结构与 es 的 scroll 查询响应一致
+     */
+    private static byte[] buildResponse(XContentType format, int pageSize) throws IOException {
+        Random random = new Random(42L);
+        XContentBuilder builder = XContentFactory.contentBuilder(format);
+        builder.startObject();
+        builder.field("_scroll_id", "FGluY2x1ZGVfY29udGV4dF91dWlkDXF1ZXJ5QW5kRmV0Y2gBFmJlbmNo");
+        builder.field("took", 12);
+        builder.field("timed_out", false);
+        builder.startObject("hits");
+        builder.startObject("total").field("value", pageSize).field("relation", "eq").endObject();
+        builder.nullField("max_score");
+        builder.startArray("hits");
+        for (int i = 0; i < pageSize; i++) {
+            builder.startObject();
+            builder.field("_index", "bench");
+            builder.field("_type", "_doc");
+            builder.field("_id", Long.toHexString(random.nextLong()) + Long.toHexString(random.nextLong()));
+            builder.nullField("_score");
+            builder.field("_source");
+            buildDocument(builder, random);
+            builder.startArray("sort").value(i).endArray();
+            builder.endObject();
+        }
+        builder.endArray();
+        builder.endObject();
+        builder.endObject();
+        return BytesReference.toBytes(BytesReference.bytes(builder));
+    }
+
+    /**
+     * 生成一个订单日志文档,包含时间、数值、短字符串、长文本、嵌套对象和数组
+     */
+    private static void buildDocument(XContentBuilder builder, Random random) throws IOException {
+        builder.startObject();
+        builder.field("@timestamp", 1700000000000L + random.nextInt(86400000));
+        builder.field("level", LEVELS[random.nextInt(LEVELS.length)]);
+        builder.field("order_no", "SO" + (100000000L + random.nextInt(900000000)));
+        builder.field("amount", Math.round(random.nextDouble() * 100000) / 100.0);
+        builder.field("quantity", 1 + random.nextInt(20));
+        builder.field("paid", random.nextBoolean());
+        builder.startObject("user");
+        builder.field("id", random.nextInt(10000000));
+        builder.field("name", "用户" + random.nextInt(100000));
+        builder.field("city", CITIES[random.nextInt(CITIES.length)]);
+        builder.field("vip_level", random.nextInt(8));
+        builder.endObject();
+        builder.startArray("tags");
+        for (int i = 0, n = 1 + random.nextInt(4); i < n; i++) {
+            builder.value(TAGS[random.nextInt(TAGS.length)]);
+        }
+        builder.endArray();
+        builder.startArray("items");
+        for (int i = 0, n = 1 + random.nextInt(5); i < n; i++) {
+            builder.startObject();
+            builder.field("sku", "SKU-" + random.nextInt(1000000));
+            builder.field("price", Math.round(random.nextDouble() * 50000) / 100.0);
+            builder.field("count", 1 + random.nextInt(5));
+            builder.endObject();
+        }
+        builder.endArray();
+        StringBuilder message = new StringBuilder();
+        for (int i = 0, n = 10 + random.nextInt(30); i < n; i++) {
+            message.append(TAGS[random.nextInt(TAGS.length)]).append(' ').append(random.nextInt(1000)).append(' ');
+        }
+        builder.field("message", message.toString());
+        builder.endObject();
+    }
+}
@@ -0,0 +1,61 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName ClientOptions
+ * @Description es客户端连接参数配置,默认值与原有的固定配置保持一致
+ * @Date 2026/10/19 11:20
+ * @Version 1.0
+ **/
+@Data
+public class ClientOptions {
+
+    /**
+     * 是否开启gzip压缩,开启后请求体(bulk)会压缩发送,同时接收压缩后的响应(search)
+     * 跨机房迁移时建议开启,默认关闭
+     */
+    private Boolean compressionEnabled = false;
+
+    /**
+     * IO线程数,小于等于0时使用默认值(cpu核数)
+     */
+    private Integer ioThreadCount = 0;
+
+    /**
+     * 建立连接的超时时间,单位毫秒
+     */
+    private Integer connectTimeout = 60000;
+
+    /**
+     * 读取数据的超时时间,单位毫秒
+     */
+    private Integer socketTimeout = 60000;
+
+    /**
+     * 从连接池获取连接的超时时间,单位毫秒
+     */
+    private Integer connectionRequestTimeout = 60000;
+
+    /**
+     * 空闲连接保持时间,单位毫秒,小于等于0时以服务端返回的 Keep-Alive 为准
+     */
+    private Long keepAlive = 0L;
+
+    /**
+     * 最大总连接数
+     */
+    private Integer maxConnTotal = 500;
+
+    /**
+     * 每个路由值的最大连接数
+     */
+    private Integer maxConnPerRoute = 300;
+
+    /**
+     * 节点嗅探间隔,单位秒,大于0时开启嗅探
+     * 开启后定时从 /_nodes/http 获取集群节点,请求在所有节点间轮询,节点失败时自动切换
+     */
+    private Long sniffInterval = 0L;
+}
@@ -0,0 +1,61 @@
+package com.app.model;
+
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName DaemonOption
+ * @Description 守护进程配置,守护进程常驻运行,通过本地 HTTP 接口接收同步任务,
+ * 相同集群的客户端在多个任务之间共用,多个任务共用写入并发数
+ * @Date 2026/10/19 15:14
+ * @Version 1.0
+ **/
+@Data
+public class DaemonOption {
+
+    /**
+     * 监听地址,默认只接受本机请求
+     */
+    private String bindHost = "127.0.0.1";
+
+    /**
+     * 监听端口
+     */
+    private Integer port = 9280;
+
+    /**
+     * 同时执行的任务数,其余任务按优先级排队
+     */
+    private Integer maxConcurrentJobs = 4;
+
+    /**
+     * 所有任务合计同时写入的批次数,大于0时任务配置中的 maxConcurrentWrites 不再生效,
+     * 小于等于0时按各任务的配置限制
+     */
+    private Integer maxConcurrentWrites = 64;
+
+    /**
+     * 保留的已结束任务数,超过后删除最早结束的任务
+     */
+    private Integer retainedJobs = 500;
+
+    /**
+     * 读取配置文件,路径为空时使用默认配置
+     * @param path 配置文件路径,json格式
+     * @return 守护进程配置
+     */
+    public static DaemonOption load(String path) throws IOException {
+        if(path == null){
+            return new DaemonOption();
+        }
+        String json = FileUtils.readFileToString(new File(path), StandardCharsets.UTF_8.name());
+        DaemonOption option = JSON.parseObject(json, DaemonOption.class);
+        return option != null ? option : new DaemonOption();
+    }
+}
@@ -1,7 +1,8 @@
 package com.app.model;
 
-import lombok.Data;
-import lombok.extern.slf4j.Slf4j;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @Author miaoyoulin
@@ -10,41 +11,96 @@ import lombok.extern.slf4j.Slf4j;
  * @Date 2022/12/29 17:04
  * @Version 1.0
  **/
-@Slf4j
 public class DataTotalCount {
 
+    /**
+     * 数据源名称
+     */
+    private final String sourceName;
+
+    /**
+     * 数据源索引名称
+     */
+    private final String inputIndexName;
+
+    /**
+     * 目标索引名称
+     */
+    private final String outputIndexName;
+
+    /**
+     * 初始化时统计的数据源索引数据量,用于计算进度
+     */
+    private final long expectedTotalCount;
+
     /**
      * 读取的数据总数,默认值为0
      */
-    private Integer readTotalCount = 0;
+    private final LongAdder readTotalCount = new LongAdder();
 
     /**
-     * 写出的数据总数，默认值为0
+     * 写出的数据总数，key 为目标集群名称，默认值为0
      */
-    private Integer writeTotalCount = 0;
+    private final Map<String, LongAdder> writeTotalCountMap = new ConcurrentHashMap<>();
 
+    /**
+     * 构造方法
+     * @param sourceName 数据源名称
+     * @param inputIndexName 数据源索引名称
+     * @param outputIndexName 目标索引名称
+     * @param expectedTotalCount 数据源索引数据量
+     */
+    public DataTotalCount(String sourceName, String inputIndexName, String outputIndexName, long expectedTotalCount) {
+        this.sourceName = sourceName;
+        this.inputIndexName = inputIndexName;
+        this.outputIndexName = outputIndexName;
+        this.expectedTotalCount = expectedTotalCount;
+    }
 
     /**
      * 读取数据累加
      * @param size 读取的数据
      */
     public void readTotalIncr(Integer size){
-        this.readTotalCount += size;
+        this.readTotalCount.add(size);
     }
 
     /**
      * 写出数据累加
+     * @param targetName 目标集群名称
      * @param size
      */
-    public void writeTotalCountIncr(Integer size){
-        this.writeTotalCount += size;
+    public void writeTotalCountIncr(String targetName, Integer size){
+        this.writeTotalCountMap.computeIfAbsent(targetName, key -> new LongAdder()).add(size);
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public String getInputIndexName() {
+        return inputIndexName;
     }
 
-    public Integer getReadTotalCount() {
-        return readTotalCount;
+    public String getOutputIndexName() {
+        return outputIndexName;
     }
 
-    public Integer getWriteTotalCount() {
-        return writeTotalCount;
+    public long getExpectedTotalCount() {
+        return expectedTotalCount;
+    }
+
+    public long getReadTotalCount() {
+        return readTotalCount.sum();
+    }
+
+    /**
+     * 获取写入目标集群的数据总数
+     * @param targetName 目标集群名称
+     * @return 写出的数据总数
+     */
+    public long getWriteTotalCount(String targetName) {
+        LongAdder writeTotalCount = writeTotalCountMap.get(targetName);
+        return writeTotalCount != null ? writeTotalCount.sum() : 0L;
     }
 }
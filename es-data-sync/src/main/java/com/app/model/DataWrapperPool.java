@@ -0,0 +1,49 @@
+package com.app.model;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName DataWrapperPool
+ * @Description 数据包装类对象池,批次写出完成后归还,读取时优先从池中获取,减少每批次的内存分配
+ * @Date 2026/10/19 14:35
+ * @Version 1.0
+ **/
+public class DataWrapperPool {
+
+    /**
+     * 池中空闲的对象
+     */
+    private final ArrayBlockingQueue<ElasticsearchDataWrapper> idleWrappers;
+
+    /**
+     * 构造方法
+     * @param capacity 池中最多保留的空闲对象数,超出的对象直接丢弃由gc回收
+     */
+    public DataWrapperPool(int capacity) {
+        this.idleWrappers = new ArrayBlockingQueue<>(Math.max(capacity, 1));
+    }
+
+    /**
+     * 获取一个数据包装类,池中没有空闲对象时新建
+     * @param indexName 索引名称
+     * @param size 文档数量
+     * @return 数据包装类
+     */
+    public ElasticsearchDataWrapper borrow(String indexName, int size){
+        ElasticsearchDataWrapper dataWrapper = idleWrappers.poll();
+        if(dataWrapper == null){
+            return new ElasticsearchDataWrapper(indexName, size);
+        }
+        dataWrapper.reset(indexName, size);
+        return dataWrapper;
+    }
+
+    /**
+     * 归还数据包装类,归还后调用方不能再使用该对象
+     * @param dataWrapper 数据包装类
+     */
+    public void release(ElasticsearchDataWrapper dataWrapper){
+        idleWrappers.offer(dataWrapper);
+    }
+}
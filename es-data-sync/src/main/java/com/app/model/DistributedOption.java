@@ -0,0 +1,50 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName DistributedOption
+ * @Description 多进程协作迁移配置,多个进程使用相同的参数启动并共用一个任务状态文件,
+ * 每个索引按切片拆分为多个工作单元,进程从状态文件中租用工作单元,租约过期未续约的工作单元由其他进程重新领取
+ * @Date 2026/10/19 15:11
+ * @Version 1.0
+ **/
+@Data
+public class DistributedOption {
+
+    /**
+     * 是否开启,默认关闭
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 任务状态文件,所有进程需要能访问同一个文件(同一台机器或共享存储)
+     */
+    private String stateFile = "es-dump-job.json";
+
+    /**
+     * 进程标识,为空时使用 pid@主机名
+     */
+    private String workerId;
+
+    /**
+     * 每个索引的切片数,小于等于0时与数据源索引的主分片数一致
+     */
+    private Integer slicesPerIndex = 0;
+
+    /**
+     * 每个进程同时读取的工作单元数
+     */
+    private Integer concurrentUnits = 4;
+
+    /**
+     * 租约时长,单位秒,每1/3租约时长续约一次,进程退出后超过租约时长的工作单元由其他进程重新领取
+     */
+    private Long leaseSeconds = 60L;
+
+    /**
+     * 单个工作单元的最大领取次数,超过后标记为失败,不再领取
+     */
+    private Integer maxAttempts = 5;
+}
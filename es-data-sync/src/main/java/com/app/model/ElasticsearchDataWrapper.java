@@ -1,21 +1,40 @@
 package com.app.model;
 
-import lombok.AllArgsConstructor;
-import lombok.Data;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefIterator;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentType;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Author miaoyoulin
  * @ClassName ElasticsearchDataWrapper
  * @Description es数据包装类
+ * 文档数据以连续的字节数组存放,通过下标访问,批次写出完成后归还到 DataWrapperPool 中重复使用
  * @Date 2022/12/27 17:04
  * @Version 1.0
  **/
-@Data
 public class ElasticsearchDataWrapper {
 
+    /**
+     * 归还到池中时保留的最大缓冲区字节数,超过时重新分配,避免个别大批次长期占用内存
+     */
+    private static final int MAX_RETAINED_BUFFER_BYTES = 8 * 1024 * 1024;
+
+    /**
+     * 初始缓冲区字节数
+     */
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+
+    /**
+     * 数据源名称
+     */
+    private String sourceName;
+
     /**
      * 索引名称
      */
@@ -33,9 +52,74 @@ public class ElasticsearchDataWrapper {
     private String scrollId;
 
     /**
-     * 数据实体集合
+     * 数据的字节数(_source),用于限速和统计
+     */
+    private long byteSize;
+
+    /**
+     * 文档数量
+     */
+    private int size;
+
+    /**
+     * 文档ID
+     */
+    private String[] docIds;
+
+    /**
+     * 文档路由(_routing),为空表示使用默认路由
+     */
+    private String[] routings;
+
+    /**
+     * 文档版本号,未获取版本号时为 -1
+     */
+    private long[] versions;
+
+    /**
+     * 每个文档的数据在缓冲区中的起始位置
+     */
+    private int[] sourceOffsets;
+
+    /**
+     * 每个文档的数据长度, -1 表示文档没有_source
+     */
+    private int[] sourceLengths;
+
+    /**
+     * 数据缓冲区,所有文档的_source依次存放
      */
-    private List<DataEntity> entityList;
+    private byte[] sourceBuffer;
+
+    /**
+     * _source 的格式,同一批次的文档格式相同
+     */
+    private XContentType sourceType = XContentType.JSON;
+
+    /**
+     * 未完成写出的目标集群数,为0时归还到池中
+     */
+    private final AtomicInteger pendingWrites = new AtomicInteger();
+
+    /**
+     * 读取任务未写出完成的批次数,所有目标集群写出完成后减1,为空时不统计
+     */
+    private AtomicInteger pendingBatches;
+
+    /**
+     * 读取任务是否有批次写出失败,重试次数用尽时置为true,为空时不统计
+     */
+    private AtomicBoolean writeFailed;
+
+    /**
+     * 按文档字段路由时每个文档的目标索引,不路由时为空
+     */
+    private String[] docIndices;
+
+    /**
+     * 是否已计算路由,所有目标集群共用一次计算结果
+     */
+    private boolean routed;
 
     /**
      * 构造方法
@@ -44,23 +128,211 @@ public class ElasticsearchDataWrapper {
      */
     public ElasticsearchDataWrapper(String indexName, Integer size){
         this.indexName = indexName;
-        this.entityList = new ArrayList<>(size);
+        this.docIds = new String[size];
+        this.routings = new String[size];
+        this.versions = new long[size];
+        this.sourceOffsets = new int[size];
+        this.sourceLengths = new int[size];
+        this.sourceBuffer = new byte[INITIAL_BUFFER_BYTES];
+    }
+
+    /**
+     * 重置后重复使用
+     * @param indexName 索引名称
+     * @param capacity 文档数量
+     */
+    void reset(String indexName, int capacity){
+        this.sourceName = null;
+        this.indexName = indexName;
+        this.sortValues = null;
+        this.scrollId = null;
+        this.byteSize = 0L;
+        this.sourceType = XContentType.JSON;
+        this.pendingBatches = null;
+        this.writeFailed = null;
+        this.docIndices = null;
+        this.routed = false;
+        Arrays.fill(this.docIds, 0, this.size, null);
+        Arrays.fill(this.routings, 0, this.size, null);
+        this.size = 0;
+        if(this.docIds.length < capacity){
+            this.docIds = new String[capacity];
+            this.routings = new String[capacity];
+            this.versions = new long[capacity];
+            this.sourceOffsets = new int[capacity];
+            this.sourceLengths = new int[capacity];
+        }
+        if(this.sourceBuffer.length > MAX_RETAINED_BUFFER_BYTES){
+            this.sourceBuffer = new byte[INITIAL_BUFFER_BYTES];
+        }
     }
 
     /**
-     * 数据实体
+     * 添加一个文档,数据复制到缓冲区中
+     * @param docId 文档ID
+     * @param routing 文档路由,为空表示使用默认路由
+     * @param version 文档版本号,未获取时为 -1
+     * @param source 文档数据,为空表示文档没有_source
      */
-    @Data
-    @AllArgsConstructor
-    public class DataEntity {
-        /**
-         * 文档ID
-         */
-        private String docId;
+    public void add(String docId, String routing, long version, BytesReference source) throws IOException {
+        this.ensureDocCapacity(this.size + 1);
+        int offset = (int) this.byteSize;
+        this.docIds[this.size] = docId;
+        this.routings[this.size] = routing;
+        this.versions[this.size] = version;
+        this.sourceOffsets[this.size] = offset;
+        if(source == null){
+            this.sourceLengths[this.size++] = -1;
+            return;
+        }
+        int length = source.length();
+        this.ensureBufferCapacity(offset + length);
+        BytesRefIterator iterator = source.iterator();
+        BytesRef bytesRef;
+        int position = offset;
+        while ((bytesRef = iterator.next()) != null){
+            System.arraycopy(bytesRef.bytes, bytesRef.offset, this.sourceBuffer, position, bytesRef.length);
+            position += bytesRef.length;
+        }
+        this.sourceLengths[this.size++] = length;
+        this.byteSize += length;
+    }
+
+    private void ensureDocCapacity(int capacity){
+        if(capacity > this.docIds.length){
+            int newCapacity = Math.max(capacity, this.docIds.length * 2);
+            this.docIds = Arrays.copyOf(this.docIds, newCapacity);
+            this.routings = Arrays.copyOf(this.routings, newCapacity);
+            this.versions = Arrays.copyOf(this.versions, newCapacity);
+            this.sourceOffsets = Arrays.copyOf(this.sourceOffsets, newCapacity);
+            this.sourceLengths = Arrays.copyOf(this.sourceLengths, newCapacity);
+        }
+    }
+
+    private void ensureBufferCapacity(int capacity){
+        if(capacity > this.sourceBuffer.length){
+            this.sourceBuffer = Arrays.copyOf(this.sourceBuffer, Math.max(capacity, this.sourceBuffer.length * 2));
+        }
+    }
+
+    /**
+     * 文档数量
+     */
+    public int size(){
+        return this.size;
+    }
+
+    public boolean isEmpty(){
+        return this.size == 0;
+    }
+
+    public String getDocId(int index){
+        return this.docIds[index];
+    }
+
+    public String getRouting(int index){
+        return this.routings[index];
+    }
+
+    /**
+     * 文档版本号
+     * @param index 下标
+     * @return -1 表示未获取版本号
+     */
+    public long getVersion(int index){
+        return this.versions[index];
+    }
+
+    public int getSourceOffset(int index){
+        return this.sourceOffsets[index];
+    }
+
+    /**
+     * 文档数据长度
+     * @param index 下标
+     * @return -1 表示文档没有_source
+     */
+    public int getSourceLength(int index){
+        return this.sourceLengths[index];
+    }
+
+    public byte[] getSourceBuffer(){
+        return this.sourceBuffer;
+    }
+
+    public AtomicInteger getPendingWrites() {
+        return pendingWrites;
+    }
+
+    public AtomicInteger getPendingBatches() {
+        return pendingBatches;
+    }
+
+    public void setPendingBatches(AtomicInteger pendingBatches) {
+        this.pendingBatches = pendingBatches;
+    }
+
+    public AtomicBoolean getWriteFailed() {
+        return writeFailed;
+    }
+
+    public void setWriteFailed(AtomicBoolean writeFailed) {
+        this.writeFailed = writeFailed;
+    }
+
+    public String[] getDocIndices() {
+        return docIndices;
+    }
+
+    public void setDocIndices(String[] docIndices) {
+        this.docIndices = docIndices;
+    }
+
+    public boolean isRouted() {
+        return routed;
+    }
+
+    public void setRouted(boolean routed) {
+        this.routed = routed;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public void setSourceName(String sourceName) {
+        this.sourceName = sourceName;
+    }
+
+    public String getIndexName() {
+        return indexName;
+    }
+
+    public Object[] getSortValues() {
+        return sortValues;
+    }
+
+    public void setSortValues(Object[] sortValues) {
+        this.sortValues = sortValues;
+    }
+
+    public String getScrollId() {
+        return scrollId;
+    }
+
+    public void setScrollId(String scrollId) {
+        this.scrollId = scrollId;
+    }
+
+    public long getByteSize() {
+        return byteSize;
+    }
+
+    public XContentType getSourceType() {
+        return sourceType;
+    }
 
-        /**
-         * 数据，以json字符串形式存放
-         */
-        private String jsonObjectStr;
+    public void setSourceType(XContentType sourceType) {
+        this.sourceType = sourceType;
     }
 }
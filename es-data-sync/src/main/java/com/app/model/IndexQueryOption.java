@@ -0,0 +1,64 @@
+package com.app.model;
+
+import com.alibaba.fastjson.JSONObject;
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName IndexQueryOption
+ * @Description 单个数据源索引的查询下推配置,查询条件和_source过滤会同时作用于读取和统计
+ * @Date 2026/10/19 10:12
+ * @Version 1.0
+ **/
+@Data
+public class IndexQueryOption {
+
+    /**
+     * 查询条件,直接使用es的query DSL,例如 {"range":{"createTime":{"gte":"2022-01-01"}}}
+     * 为空时查询全部数据
+     */
+    private JSONObject query;
+
+    /**
+     * _source 需要返回的字段,为空时返回全部字段
+     */
+    private String[] includes;
+
+    /**
+     * _source 需要排除的字段
+     */
+    private String[] excludes;
+
+    /**
+     * 按范围分区并发读取的字段,必须是数值或日期类型,为空时不分区
+     * 适用于分片数少的大索引,按字段值的分布切分为多个范围,每个范围由一个线程读取
+     */
+    private String partitionField;
+
+    /**
+     * 分区数,大于1时生效,同时也是该索引的读取线程数
+     */
+    private Integer partitions = 0;
+
+    /**
+     * 分区读取时排序的第二个字段,用于区分分区字段值相同的文档,必须是值唯一且有doc_values的字段(例如keyword或long类型的业务主键)
+     * 为空时使用_id,es 7.x 中按_id排序会在堆内存中加载_id的fielddata,大索引建议配置
+     */
+    private String partitionTiebreaker;
+
+    /**
+     * 是否按范围分区读取
+     * @return true - 是，false - 否
+     */
+    public boolean isRangePartitioned(){
+        return partitionField != null && partitionField.isEmpty() == false && partitions != null && partitions > 1;
+    }
+
+    /**
+     * 是否配置了_source过滤
+     * @return true - 是，false - 否
+     */
+    public boolean hasSourceFilter(){
+        return (includes != null && includes.length > 0) || (excludes != null && excludes.length > 0);
+    }
+}
@@ -0,0 +1,42 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName IndexRouteOption
+ * @Description 单个数据源索引的目标索引路由配置,按文档字段的值将每个文档写入不同的目标索引,
+ * 用于把一个大索引按时间拆分为多个小索引,或者把多个索引合并为一个索引
+ * 目标索引在第一次写入前使用数据源索引的mapping创建
+ * @Date 2026/10/19 15:20
+ * @Version 1.0
+ **/
+@Data
+public class IndexRouteOption {
+
+    /**
+     * 路由字段,嵌套字段以英文句号[.]分隔,例如 order.createTime
+     */
+    private String field;
+
+    /**
+     * 目标索引名称模板,{}中为日期格式时按字段值的日期格式化,{value}为字段的原始值(转为小写),
+     * 例如 orders-{yyyy.MM} 、 logs-{value} ,不包含{}时所有文档写入同一个索引
+     */
+    private String targetPattern;
+
+    /**
+     * 字段值的日期格式,为空时支持毫秒时间戳、ISO-8601 格式和 yyyy-MM-dd HH:mm:ss 格式
+     */
+    private String dateFormat;
+
+    /**
+     * 时区,用于解析不带时区的日期和格式化目标索引名称
+     */
+    private String timeZone = "UTC";
+
+    /**
+     * 字段不存在或无法解析时写入的索引,为空时写入索引任务的目标索引
+     */
+    private String fallbackIndex;
+}
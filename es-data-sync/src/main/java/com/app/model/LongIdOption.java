@@ -0,0 +1,49 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName LongIdOption
+ * @Description 文档ID字节数超过es上限(512)时的处理配置
+ * @Date 2026/10/19 14:40
+ * @Version 1.0
+ **/
+@Data
+public class LongIdOption {
+
+    /**
+     * 忽略该文档(默认)
+     */
+    public static final String STRATEGY_SKIP = "skip";
+
+    /**
+     * 使用原ID的sha256作为新ID,原ID保存到 field 字段中
+     */
+    public static final String STRATEGY_HASH = "hash";
+
+    /**
+     * 不写入目标索引,文档写入 file 文件中,每行一个json
+     */
+    public static final String STRATEGY_FILE = "file";
+
+    /**
+     * 终止同步任务
+     */
+    public static final String STRATEGY_FAIL = "fail";
+
+    /**
+     * 处理方式: skip, hash, file, fail
+     */
+    private String strategy = STRATEGY_SKIP;
+
+    /**
+     * hash 方式下保存原ID的字段名,为空时不保存
+     */
+    private String field = "_original_id";
+
+    /**
+     * file 方式下写入的文件路径
+     */
+    private String file = "long_id_docs.json";
+}
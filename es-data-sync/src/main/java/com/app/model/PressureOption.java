@@ -0,0 +1,49 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName PressureOption
+ * @Description 集群压力感知配置,根据集群健康状态和线程池队列自动降速或暂停读写
+ * @Date 2026/10/19 18:02
+ * @Version 1.0
+ **/
+@Data
+public class PressureOption {
+
+    /**
+     * 是否开启,默认关闭
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 检查间隔,单位秒
+     */
+    private Long pollInterval = 5L;
+
+    /**
+     * 线程池队列长度(所有节点中的最大值)超过该值时降速
+     */
+    private Integer queueSlowThreshold = 50;
+
+    /**
+     * 线程池队列长度(所有节点中的最大值)超过该值时暂停
+     */
+    private Integer queuePauseThreshold = 200;
+
+    /**
+     * 降速时每次请求前等待的时间,单位毫秒
+     */
+    private Long slowDelayMillis = 1000L;
+
+    /**
+     * 单次最长暂停时间,单位秒,超过后降速继续,需要小于scroll的保留时间(60秒),避免scroll上下文过期
+     */
+    private Long maxPauseSeconds = 50L;
+
+    /**
+     * 集群为yellow时是否暂停,默认只降速,单节点集群的副本无法分配时一直为yellow
+     */
+    private Boolean pauseOnYellow = false;
+}
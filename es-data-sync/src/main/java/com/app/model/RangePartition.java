@@ -0,0 +1,122 @@
+package com.app.model;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName RangePartition
+ * @Description 按字段范围分区读取时的一个分区,范围为 [lower, upper) 或 [lower, upper]
+ * 读取中的分区可以被拆分,拆分后上界缩小为拆分点,拆分点之后的范围成为新的分区
+ * 读取和拆分都在分区对象上加锁,拆分只发生在两次查询之间,不会重复读取或遗漏数据
+ * @Date 2026/10/19 14:56
+ * @Version 1.0
+ **/
+public class RangePartition {
+
+    /**
+     * 下界(包含),为空且上界也为空时表示没有该字段的文档
+     */
+    private final Double lower;
+
+    /**
+     * 上界
+     */
+    private Double upper;
+
+    /**
+     * 是否包含上界,只有最后一个分区包含
+     */
+    private boolean includeUpper;
+
+    /**
+     * 上一页最后一条数据的排序值,第一个值为分区字段的值
+     */
+    private Object[] searchAfter;
+
+    /**
+     * 是否读取完成
+     */
+    private boolean finished;
+
+    public RangePartition(Double lower, Double upper, boolean includeUpper) {
+        this.lower = lower;
+        this.upper = upper;
+        this.includeUpper = includeUpper;
+    }
+
+    /**
+     * 没有分区字段的文档
+     */
+    public static RangePartition missingField(){
+        return new RangePartition(null, null, false);
+    }
+
+    public boolean isMissingField(){
+        return lower == null && upper == null;
+    }
+
+    /**
+     * 拆分分区,剩余范围的中点之后成为新的分区
+     * @param integral 字段是否为整数类型(含日期),整数类型的拆分点取整
+     * @return 新的分区,已读取完成或剩余范围太小时返回null
+     */
+    public synchronized RangePartition split(boolean integral){
+        if(finished || isMissingField()){
+            return null;
+        }
+        double current = searchAfter != null && searchAfter[0] instanceof Number ? ((Number) searchAfter[0]).doubleValue() : lower;
+        double middle = current + (upper - current) / 2;
+        if(integral){
+            middle = Math.floor(middle);
+        }
+        if(middle <= current || middle >= upper){
+            return null;
+        }
+        RangePartition partition = new RangePartition(middle, upper, includeUpper);
+        this.upper = middle;
+        this.includeUpper = false;
+        return partition;
+    }
+
+    /**
+     * 剩余范围的宽度,用于选择拆分的分区
+     */
+    public synchronized double remainingWidth(){
+        if(finished || isMissingField()){
+            return 0D;
+        }
+        double current = searchAfter != null && searchAfter[0] instanceof Number ? ((Number) searchAfter[0]).doubleValue() : lower;
+        return upper - current;
+    }
+
+    public Double getLower() {
+        return lower;
+    }
+
+    public Double getUpper() {
+        return upper;
+    }
+
+    public boolean isIncludeUpper() {
+        return includeUpper;
+    }
+
+    public Object[] getSearchAfter() {
+        return searchAfter;
+    }
+
+    public void setSearchAfter(Object[] searchAfter) {
+        this.searchAfter = searchAfter;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public void setFinished(boolean finished) {
+        this.finished = finished;
+    }
+
+    @Override
+    public String toString() {
+        return isMissingField() ? "[missing]" : "[" + lower + ", " + upper + (includeUpper ? "]" : ")");
+    }
+}
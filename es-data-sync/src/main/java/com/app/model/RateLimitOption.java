@@ -0,0 +1,56 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName RateLimitOption
+ * @Description 读写限速配置,为空表示不覆盖上一级的配置,小于等于0表示不限速
+ * @Date 2026/10/19 17:02
+ * @Version 1.0
+ **/
+@Data
+public class RateLimitOption {
+
+    /**
+     * 每秒读取的文档数
+     */
+    private Double readDocsPerSecond;
+
+    /**
+     * 每秒读取的字节数
+     */
+    private Double readBytesPerSecond;
+
+    /**
+     * 每秒写入的文档数
+     */
+    private Double writeDocsPerSecond;
+
+    /**
+     * 每秒写入的字节数
+     */
+    private Double writeBytesPerSecond;
+
+    /**
+     * 用另一个配置中不为空的项覆盖当前配置
+     * @param other 另一个配置
+     */
+    public void override(RateLimitOption other){
+        if(other == null){
+            return;
+        }
+        if(other.readDocsPerSecond != null){
+            this.readDocsPerSecond = other.readDocsPerSecond;
+        }
+        if(other.readBytesPerSecond != null){
+            this.readBytesPerSecond = other.readBytesPerSecond;
+        }
+        if(other.writeDocsPerSecond != null){
+            this.writeDocsPerSecond = other.writeDocsPerSecond;
+        }
+        if(other.writeBytesPerSecond != null){
+            this.writeBytesPerSecond = other.writeBytesPerSecond;
+        }
+    }
+}
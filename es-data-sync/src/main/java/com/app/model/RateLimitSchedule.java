@@ -0,0 +1,43 @@
+package com.app.model;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+import java.time.LocalTime;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName RateLimitSchedule
+ * @Description 按时间段生效的限速配置,例如工作时间降低读取速度
+ * @Date 2026/10/19 17:08
+ * @Version 1.0
+ **/
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class RateLimitSchedule extends RateLimitOption {
+
+    /**
+     * 开始时间,格式 HH:mm,包含
+     */
+    private String start;
+
+    /**
+     * 结束时间,格式 HH:mm,不包含,小于开始时间时表示跨天,例如 22:00 - 06:00
+     */
+    private String end;
+
+    /**
+     * 判断时间是否在该时间段内
+     * @param time 时间
+     * @return true - 是，false - 否
+     */
+    public boolean contains(LocalTime time){
+        LocalTime startTime = LocalTime.parse(start);
+        LocalTime endTime = LocalTime.parse(end);
+        if(startTime.isAfter(endTime)){
+            //跨天
+            return time.isBefore(endTime) || time.isBefore(startTime) == false;
+        }
+        return time.isBefore(startTime) == false && time.isBefore(endTime);
+    }
+}
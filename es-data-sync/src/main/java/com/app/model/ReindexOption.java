@@ -0,0 +1,46 @@
+package com.app.model;
+
+import lombok.Data;
+
+import java.util.Map;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName ReindexOption
+ * @Description 服务端 _reindex 迁移配置,开启后由目标集群直接从数据源拉取数据,不再经过本程序读写
+ * 数据源与目标集群为同一个集群时使用本地 reindex,否则需要配置数据源在目标集群看来的地址(reindex from remote)
+ * @Date 2026/10/19 15:07
+ * @Version 1.0
+ **/
+@Data
+public class ReindexOption {
+
+    /**
+     * 是否开启,默认关闭
+     */
+    private Boolean enabled = false;
+
+    /**
+     * 本地 reindex 的切片数,auto 时与数据源索引的主分片数一致;reindex from remote 不支持切片,固定为1
+     */
+    private String slices = "auto";
+
+    /**
+     * 任务状态的查询间隔,单位秒
+     */
+    private Long pollInterval = 5L;
+
+    /**
+     * 每个数据源的远程地址,key为数据源名称(命令行参数中的数据源为 default),未配置的数据源使用本地 reindex
+     */
+    private Map<String, ReindexRemoteOption> remotes;
+
+    /**
+     * 获取数据源的远程地址配置
+     * @param sourceName 数据源名称
+     * @return 未配置时返回null
+     */
+    public ReindexRemoteOption getRemote(String sourceName){
+        return remotes != null ? remotes.get(sourceName) : null;
+    }
+}
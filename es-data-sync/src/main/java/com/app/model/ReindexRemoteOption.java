@@ -0,0 +1,33 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName ReindexRemoteOption
+ * @Description reindex from remote 的数据源地址,目标集群需要在 reindex.remote.whitelist 中配置该地址
+ * @Date 2026/10/19 15:07
+ * @Version 1.0
+ **/
+@Data
+public class ReindexRemoteOption {
+
+    /**
+     * 数据源在目标集群看来的地址,如 http://10.0.0.1:9200
+     */
+    private String host;
+
+    private String username;
+
+    private String password;
+
+    /**
+     * 读取数据源的超时时间,为空时使用es的默认值(30s)
+     */
+    private String socketTimeout;
+
+    /**
+     * 连接数据源的超时时间,为空时使用es的默认值(30s)
+     */
+    private String connectTimeout;
+}
@@ -0,0 +1,54 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName SourceClusterOption
+ * @Description 额外数据源集群配置,与命令行参数中的数据源一起同步到同一个目标集群
+ * @Date 2026/10/19 15:10
+ * @Version 1.0
+ **/
+@Data
+public class SourceClusterOption {
+
+    /**
+     * 数据源名称,不能重复
+     */
+    private String name;
+
+    /**
+     * ip/域名,多个节点以英文逗号[,]分隔
+     */
+    private String host;
+
+    /**
+     * 端口
+     */
+    private Integer port = 9200;
+
+    /**
+     * 用户名
+     */
+    private String username;
+
+    /**
+     * 密码
+     */
+    private String password;
+
+    /**
+     * 要迁移的索引,以英文逗号[,]分隔,格式与命令行参数中的索引数组一致
+     */
+    private String indices;
+
+    /**
+     * 同时读取的索引数,小于等于0时所有索引同时读取
+     */
+    private Integer readerThreads = 0;
+
+    /**
+     * 客户端连接参数配置
+     */
+    private ClientOptions clientOptions = new ClientOptions();
+}
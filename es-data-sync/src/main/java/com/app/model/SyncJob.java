@@ -0,0 +1,106 @@
+package com.app.model;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName SyncJob
+ * @Description 守护进程中的一个同步任务,请求参数与命令行参数一一对应,同时记录任务的执行状态
+ * @Date 2026/10/19 15:14
+ * @Version 1.0
+ **/
+@Data
+public class SyncJob {
+
+    public static final String STATUS_QUEUED = "queued";
+
+    public static final String STATUS_RUNNING = "running";
+
+    public static final String STATUS_SUCCEEDED = "succeeded";
+
+    public static final String STATUS_FAILED = "failed";
+
+    public static final String STATUS_CANCELLED = "cancelled";
+
+    /**
+     * 任务ID,由守护进程生成
+     */
+    private String id;
+
+    /**
+     * 优先级,数值越大越先执行,相同优先级按提交顺序执行
+     */
+    private Integer priority = 0;
+
+    /**
+     * 数据源集群,indices 为要迁移的索引,格式与命令行参数中的索引数组一致
+     */
+    private SourceClusterOption source;
+
+    /**
+     * 目标集群
+     */
+    private TargetClusterOption target;
+
+    /**
+     * 双端阻塞队列长度
+     */
+    private Integer dequeSize = 100;
+
+    /**
+     * 单次传输数量
+     */
+    private Integer singleTransferSize = 1000;
+
+    /**
+     * 是否自定义输出索引
+     */
+    private Boolean customOutputIndex = false;
+
+    /**
+     * 双端队列监听超时时间,单位秒
+     */
+    private Long dequeListenerTimeout = 30L;
+
+    /**
+     * 扩展配置,与命令行参数中的扩展配置文件内容一致
+     */
+    private SyncOptions options = new SyncOptions();
+
+    /**
+     * 任务状态
+     */
+    private volatile String status;
+
+    /**
+     * 提交顺序,相同优先级时先提交的先执行
+     */
+    @JSONField(serialize = false)
+    private long sequence;
+
+    /**
+     * 是否已请求取消
+     */
+    @JSONField(serialize = false)
+    private volatile boolean cancelRequested;
+
+    private Long submitTime;
+
+    private Long startTime;
+
+    private Long endTime;
+
+    /**
+     * 任务结束时的说明,失败时为异常信息
+     */
+    private String message;
+
+    /**
+     * 任务是否已结束
+     */
+    @JSONField(serialize = false)
+    public boolean isFinished(){
+        return STATUS_SUCCEEDED.equals(this.status) || STATUS_FAILED.equals(this.status) || STATUS_CANCELLED.equals(this.status);
+    }
+}
@@ -0,0 +1,237 @@
+package com.app.model;
+
+import com.alibaba.fastjson.JSON;
+import lombok.Data;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName SyncOptions
+ * @Description 数据同步扩展配置,以json文件的形式传入,未配置的项均使用默认值
+ * @Date 2026/10/19 10:05
+ * @Version 1.0
+ **/
+@Data
+public class SyncOptions {
+
+    /**
+     * 默认索引配置的key,未单独配置的数据源索引使用该配置
+     */
+    public static final String DEFAULT_INDEX_KEY = "*";
+
+    /**
+     * 平台线程池模式
+     */
+    public static final String EXECUTOR_MODE_POOL = "pool";
+
+    /**
+     * 虚拟线程模式,需要jdk21及以上
+     */
+    public static final String EXECUTOR_MODE_VIRTUAL = "virtual";
+
+    /**
+     * 虚拟线程模式下未配置同时写入的批次数时的默认值
+     */
+    public static final int DEFAULT_VIRTUAL_MAX_CONCURRENT_WRITES = 256;
+
+    /**
+     * 数据源索引查询配置, key 为数据源索引名称, value 为查询条件和_source过滤配置
+     * 例如: {"index1":{"query":{"range":{"createTime":{"gte":"2022-01-01"}}},"includes":["id","name"]}}
+     */
+    private Map<String, IndexQueryOption> indexQueryOptions = new HashMap<>();
+
+    /**
+     * 数据源索引的目标索引路由配置, key 为数据源索引名称, value 为路由字段和目标索引名称模板
+     * 例如: {"orders":{"field":"createTime","targetPattern":"orders-{yyyy.MM}"}}
+     */
+    private Map<String, IndexRouteOption> indexRouteOptions = new HashMap<>();
+
+    /**
+     * 数据源es客户端连接参数配置
+     */
+    private ClientOptions inputClientOptions = new ClientOptions();
+
+    /**
+     * 目标es客户端连接参数配置
+     */
+    private ClientOptions outputClientOptions = new ClientOptions();
+
+    /**
+     * 命令行参数中的数据源同时读取的索引数,小于等于0时所有索引同时读取
+     */
+    private Integer readerThreads = 0;
+
+    /**
+     * 额外的数据源集群,与命令行参数中的数据源共用同一个目标集群、写出线程和队列
+     */
+    private List<SourceClusterOption> sources = new ArrayList<>();
+
+    /**
+     * 命令行参数中的目标集群同时写入的最大批次数,小于等于0时不限制
+     */
+    private Integer maxInFlightBulks = 0;
+
+    /**
+     * 额外的目标集群,每批数据读取一次后并行写入命令行参数中的目标集群和所有额外的目标集群
+     */
+    private List<TargetClusterOption> targets = new ArrayList<>();
+
+    /**
+     * 全局读写限速,所有数据源和目标集群共用
+     */
+    private RateLimitOption rateLimit = new RateLimitOption();
+
+    /**
+     * 按时间段生效的限速,覆盖 rateLimit 中的对应项,按顺序匹配第一个生效的时间段
+     */
+    private List<RateLimitSchedule> rateLimitSchedules = new ArrayList<>();
+
+    /**
+     * 限速控制文件路径,properties格式,运行中修改后5秒内生效,覆盖其他限速配置
+     * 例如: readDocsPerSecond=5000
+     */
+    private String rateLimitControlFile;
+
+    /**
+     * 数据源集群压力感知,search线程池队列过长或集群状态异常时读取降速或暂停
+     */
+    private PressureOption sourcePressure = new PressureOption();
+
+    /**
+     * 目标集群压力感知,write线程池队列过长或集群状态异常时写入降速或暂停
+     */
+    private PressureOption targetPressure = new PressureOption();
+
+    /**
+     * 读写任务的执行模式, pool - 平台线程池(默认), virtual - 虚拟线程,jdk不支持时自动使用平台线程池
+     */
+    private String executorMode = EXECUTOR_MODE_POOL;
+
+    /**
+     * 所有数据源合计同时读取的索引数,小于等于0时不限制
+     */
+    private Integer maxConcurrentReaders = 0;
+
+    /**
+     * 所有目标集群合计同时写入的批次数,小于等于0时不限制,虚拟线程模式下默认为256
+     */
+    private Integer maxConcurrentWrites = 0;
+
+    /**
+     * 是否保留数据源文档的版本号,开启后以 external 版本写入目标索引,目标中版本号更大或相同的文档不会被覆盖
+     * 关闭时(默认)以 create 方式写入,不覆盖已存在的文档
+     */
+    private Boolean preserveVersion = false;
+
+    /**
+     * 文档ID字节数超过上限时的处理方式
+     */
+    private LongIdOption longIdOption = new LongIdOption();
+
+    /**
+     * 同步进度汇总的打印间隔,单位秒,小于等于0时不打印,每批次的明细只在debug级别打印
+     */
+    private Long progressInterval = 30L;
+
+    /**
+     * 试运行,只评估迁移耗时和推荐参数,不创建目标索引也不迁移数据
+     */
+    private Boolean dryRun = false;
+
+    /**
+     * 试运行时每个索引抽样读取的页数,每页的数量为单次传输数量
+     */
+    private Integer planSamplePages = 3;
+
+    /**
+     * 初始化时并发检查索引、创建目标索引和统计数据量的线程数
+     */
+    private Integer initThreads = 16;
+
+    /**
+     * 流式启动,每个索引检查、创建和统计完成后立即开始迁移,不等待所有索引初始化完成
+     * 试运行或只同步索引结构时不生效
+     */
+    private Boolean streamingStart = true;
+
+    /**
+     * 每个读取任务预读的页数,读取线程处理当前页时下一页的查询已经在执行,为0时不预读
+     * 每页占用一个数据包装类的内存,预读越多内存占用越大
+     */
+    private Integer prefetchDepth = 1;
+
+    /**
+     * 是否使用低级客户端批量写入,请求体由_source字节直接拼接,响应只返回错误信息
+     * false - 使用高级客户端的 BulkRequest 写入
+     */
+    private Boolean lowLevelBulk = true;
+
+    /**
+     * 是否使用低级客户端查询并逐个token解析响应,_source直接引用响应字节,不构建 SearchHit 对象
+     * false - 使用高级客户端的 SearchResponse 解析
+     */
+    private Boolean streamingSearch = true;
+
+    /**
+     * 查询响应的格式,json、smile 或 cbor,smile 和 cbor 需要开启流式解析(streamingSearch)
+     * smile 时批量写入也使用 smile;bulk 不支持 cbor,写入前转换为 json
+     * 数据源中_source以json存储时,二进制格式需要集群对每个文档转换格式,使用前建议先运行 WireFormatBenchmark 对比
+     */
+    private String wireFormat = "json";
+
+    /**
+     * 服务端 _reindex 迁移配置,开启后由目标集群直接从数据源拉取数据
+     */
+    private ReindexOption reindexOption = new ReindexOption();
+
+    /**
+     * 多进程协作迁移配置
+     */
+    private DistributedOption distributedOption = new DistributedOption();
+
+    /**
+     * 获取数据源索引的查询配置
+     * @param inputIndexName 数据源索引名称
+     * @return 未配置时返回null
+     */
+    public IndexQueryOption getIndexQueryOption(String inputIndexName){
+        if(indexQueryOptions == null){
+            return null;
+        }
+        IndexQueryOption option = indexQueryOptions.get(inputIndexName);
+        return option != null ? option : indexQueryOptions.get(DEFAULT_INDEX_KEY);
+    }
+
+    /**
+     * 获取数据源索引的目标索引路由配置,未单独配置时使用默认配置
+     * @param inputIndexName 数据源索引名称
+     * @return 路由配置,不路由时为空
+     */
+    public IndexRouteOption getIndexRouteOption(String inputIndexName){
+        if(indexRouteOptions == null){
+            return null;
+        }
+        IndexRouteOption option = indexRouteOptions.get(inputIndexName);
+        return option != null ? option : indexRouteOptions.get(DEFAULT_INDEX_KEY);
+    }
+
+    /**
+     * 从json文件中加载配置
+     * @param path 配置文件路径
+     * @return 配置对象
+     * @throws IOException
+     */
+    public static SyncOptions load(String path) throws IOException {
+        String json = FileUtils.readFileToString(new File(path), StandardCharsets.UTF_8.name());
+        SyncOptions options = JSON.parseObject(json, SyncOptions.class);
+        return options != null ? options : new SyncOptions();
+    }
+}
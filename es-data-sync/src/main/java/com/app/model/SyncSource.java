@@ -0,0 +1,54 @@
+package com.app.model;
+
+import lombok.Data;
+import org.elasticsearch.client.RestHighLevelClient;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName SyncSource
+ * @Description 数据源,一个同步任务可以有多个数据源(多个集群汇聚到同一个目标集群),共用写出线程和队列
+ * @Date 2026/10/19 15:02
+ * @Version 1.0
+ **/
+@Data
+public class SyncSource {
+
+    /**
+     * 命令行参数中的数据源名称
+     */
+    public static final String DEFAULT_NAME = "default";
+
+    /**
+     * 数据源名称,用于区分不同数据源中同名的索引
+     */
+    private String name;
+
+    /**
+     * 数据源es客户端
+     */
+    private RestHighLevelClient client;
+
+    /**
+     * 需要迁移的索引,格式与命令行参数中的索引数组一致
+     */
+    private String[] indexArray;
+
+    /**
+     * 同时读取的索引数,小于等于0时该数据源的所有索引同时读取
+     */
+    private Integer readerThreads = 0;
+
+    /**
+     * 构造方法
+     * @param name 数据源名称
+     * @param client 数据源es客户端
+     * @param indexArray 需要迁移的索引
+     * @param readerThreads 同时读取的索引数
+     */
+    public SyncSource(String name, RestHighLevelClient client, String[] indexArray, Integer readerThreads) {
+        this.name = name;
+        this.client = client;
+        this.indexArray = indexArray;
+        this.readerThreads = readerThreads != null ? readerThreads : 0;
+    }
+}
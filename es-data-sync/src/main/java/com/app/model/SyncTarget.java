@@ -0,0 +1,69 @@
+package com.app.model;
+
+import lombok.Data;
+import org.elasticsearch.client.RestHighLevelClient;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName SyncTarget
+ * @Description 目标集群,一个同步任务可以有多个目标集群,每批数据读取一次后并行写入所有目标集群
+ * @Date 2026/10/19 16:05
+ * @Version 1.0
+ **/
+@Data
+public class SyncTarget {
+
+    /**
+     * 命令行参数中的目标集群名称
+     */
+    public static final String DEFAULT_NAME = "default";
+
+    /**
+     * 目标集群名称
+     */
+    private String name;
+
+    /**
+     * 目标es客户端
+     */
+    private RestHighLevelClient client;
+
+    /**
+     * 写入中的批次数限制,为空时不限制
+     * 某个目标集群写入变慢时,只会占满自己的许可,队列监听器等待该目标集群的许可,从而对读取端形成反压
+     */
+    private Semaphore inFlightPermits;
+
+    /**
+     * 构造方法
+     * @param name 目标集群名称
+     * @param client 目标es客户端
+     * @param maxInFlightBulks 同时写入的最大批次数,小于等于0时不限制
+     */
+    public SyncTarget(String name, RestHighLevelClient client, Integer maxInFlightBulks) {
+        this.name = name;
+        this.client = client;
+        this.inFlightPermits = maxInFlightBulks != null && maxInFlightBulks > 0 ? new Semaphore(maxInFlightBulks) : null;
+    }
+
+    /**
+     * 获取一个写入许可,许可用完时阻塞
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        if(inFlightPermits != null){
+            inFlightPermits.acquire();
+        }
+    }
+
+    /**
+     * 释放写入许可
+     */
+    public void release(){
+        if(inFlightPermits != null){
+            inFlightPermits.release();
+        }
+    }
+}
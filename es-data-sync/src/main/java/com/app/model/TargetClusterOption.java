@@ -0,0 +1,49 @@
+package com.app.model;
+
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName TargetClusterOption
+ * @Description 额外目标集群配置,数据读取一次后同时写入命令行参数中的目标集群和额外的目标集群
+ * @Date 2026/10/19 16:12
+ * @Version 1.0
+ **/
+@Data
+public class TargetClusterOption {
+
+    /**
+     * 目标集群名称,不能重复
+     */
+    private String name;
+
+    /**
+     * ip/域名,多个节点以英文逗号[,]分隔
+     */
+    private String host;
+
+    /**
+     * 端口
+     */
+    private Integer port = 9200;
+
+    /**
+     * 用户名
+     */
+    private String username;
+
+    /**
+     * 密码
+     */
+    private String password;
+
+    /**
+     * 同时写入的最大批次数,小于等于0时不限制
+     */
+    private Integer maxInFlightBulks = 0;
+
+    /**
+     * 客户端连接参数配置
+     */
+    private ClientOptions clientOptions = new ClientOptions();
+}
@@ -0,0 +1,44 @@
+package com.app.model;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName TrafficStats
+ * @Description 网络传输字节数统计,统计的是实际在网络上传输的字节数(压缩后)
+ * @Date 2026/10/19 11:26
+ * @Version 1.0
+ **/
+public class TrafficStats {
+
+    /**
+     * 发送的字节数
+     */
+    private final LongAdder sentBytes = new LongAdder();
+
+    /**
+     * 接收的字节数
+     */
+    private final LongAdder receivedBytes = new LongAdder();
+
+    public void sentIncr(long bytes){
+        this.sentBytes.add(bytes);
+    }
+
+    public void receivedIncr(long bytes){
+        this.receivedBytes.add(bytes);
+    }
+
+    public long getSentBytes() {
+        return sentBytes.sum();
+    }
+
+    public long getReceivedBytes() {
+        return receivedBytes.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "发送[" + getSentBytes() + "]字节, 接收[" + getReceivedBytes() + "]字节";
+    }
+}
@@ -0,0 +1,75 @@
+package com.app.model;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import lombok.Data;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName WorkUnit
+ * @Description 多进程协作迁移的工作单元,一个索引的一个切片
+ * @Date 2026/10/19 15:11
+ * @Version 1.0
+ **/
+@Data
+public class WorkUnit {
+
+    public static final String STATUS_PENDING = "pending";
+
+    public static final String STATUS_LEASED = "leased";
+
+    public static final String STATUS_DONE = "done";
+
+    public static final String STATUS_FAILED = "failed";
+
+    /**
+     * 工作单元ID,格式为 数据源名称/索引任务#切片ID/切片数
+     */
+    private String id;
+
+    private String sourceName;
+
+    private String indexTask;
+
+    private Integer sliceId;
+
+    /**
+     * 切片数,为1时不切片
+     */
+    private Integer sliceMax;
+
+    private String status = STATUS_PENDING;
+
+    /**
+     * 租用的进程
+     */
+    private String owner;
+
+    /**
+     * 租约到期时间,毫秒时间戳
+     */
+    private Long leaseExpireTime;
+
+    /**
+     * 领取次数
+     */
+    private Integer attempts = 0;
+
+    public WorkUnit() {
+    }
+
+    public WorkUnit(String sourceName, String indexTask, int sliceId, int sliceMax) {
+        this.id = sourceName + "/" + indexTask + "#" + sliceId + "/" + sliceMax;
+        this.sourceName = sourceName;
+        this.indexTask = indexTask;
+        this.sliceId = sliceId;
+        this.sliceMax = sliceMax;
+    }
+
+    /**
+     * 是否已结束(完成或失败)
+     */
+    @JSONField(serialize = false)
+    public boolean isFinished(){
+        return STATUS_DONE.equals(status) || STATUS_FAILED.equals(status);
+    }
+}
@@ -0,0 +1,17 @@
+package com.app.service;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName DocIdTooLongException
+ * @Description 文档ID字节数超过上限,且配置的处理方式为终止同步任务时抛出
+ * @Date 2026/10/19 14:40
+ * @Version 1.0
+ **/
+public class DocIdTooLongException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public DocIdTooLongException(String indexName, String docId, int byteLength, int maxByteLength) {
+        super("索引名称为[" + indexName + "],文档id为[" + docId + "]的数据,id字段字节数为[" + byteLength + "],超过最大值[" + maxByteLength + "]");
+    }
+}
@@ -1,29 +1,77 @@
 package com.app.service;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import com.app.core.BatchTracer;
 import com.app.model.ConstantModel;
+import com.app.model.DataWrapperPool;
 import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.IndexQueryOption;
+import com.app.model.LongIdOption;
+import com.app.model.RangePartition;
+import com.app.model.ReindexRemoteOption;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.google.common.hash.Hashing;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsRequest;
+import org.elasticsearch.action.admin.indices.settings.get.GetSettingsResponse;
+import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.fieldcaps.FieldCapabilities;
+import org.elasticsearch.action.fieldcaps.FieldCapabilitiesRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.search.*;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.core.CountRequest;
 import org.elasticsearch.client.core.CountResponse;
 import org.elasticsearch.client.indices.*;
+import org.elasticsearch.cluster.metadata.IndexMetadata;
 import org.elasticsearch.cluster.metadata.MappingMetadata;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
 import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.mapper.RoutingFieldMapper;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.Scroll;
 import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.metrics.Max;
+import org.elasticsearch.search.aggregations.metrics.Min;
+import org.elasticsearch.search.aggregations.metrics.Percentiles;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @Author miaoyoulin
@@ -40,6 +88,105 @@ public class ElasticsearchService {
      */
     private static final Integer INDEX_DOC_ID_BYTES_MAX = 512;
 
+    /**
+     * 解析索引名称时每次请求路径中索引名称的最大长度,es默认的请求行最大长度(http.max_initial_line_length)为4KB
+     */
+    private static final int MAX_INDICES_PATH_LENGTH = 2048;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    /**
+     * 数据包装类对象池,为空时每批次新建
+     */
+    private volatile DataWrapperPool dataWrapperPool;
+
+    /**
+     * 是否读取并保留文档的版本号
+     */
+    private volatile boolean preserveVersion;
+
+    /**
+     * 设置是否读取并保留文档的版本号
+     * @param preserveVersion true - 以 external 版本写入, false - 以 create 方式写入
+     */
+    public void setPreserveVersion(boolean preserveVersion) {
+        this.preserveVersion = preserveVersion;
+    }
+
+    /**
+     * 是否使用低级客户端批量写入
+     */
+    private volatile boolean lowLevelBulk;
+
+    private final LowLevelBulkWriter lowLevelBulkWriter = new LowLevelBulkWriter();
+
+    /**
+     * 设置是否使用低级客户端批量写入
+     * @param lowLevelBulk true - 低级客户端写入, false - 高级客户端写入
+     */
+    public void setLowLevelBulk(boolean lowLevelBulk) {
+        this.lowLevelBulk = lowLevelBulk;
+    }
+
+    /**
+     * 是否使用低级客户端查询并逐个token解析响应
+     */
+    private volatile boolean streamingSearch;
+
+    private volatile StreamingSearchReader streamingSearchReader = new StreamingSearchReader(XContentType.JSON);
+
+    /**
+     * 设置是否使用低级客户端查询并逐个token解析响应
+     * @param streamingSearch true - 流式解析, false - 高级客户端查询
+     */
+    public void setStreamingSearch(boolean streamingSearch) {
+        this.streamingSearch = streamingSearch;
+    }
+
+    /**
+     * 设置查询响应的格式,只在流式解析时生效,批量写入的格式与_source的格式一致
+     * @param wireFormat JSON、SMILE 或 CBOR
+     */
+    public void setWireFormat(XContentType wireFormat) {
+        this.streamingSearchReader = new StreamingSearchReader(wireFormat);
+    }
+
+    /**
+     * 文档ID字节数超过上限时的处理方式
+     */
+    private volatile LongIdOption longIdOption = new LongIdOption();
+
+    /**
+     * id字段字节数超过上限的文档总数
+     */
+    private final LongAdder longIdTotalCount = new LongAdder();
+
+    /**
+     * 设置文档ID字节数超过上限时的处理方式
+     * @param longIdOption 处理方式
+     */
+    public void setLongIdOption(LongIdOption longIdOption) {
+        this.longIdOption = longIdOption;
+    }
+
+    /**
+     * 设置数据包装类对象池
+     * @param dataWrapperPool 对象池
+     */
+    public void setDataWrapperPool(DataWrapperPool dataWrapperPool) {
+        this.dataWrapperPool = dataWrapperPool;
+    }
+
+    /**
+     * 获取集群的唯一标识,用于判断两个客户端是否连接同一个集群
+     * @param client es客户端
+     * @return 集群uuid
+     * @throws IOException
+     */
+    public String getClusterUuid(RestHighLevelClient client) throws IOException {
+        return client.info(RequestOptions.DEFAULT).getClusterUuid();
+    }
+
     /**
      * 判断索引是否存在
      * @param client es客户端
@@ -54,6 +201,61 @@ public class ElasticsearchService {
         return client.indices().exists(request, RequestOptions.DEFAULT);
     }
 
+    /**
+     * 将索引名称(支持通配符、别名和数据流)解析为实际的索引名称,不存在的名称忽略
+     * 名称按请求路径长度分批解析,避免索引数量多时请求行超过es的长度限制
+     * @param client es客户端
+     * @param patterns 索引名称
+     * @return 按名称排序并去重后的索引名称
+     */
+    public List<String> resolveIndices(RestHighLevelClient client, String[] patterns) throws IOException {
+        Set<String> indices = new TreeSet<>();
+        StringBuilder path = new StringBuilder();
+        int pathLength = 0;
+        for (String pattern : patterns) {
+            int length = encodedLength(pattern);
+            if(pathLength > 0 && pathLength + 1 + length > MAX_INDICES_PATH_LENGTH){
+                this.resolveIndices(client, path.toString(), indices);
+                path.setLength(0);
+                pathLength = 0;
+            }
+            if(pathLength > 0){
+                path.append(',');
+                pathLength++;
+            }
+            path.append(pattern);
+            pathLength += length;
+        }
+        if(pathLength > 0){
+            this.resolveIndices(client, path.toString(), indices);
+        }
+        return new ArrayList<>(indices);
+    }
+
+    /**
+     * 名称在请求行中的长度,非ASCII字符按UTF-8编码后每个字节转义为3个字符
+     */
+    private static int encodedLength(String name){
+        int length = 0;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            length += b < 0 ? 3 : 1;
+        }
+        return length;
+    }
+
+    private void resolveIndices(RestHighLevelClient client, String path, Set<String> indices) throws IOException {
+        Request request = new Request("GET", "/_cat/indices/" + path);
+        request.addParameter("h", "index");
+        request.addParameter("format", "json");
+        request.addParameter("expand_wildcards", "open");
+        request.addParameter("ignore_unavailable", "true");
+        Response response = client.getLowLevelClient().performRequest(request);
+        JSONArray rows = JSON.parseArray(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+        for (int i = 0; i < rows.size(); i++) {
+            indices.add(rows.getJSONObject(i).getString("index"));
+        }
+    }
+
     /**
      * 获取索引映射信息
      * @param client es客户端
@@ -84,16 +286,42 @@ public class ElasticsearchService {
         return client.indices().create(request, RequestOptions.DEFAULT);
     }
 
+    /**
+     * 删除索引
+     * @param client es客户端
+     * @param indexName 索引名称
+     * @return true - 删除成功
+     */
+    public boolean deleteIndex(RestHighLevelClient client, String indexName) throws IOException {
+        DeleteIndexRequest request = new DeleteIndexRequest(indexName);
+        return client.indices().delete(request, RequestOptions.DEFAULT).isAcknowledged();
+    }
+
+    /**
+     * 获取索引的主分片数
+     * @param client es客户端
+     * @param indexName 索引名称
+     * @return 主分片数,获取不到时返回1
+     */
+    public int getNumberOfShards(RestHighLevelClient client, String indexName) throws IOException {
+        GetSettingsRequest request = new GetSettingsRequest().indices(indexName).names(IndexMetadata.SETTING_NUMBER_OF_SHARDS);
+        GetSettingsResponse response = client.indices().getSettings(request, RequestOptions.DEFAULT);
+        String value = response.getSetting(indexName, IndexMetadata.SETTING_NUMBER_OF_SHARDS);
+        return value != null ? Integer.parseInt(value) : 1;
+    }
+
     /**
      * 统计总数
      * @param client es客户端
      * @param indexName 索引名称
+     * @param queryOption 查询配置,为空时统计所有
      * @return
      * @throws IOException
      */
-    public Long countToTal(RestHighLevelClient client, String indexName) throws IOException {
+    public Long countToTal(RestHighLevelClient client, String indexName, IndexQueryOption queryOption) throws IOException {
         CountRequest countRequest = new CountRequest(indexName);
-        //统计所有
+        //与读取时使用相同的查询条件,保证统计数量与实际迁移数量一致
+        countRequest.query(this.buildQuery(queryOption));
         CountResponse count  = client.count(countRequest, RequestOptions.DEFAULT);
         if(count == null){
             return 0L;
@@ -108,13 +336,17 @@ public class ElasticsearchService {
      * @param indexName 索引名称
      * @param objects 排序数组
      * @param limit 每次查询的条数
+     * @param queryOption 查询配置,为空时查询所有
      * @return 返回es数据包装类，es中数据包装于其中
      */
-    public ElasticsearchDataWrapper searchAfter(RestHighLevelClient client, String indexName, Object[] objects, Integer limit) throws IOException {
+    public ElasticsearchDataWrapper searchAfter(RestHighLevelClient client, String indexName, Object[] objects, Integer limit, IndexQueryOption queryOption) throws IOException {
         //防止索引名称是否为自定义的输出索引与输入索引拼接而成,类似形式为 inputIndex -> outputIndex,下标为0的是输入索引，下标为1的是输出索引
         String[] split = indexName.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
         String inputIndexName = split[0];
         SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.query(this.buildQuery(queryOption));
+        this.applySourceFilter(sourceBuilder, queryOption);
+        sourceBuilder.version(this.preserveVersion);
         //每次查询的条数
         sourceBuilder.size(limit);
         //默认按照id倒叙排序
@@ -122,19 +354,134 @@ public class ElasticsearchService {
         if(objects[0].toString().equals("start") == false){
             sourceBuilder.searchAfter(objects);
         }
+        if(this.streamingSearch){
+            return this.streamSearch(client, indexName, "/" + inputIndexName + "/_search", null, Strings.toString(sourceBuilder), limit);
+        }
         SearchRequest searchRequest = new SearchRequest(inputIndexName);
         searchRequest.source(sourceBuilder);
         SearchResponse search = client.search(searchRequest, RequestOptions.DEFAULT);
         SearchHit[] hits = search.getHits().getHits();
-        ElasticsearchDataWrapper dataWrapper = new ElasticsearchDataWrapper(indexName,hits.length);
+        ElasticsearchDataWrapper dataWrapper = this.newDataWrapper(indexName,hits.length);
         if(hits.length > 0){
             //记录下最后一组数据的排序数组
             dataWrapper.setSortValues(hits[hits.length - 1].getSortValues());
         }
-        for (SearchHit hit : hits) {
-            ElasticsearchDataWrapper.DataEntity dataEntity = dataWrapper.new DataEntity(hit.getId(), hit.getSourceAsString());
-            dataWrapper.getEntityList().add(dataEntity);
+        this.addEntities(dataWrapper, hits);
+        return dataWrapper;
+    }
+
+    /**
+     * 获取字段类型
+     * @param client es客户端
+     * @param indexName 索引名称
+     * @param field 字段名
+     * @return 字段类型,字段不存在或多个索引中类型不一致时返回null
+     */
+    public String getFieldType(RestHighLevelClient client, String indexName, String field) throws IOException {
+        FieldCapabilitiesRequest request = new FieldCapabilitiesRequest().fields(field).indices(indexName);
+        Map<String, FieldCapabilities> capabilities = client.fieldCaps(request, RequestOptions.DEFAULT).getField(field);
+        if(capabilities == null || capabilities.size() != 1){
+            return null;
         }
+        return capabilities.keySet().iterator().next();
+    }
+
+    /**
+     * 计算按字段值分区的边界,使用百分位聚合让每个分区的数据量大致相同
+     * @param client es客户端
+     * @param indexName 索引名称
+     * @param field 分区字段
+     * @param partitions 分区数
+     * @param integral 字段是否为整数类型(含日期),边界取整
+     * @param queryOption 查询配置,为空时统计所有
+     * @return 去重后递增的边界,第一个为最小值,最后一个为最大值,没有数据时返回空数组
+     */
+    public double[] partitionBounds(RestHighLevelClient client, String indexName, String field, int partitions, boolean integral, IndexQueryOption queryOption) throws IOException {
+        double[] percents = new double[partitions - 1];
+        for (int i = 1; i < partitions; i++) {
+            percents[i - 1] = 100D * i / partitions;
+        }
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.query(this.buildQuery(queryOption));
+        sourceBuilder.size(0);
+        sourceBuilder.aggregation(AggregationBuilders.min("min").field(field));
+        sourceBuilder.aggregation(AggregationBuilders.max("max").field(field));
+        sourceBuilder.aggregation(AggregationBuilders.percentiles("percentiles").field(field).percentiles(percents));
+        SearchResponse response = client.search(new SearchRequest(indexName).source(sourceBuilder), RequestOptions.DEFAULT);
+        double min = ((Min) response.getAggregations().get("min")).getValue();
+        double max = ((Max) response.getAggregations().get("max")).getValue();
+        if(Double.isInfinite(min) || Double.isInfinite(max)){
+            return new double[0];
+        }
+        Percentiles percentiles = response.getAggregations().get("percentiles");
+        TreeSet<Double> bounds = new TreeSet<>();
+        bounds.add(min);
+        bounds.add(max);
+        for (double percent : percents) {
+            double bound = percentiles.percentile(percent);
+            if(integral){
+                bound = Math.floor(bound);
+            }
+            //百分位是近似值,只保留在最小值和最大值之间的
+            if(bound > min && bound < max){
+                bounds.add(bound);
+            }
+        }
+        return bounds.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    /**
+     * 按字段范围分区读取一页数据,按分区字段和_id排序,使用 searchAfter 翻页
+     * 需要在分区对象上加锁后调用
+     * @param client es客户端
+     * @param indexName 索引名称,可能为 inputIndex -> outputIndex 形式
+     * @param field 分区字段
+     * @param dateField 是否为日期字段
+     * @param partition 分区
+     * @param limit 每次查询的条数
+     * @param queryOption 查询配置,为空时查询所有
+     * @return 返回es数据包装类,排序值为最后一条数据的排序值
+     */
+    public ElasticsearchDataWrapper searchRange(RestHighLevelClient client, String indexName, String field, boolean dateField, RangePartition partition, Integer limit, IndexQueryOption queryOption) throws IOException {
+        String inputIndexName = indexName.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS)[0];
+        BoolQueryBuilder query = QueryBuilders.boolQuery().filter(this.buildQuery(queryOption));
+        if(partition.isMissingField()){
+            query.mustNot(QueryBuilders.existsQuery(field));
+        }else {
+            RangeQueryBuilder range = QueryBuilders.rangeQuery(field).includeLower(true).includeUpper(partition.isIncludeUpper());
+            if(dateField){
+                //日期字段的边界为毫秒时间戳
+                range.from(partition.getLower().longValue()).to(partition.getUpper().longValue()).format("epoch_millis");
+            }else {
+                range.from(partition.getLower()).to(partition.getUpper());
+            }
+            query.filter(range);
+        }
+        SearchSourceBuilder sourceBuilder = new SearchSourceBuilder();
+        sourceBuilder.query(query);
+        this.applySourceFilter(sourceBuilder, queryOption);
+        sourceBuilder.version(this.preserveVersion);
+        sourceBuilder.size(limit);
+        if(partition.isMissingField() == false){
+            sourceBuilder.sort(field, SortOrder.ASC);
+        }
+        //分区字段值相同的文档按唯一字段排序,保证 searchAfter 游标不重复不遗漏
+        String tiebreaker = queryOption != null && queryOption.getPartitionTiebreaker() != null && queryOption.getPartitionTiebreaker().isEmpty() == false ? queryOption.getPartitionTiebreaker() : "_id";
+        sourceBuilder.sort(tiebreaker, SortOrder.ASC);
+        if(partition.getSearchAfter() != null){
+            sourceBuilder.searchAfter(partition.getSearchAfter());
+        }
+        if(this.streamingSearch){
+            return this.streamSearch(client, indexName, "/" + inputIndexName + "/_search", null, Strings.toString(sourceBuilder), limit);
+        }
+        SearchResponse search = client.search(new SearchRequest(inputIndexName).source(sourceBuilder), RequestOptions.DEFAULT);
+        SearchHit[] hits = search.getHits().getHits();
+        ElasticsearchDataWrapper dataWrapper = this.newDataWrapper(indexName,hits.length);
+        if(hits.length > 0){
+            //记录下最后一组数据的排序数组
+            dataWrapper.setSortValues(hits[hits.length - 1].getSortValues());
+        }
+        this.addEntities(dataWrapper, hits);
         return dataWrapper;
     }
 
@@ -143,9 +490,23 @@ public class ElasticsearchService {
      * @param client
      * @param indexName
      * @param limit
+     * @param queryOption 查询配置,为空时查询所有
      * @return
      */
-    public ElasticsearchDataWrapper scrollBefore(RestHighLevelClient client, String indexName, Integer limit) throws IOException {
+    public ElasticsearchDataWrapper scrollBefore(RestHighLevelClient client, String indexName, Integer limit, IndexQueryOption queryOption) throws IOException {
+        return this.scrollBefore(client, indexName, limit, queryOption, null);
+    }
+
+    /**
+     * 切片scroll查询方式的初始查询
+     * @param client
+     * @param indexName
+     * @param limit
+     * @param queryOption 查询配置,为空时查询所有
+     * @param slice 切片,为空时不切片
+     * @return
+     */
+    public ElasticsearchDataWrapper scrollBefore(RestHighLevelClient client, String indexName, Integer limit, IndexQueryOption queryOption, SliceBuilder slice) throws IOException {
         //防止索引名称是否为自定义的输出索引与输入索引拼接而成,类似形式为 inputIndex -> outputIndex,下标为0的是输入索引，下标为1的是输出索引
         String[] split = indexName.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
         String inputIndexName = split[0];
@@ -154,8 +515,18 @@ public class ElasticsearchService {
         SearchRequest searchRequest = new SearchRequest(inputIndexName);
         //构建查询条件
         SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
-        searchSourceBuilder.query(QueryBuilders.matchAllQuery());
+        searchSourceBuilder.query(this.buildQuery(queryOption));
+        //只返回需要的字段,减少传输的数据量
+        this.applySourceFilter(searchSourceBuilder, queryOption);
+        //scroll 后续批次沿用初始查询的设置
+        searchSourceBuilder.version(this.preserveVersion);
         searchSourceBuilder.size(limit);
+        if(slice != null){
+            searchSourceBuilder.slice(slice);
+        }
+        if(this.streamingSearch){
+            return this.streamSearch(client, indexName, "/" + inputIndexName + "/_search", scroll.keepAlive().getStringRep(), Strings.toString(searchSourceBuilder), limit);
+        }
         //关键字 _doc 是最有效的排序顺序
         //如非必要，不建议添加排序字段，因为查询很慢
         //searchSourceBuilder.sort("_doc",SortOrder.DESC);
@@ -165,18 +536,256 @@ public class ElasticsearchService {
         //查询
         SearchResponse searchResponse = client.search(searchRequest, RequestOptions.DEFAULT);
         SearchHit[] hits = searchResponse.getHits().getHits();
-        ElasticsearchDataWrapper dataWrapper = new ElasticsearchDataWrapper(indexName,hits.length);
+        ElasticsearchDataWrapper dataWrapper = this.newDataWrapper(indexName,hits.length);
         if(hits.length > 0){
             //记录下最后一组数据的排序数组
             dataWrapper.setScrollId(searchResponse.getScrollId());
         }
-        for (SearchHit hit : hits) {
-            ElasticsearchDataWrapper.DataEntity dataEntity = dataWrapper.new DataEntity(hit.getId(), hit.getSourceAsString());
-            dataWrapper.getEntityList().add(dataEntity);
+        this.addEntities(dataWrapper, hits);
+        return dataWrapper;
+    }
+
+    /**
+     * 使用低级客户端查询,逐个token解析响应并放入数据包装类中
+     * @param client es客户端
+     * @param indexName 索引任务名称
+     * @param endpoint 请求路径
+     * @param scroll scroll 的保留时间,为空时不使用scroll
+     * @param body 请求体
+     * @param expectedSize 预计的文档数量,用于初始化数据包装类
+     * @return 返回es数据包装类,scrollId 和排序值为本页的游标
+     */
+    private ElasticsearchDataWrapper streamSearch(RestHighLevelClient client, String indexName, String endpoint, String scroll, String body, int expectedSize) throws IOException {
+        StreamingSearchReader reader = this.streamingSearchReader;
+        ElasticsearchDataWrapper dataWrapper = this.newDataWrapper(indexName, expectedSize);
+        dataWrapper.setSourceType(reader.getSourceType());
+        EntityAppender appender = new EntityAppender(dataWrapper);
+        StreamingSearchReader.PageCursor cursor = reader.search(client.getLowLevelClient(), endpoint, scroll, body, appender);
+        if(cursor.getHitCount() > 0){
+            //记录下一页的游标
+            dataWrapper.setScrollId(cursor.getScrollId());
+            dataWrapper.setSortValues(cursor.getLastSortValues());
         }
+        appender.finish();
         return dataWrapper;
     }
 
+    /**
+     * 将查询结果放入数据包装类中,文档ID字节数超过上限时按配置的方式处理
+     * @param dataWrapper 数据包装类
+     * @param hits 查询结果
+     */
+    private void addEntities(ElasticsearchDataWrapper dataWrapper, SearchHit[] hits) throws IOException {
+        EntityAppender appender = new EntityAppender(dataWrapper);
+        for (SearchHit hit : hits) {
+            //_routing 作为元数据字段随查询结果返回,未指定路由的文档为空
+            DocumentField routingField = hit.field(RoutingFieldMapper.NAME);
+            String routing = routingField != null ? routingField.getValue() : null;
+            appender.accept(hit.getId(), routing, hit.getVersion(), hit.getSourceRef());
+        }
+        appender.finish();
+    }
+
+    /**
+     * 将一页查询结果中的文档依次放入数据包装类中,文档ID字节数超过上限时按配置的方式处理,按批次统计和打印日志
+     */
+    private class EntityAppender implements StreamingSearchReader.HitConsumer {
+
+        private final ElasticsearchDataWrapper dataWrapper;
+
+        private final LongIdOption longIdOption = ElasticsearchService.this.longIdOption;
+
+        private int longIdCount;
+
+        private String firstLongId;
+
+        private List<String> sideFileLines;
+
+        EntityAppender(ElasticsearchDataWrapper dataWrapper) {
+            this.dataWrapper = dataWrapper;
+        }
+
+        @Override
+        public void accept(String docId, String routing, long version, BytesReference source) throws IOException {
+            int docIdByteLength = utf8Length(docId);
+            if(docIdByteLength <= INDEX_DOC_ID_BYTES_MAX){
+                dataWrapper.add(docId, routing, version, source);
+                return;
+            }
+            //es7.x以上,_id字段字节数不能超过512
+            if(LongIdOption.STRATEGY_FAIL.equalsIgnoreCase(longIdOption.getStrategy())){
+                throw new DocIdTooLongException(dataWrapper.getIndexName(), docId, docIdByteLength, INDEX_DOC_ID_BYTES_MAX);
+            }
+            if(longIdCount++ == 0){
+                firstLongId = docId;
+            }
+            if(LongIdOption.STRATEGY_HASH.equalsIgnoreCase(longIdOption.getStrategy())){
+                String hashId = Hashing.sha256().hashString(docId, StandardCharsets.UTF_8).toString();
+                dataWrapper.add(hashId, routing, version, appendIdField(source, dataWrapper.getSourceType(), longIdOption.getField(), docId));
+            }else if(LongIdOption.STRATEGY_FILE.equalsIgnoreCase(longIdOption.getStrategy())){
+                if(sideFileLines == null){
+                    sideFileLines = new ArrayList<>();
+                }
+                sideFileLines.add(toSideFileLine(dataWrapper.getIndexName(), docId, routing, source, dataWrapper.getSourceType()));
+            }
+        }
+
+        /**
+         * 一页处理完成后写入文件并打印日志
+         */
+        void finish() throws IOException {
+            if(longIdCount == 0){
+                return;
+            }
+            //按批次统计,避免每个文档打印一次日志
+            if(sideFileLines != null){
+                writeSideFile(longIdOption.getFile(), sideFileLines);
+            }
+            longIdTotalCount.add(longIdCount);
+            log.warn("索引同步任务 -> [{}],本批次有[{}]条文档的id字段字节数超过最大值[{}],处理方式[{}],第一条的文档id为[{}]",dataWrapper.getIndexName(),longIdCount,INDEX_DOC_ID_BYTES_MAX,longIdOption.getStrategy(),firstLongId);
+        }
+    }
+
+    /**
+     * 计算字符串utf-8编码后的字节数,长度足够短时不需要逐字符计算
+     * @param str 字符串
+     * @return 字节数
+     */
+    private static int utf8Length(String str){
+        int length = str.length();
+        //utf-16的每个字符编码后最多3个字节
+        if(length * 3 <= INDEX_DOC_ID_BYTES_MAX){
+            return length;
+        }
+        int byteLength = 0;
+        for (int i = 0; i < length; i++) {
+            char c = str.charAt(i);
+            if(c < 0x80){
+                byteLength++;
+            }else if(c < 0x800){
+                byteLength += 2;
+            }else if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(str.charAt(i + 1))){
+                byteLength += 4;
+                i++;
+            }else {
+                byteLength += 3;
+            }
+        }
+        return byteLength;
+    }
+
+    /**
+     * 在文档数据中添加保存原ID的字段
+     * @param source 文档数据
+     * @param sourceType 文档数据的格式
+     * @param field 字段名,为空时不添加
+     * @param docId 原ID
+     * @return 添加字段后的文档数据,字段已存在时覆盖
+     */
+    private BytesReference appendIdField(BytesReference source, XContentType sourceType, String field, String docId) throws IOException {
+        if(source == null || field == null || field.isEmpty()){
+            return source;
+        }
+        if(sourceType != XContentType.JSON || hasTopLevelField(source, field)){
+            //二进制格式无法直接拼接;字段已存在时直接拼接会产生重复字段,写入时被es拒绝;解析后覆盖再重新编码
+            Map<String, Object> map = XContentHelper.convertToMap(source, true, sourceType).v2();
+            map.put(field, docId);
+            XContentBuilder builder = XContentFactory.contentBuilder(sourceType);
+            return BytesReference.bytes(builder.map(map));
+        }
+        String json = source.utf8ToString().trim();
+        if(json.startsWith("{") == false){
+            return source;
+        }
+        String body = json.substring(1).trim();
+        String idField = JSON.toJSONString(field) + ":" + JSON.toJSONString(docId);
+        return new BytesArray("{" + idField + (body.startsWith("}") ? "" : ",") + body);
+    }
+
+    /**
+     * json文档的第一级是否包含该字段,只读取第一级的字段名
+     */
+    private static boolean hasTopLevelField(BytesReference source, String field) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(source.streamInput())) {
+            if(parser.nextToken() != JsonToken.START_OBJECT){
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                if(field.equals(parser.getCurrentName())){
+                    return true;
+                }
+                parser.nextToken();
+                parser.skipChildren();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 生成写入文件的一行数据
+     */
+    private String toSideFileLine(String indexName, String docId, String routing, BytesReference source, XContentType sourceType) throws IOException {
+        JSONObject line = new JSONObject(true);
+        line.put("index", indexName);
+        line.put("id", docId);
+        line.put("routing", routing);
+        String json = line.toJSONString();
+        if(source == null){
+            return json;
+        }
+        //_source 原样拼接,不重新序列化
+        String sourceJson = sourceType == XContentType.JSON ? source.utf8ToString() : XContentHelper.convertToJson(source, false, sourceType);
+        return json.substring(0, json.length() - 1) + ",\"source\":" + sourceJson + "}";
+    }
+
+    /**
+     * 追加写入文件,多个读取线程共用同一个文件
+     */
+    private synchronized void writeSideFile(String file, List<String> lines) throws IOException {
+        FileUtils.writeLines(new File(file), StandardCharsets.UTF_8.name(), lines, true);
+    }
+
+    /**
+     * id字段字节数超过上限的文档总数
+     */
+    public long getLongIdTotalCount() {
+        return this.longIdTotalCount.sum();
+    }
+
+    /**
+     * 获取一个数据包装类,配置了对象池时从池中获取
+     * @param indexName 索引名称
+     * @param size 文档数量
+     * @return 数据包装类
+     */
+    private ElasticsearchDataWrapper newDataWrapper(String indexName, int size){
+        DataWrapperPool pool = this.dataWrapperPool;
+        return pool != null ? pool.borrow(indexName, size) : new ElasticsearchDataWrapper(indexName, size);
+    }
+
+    /**
+     * 构建查询条件
+     * @param queryOption 查询配置
+     * @return 未配置查询条件时返回 matchAll
+     */
+    private QueryBuilder buildQuery(IndexQueryOption queryOption){
+        if(queryOption == null || queryOption.getQuery() == null || queryOption.getQuery().isEmpty()){
+            return QueryBuilders.matchAllQuery();
+        }
+        return QueryBuilders.wrapperQuery(queryOption.getQuery().toJSONString());
+    }
+
+    /**
+     * 设置_source过滤
+     * @param sourceBuilder 查询构建器
+     * @param queryOption 查询配置
+     */
+    private void applySourceFilter(SearchSourceBuilder sourceBuilder, IndexQueryOption queryOption){
+        if(queryOption != null && queryOption.hasSourceFilter()){
+            sourceBuilder.fetchSource(queryOption.getIncludes(), queryOption.getExcludes());
+        }
+    }
+
     /**
      * 深度分页查询
      * @param scrollId 深度分页查询所需的ID
@@ -185,20 +794,23 @@ public class ElasticsearchService {
     public ElasticsearchDataWrapper scrollSearch(RestHighLevelClient client,String indexName, String scrollId) throws IOException {
         // 游标查询的过期时间会在每次做查询的时候刷新，所以这个时间只需要足够处理当前批的结果就可以了,每批次scrollId最长保留1分钟
         Scroll scroll = new Scroll(TimeValue.timeValueSeconds(60L));
+        if(this.streamingSearch){
+            JSONObject body = new JSONObject(true);
+            body.put("scroll", scroll.keepAlive().getStringRep());
+            body.put("scroll_id", scrollId);
+            return this.streamSearch(client, indexName, "/_search/scroll", null, body.toJSONString(), 0);
+        }
         SearchScrollRequest scrollRequest = new SearchScrollRequest(scrollId);
         scrollRequest.scroll(scroll);
         //查询
         SearchResponse response = client.scroll(scrollRequest, RequestOptions.DEFAULT);
         SearchHit[] hits = response.getHits().getHits();
-        ElasticsearchDataWrapper dataWrapper = new ElasticsearchDataWrapper(indexName,hits.length);
+        ElasticsearchDataWrapper dataWrapper = this.newDataWrapper(indexName,hits.length);
         if(hits.length > 0){
             //记录下最后一组数据的排序数组
             dataWrapper.setScrollId(response.getScrollId());
         }
-        for (SearchHit hit : hits) {
-            ElasticsearchDataWrapper.DataEntity dataEntity = dataWrapper.new DataEntity(hit.getId(), hit.getSourceAsString());
-            dataWrapper.getEntityList().add(dataEntity);
-        }
+        this.addEntities(dataWrapper, hits);
         return dataWrapper;
     }
 
@@ -220,6 +832,105 @@ public class ElasticsearchService {
         return false;
     }
 
+    /**
+     * 提交服务端 reindex 任务,不等待任务完成
+     * 与客户端迁移一致: 不覆盖已存在数据(op_type=create),保留版本号时以 external 版本写入,冲突的文档跳过
+     * @param client 目标es客户端
+     * @param inputIndexName 数据源索引名称
+     * @param outputIndexName 目标索引名称
+     * @param queryOption 查询配置,为空时迁移所有
+     * @param remote 数据源的远程地址,为空时使用本地 reindex
+     * @param slices 切片数,reindex from remote 时忽略
+     * @param size 每批次的数量
+     * @param requestsPerSecond 每秒写入的文档数,为空时不限速
+     * @return 任务ID
+     */
+    public String submitReindex(RestHighLevelClient client, String inputIndexName, String outputIndexName, IndexQueryOption queryOption,
+                                ReindexRemoteOption remote, String slices, int size, Double requestsPerSecond) throws IOException {
+        JSONObject source = new JSONObject(true);
+        source.put("index", inputIndexName);
+        source.put("size", size);
+        if(queryOption != null && queryOption.getQuery() != null && queryOption.getQuery().isEmpty() == false){
+            source.put("query", queryOption.getQuery());
+        }
+        if(queryOption != null && queryOption.hasSourceFilter()){
+            JSONObject sourceFilter = new JSONObject(true);
+            sourceFilter.put("includes", queryOption.getIncludes());
+            sourceFilter.put("excludes", queryOption.getExcludes());
+            source.put("_source", sourceFilter);
+        }
+        if(remote != null){
+            JSONObject remoteInfo = new JSONObject(true);
+            remoteInfo.put("host", remote.getHost());
+            remoteInfo.put("username", remote.getUsername());
+            remoteInfo.put("password", remote.getPassword());
+            remoteInfo.put("socket_timeout", remote.getSocketTimeout());
+            remoteInfo.put("connect_timeout", remote.getConnectTimeout());
+            source.put("remote", remoteInfo);
+        }
+        JSONObject dest = new JSONObject(true);
+        dest.put("index", outputIndexName);
+        if(this.preserveVersion){
+            //以数据源版本号写入,目标中版本号更大或相同的文档不会被覆盖
+            dest.put("version_type", "external");
+        }else {
+            //不覆盖已存在数据
+            dest.put("op_type", "create");
+        }
+        JSONObject body = new JSONObject(true);
+        body.put("conflicts", "proceed");
+        body.put("source", source);
+        body.put("dest", dest);
+        Request request = new Request("POST", "/_reindex");
+        request.addParameter("wait_for_completion", "false");
+        request.addParameter("requests_per_second", formatRequestsPerSecond(requestsPerSecond));
+        if(remote == null){
+            request.addParameter("slices", slices);
+        }
+        request.setJsonEntity(body.toJSONString());
+        Response response = client.getLowLevelClient().performRequest(request);
+        return JSON.parseObject(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8)).getString("task");
+    }
+
+    /**
+     * 查询任务状态
+     * @param client es客户端
+     * @param taskId 任务ID
+     * @return 任务信息,completed 为是否完成,task.status 为进度,response 为完成后的结果,error 为异常信息
+     */
+    public JSONObject getTask(RestHighLevelClient client, String taskId) throws IOException {
+        Response response = client.getLowLevelClient().performRequest(new Request("GET", "/_tasks/" + taskId));
+        return JSON.parseObject(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 调整 reindex 任务的速率,切片任务会平均分配给每个子任务
+     * @param client es客户端
+     * @param taskId 任务ID
+     * @param requestsPerSecond 每秒写入的文档数,为空时不限速
+     */
+    public void rethrottleReindex(RestHighLevelClient client, String taskId, Double requestsPerSecond) throws IOException {
+        Request request = new Request("POST", "/_reindex/" + taskId + "/_rethrottle");
+        request.addParameter("requests_per_second", formatRequestsPerSecond(requestsPerSecond));
+        client.getLowLevelClient().performRequest(request);
+    }
+
+    /**
+     * 取消任务
+     * @param client es客户端
+     * @param taskId 任务ID
+     */
+    public void cancelTask(RestHighLevelClient client, String taskId) throws IOException {
+        client.getLowLevelClient().performRequest(new Request("POST", "/_tasks/" + taskId + "/_cancel"));
+    }
+
+    /**
+     * 不限速时为 -1
+     */
+    private static String formatRequestsPerSecond(Double requestsPerSecond){
+        return requestsPerSecond != null && requestsPerSecond > 0 ? String.valueOf(requestsPerSecond.floatValue()) : "-1";
+    }
+
 
 
 
@@ -228,29 +939,115 @@ public class ElasticsearchService {
      * 批量保存
      * @param client 客户端
      * @param dataWrapper 数据
+     * @return 写入的文档数
      * @throws IOException
      */
-    public void bulkSave(RestHighLevelClient client, ElasticsearchDataWrapper dataWrapper) throws IOException {
-        List<ElasticsearchDataWrapper.DataEntity> entityList = dataWrapper.getEntityList();
+    public int bulkSave(RestHighLevelClient client, ElasticsearchDataWrapper dataWrapper) throws IOException {
+        return this.bulkSave(client, dataWrapper, (String[]) null);
+    }
+
+    /**
+     * 批量保存,每个文档可以写入不同的目标索引
+     * @param client 客户端
+     * @param dataWrapper 数据
+     * @param docIndices 与文档一一对应的目标索引名称,为空时写入索引任务的目标索引
+     * @return 写入的文档数
+     * @throws IOException
+     */
+    public int bulkSave(RestHighLevelClient client, ElasticsearchDataWrapper dataWrapper, String[] docIndices) throws IOException {
         //防止索引名称是否为自定义的输出索引与输入索引拼接而成,类似形式为 inputIndex -> outputIndex,下标为0的是输入索引，下标为1的是输出索引
         String[] split = dataWrapper.getIndexName().split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
         String outputIndexName = split.length > 1 ? split[1] : split[0];
+        return this.bulkSave(client, dataWrapper, outputIndexName, docIndices);
+    }
+
+    /**
+     * 批量保存到指定索引
+     * @param client 客户端
+     * @param dataWrapper 数据
+     * @param outputIndexName 目标索引名称
+     * @return 写入的文档数
+     * @throws IOException
+     */
+    public int bulkSave(RestHighLevelClient client, ElasticsearchDataWrapper dataWrapper, String outputIndexName) throws IOException {
+        return this.bulkSave(client, dataWrapper, outputIndexName, null);
+    }
+
+    /**
+     * 批量保存
+     * @return 写入的文档数,不包含没有_source和写入失败的文档,文档已存在(409)视为已写入
+     */
+    private int bulkSave(RestHighLevelClient client, ElasticsearchDataWrapper dataWrapper, String outputIndexName, String[] docIndices) throws IOException {
+        if(this.lowLevelBulk){
+            return this.lowLevelBulkWriter.bulk(client.getLowLevelClient(), dataWrapper, outputIndexName, docIndices, this.preserveVersion);
+        }
         //1、创建批请求
+        BatchTracer.Trace serializeTrace = BatchTracer.begin(BatchTracer.Stage.SERIALIZE);
         BulkRequest bulkRequest = new BulkRequest();
-        for (ElasticsearchDataWrapper.DataEntity dataEntity : entityList) {
-            //判断ID字段的字节数，es7.x以上,_id字段字节数不能超过521
-            int docIdByteLength = dataEntity.getDocId().getBytes(StandardCharsets.UTF_8).length;
-            if(docIdByteLength > INDEX_DOC_ID_BYTES_MAX){
-                log.warn("索引名称为[{}],文档id为[{}]的数据,id字段字节数为[{}],超过最大值[{}],在本次同步中忽略!",outputIndexName,dataEntity.getDocId(),docIdByteLength,INDEX_DOC_ID_BYTES_MAX);
+        int noSourceCount = 0;
+        for (int i = 0; i < dataWrapper.size(); i++) {
+            String docId = dataWrapper.getDocId(i);
+            int sourceLength = dataWrapper.getSourceLength(i);
+            if(sourceLength < 0){
+                //没有_source的文档无法迁移
+                noSourceCount++;
                 continue;
             }
-            IndexRequest indexRequest = new IndexRequest(outputIndexName);
-            indexRequest.id(dataEntity.getDocId());
-            indexRequest.source(dataEntity.getJsonObjectStr(), XContentType.JSON);
-            //不覆盖已存在数据
-            indexRequest.create(true);
+            IndexRequest indexRequest = new IndexRequest(docIndices != null ? docIndices[i] : outputIndexName);
+            indexRequest.id(docId);
+            //保留路由,否则指定了路由的文档(如父子文档)会写入错误的分片
+            indexRequest.routing(dataWrapper.getRouting(i));
+            if(dataWrapper.getSourceType() == XContentType.CBOR){
+                //高级客户端的bulk只支持 JSON 和 SMILE
+                indexRequest.source(XContentHelper.convertToJson(new BytesArray(dataWrapper.getSourceBuffer(), dataWrapper.getSourceOffset(i), sourceLength), false, XContentType.CBOR), XContentType.JSON);
+            }else {
+                //直接引用缓冲区中的数据,不再转换为字符串
+                indexRequest.source(dataWrapper.getSourceBuffer(), dataWrapper.getSourceOffset(i), sourceLength, dataWrapper.getSourceType());
+            }
+            long version = dataWrapper.getVersion(i);
+            if(this.preserveVersion && version >= 0){
+                //以数据源版本号写入,目标中版本号更大或相同的文档不会被覆盖
+                indexRequest.versionType(VersionType.EXTERNAL);
+                indexRequest.version(version);
+            }else{
+                //不覆盖已存在数据
+                indexRequest.create(true);
+            }
             bulkRequest.add(indexRequest);
         }
-        client.bulk(bulkRequest, RequestOptions.DEFAULT);
+        if(noSourceCount > 0){
+            log.warn("索引名称为[{}]的本批次数据中,有[{}]条文档没有_source,在本次同步中忽略!",outputIndexName,noSourceCount);
+        }
+        serializeTrace.finish(outputIndexName, null, null, bulkRequest.numberOfActions(), bulkRequest.estimatedSizeInBytes());
+        if(bulkRequest.numberOfActions() == 0){
+            return 0;
+        }
+        int actions = bulkRequest.numberOfActions();
+        long byteSize = bulkRequest.estimatedSizeInBytes();
+        BatchTracer.Trace bulkTrace = BatchTracer.begin(BatchTracer.Stage.BULK);
+        BulkResponse bulkResponse;
+        try {
+            bulkResponse = client.bulk(bulkRequest, RequestOptions.DEFAULT);
+        }finally {
+            //请求失败也记录耗时,便于定位重试前的慢请求
+            bulkTrace.finish(outputIndexName, null, null, actions, byteSize);
+        }
+        if(bulkResponse.hasFailures() == false){
+            return actions;
+        }
+        int failedCount = 0;
+        String firstError = null;
+        for (BulkItemResponse item : bulkResponse.getItems()) {
+            //文档已存在视为已写入
+            if(item.isFailed() && item.status() != RestStatus.CONFLICT){
+                if(failedCount++ == 0){
+                    firstError = "[" + item.status().getStatus() + "] " + item.getFailureMessage();
+                }
+            }
+        }
+        if(failedCount > 0){
+            log.warn("索引名称为[{}]的本批次数据中,有[{}]条文档写入失败,在本次同步中忽略! 第一条错误:{}",outputIndexName,failedCount,firstError);
+        }
+        return actions - failedCount;
     }
 }
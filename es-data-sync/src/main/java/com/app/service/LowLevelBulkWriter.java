@@ -0,0 +1,318 @@
+package com.app.service;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.app.core.BatchTracer;
+import com.app.model.ElasticsearchDataWrapper;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName LowLevelBulkWriter
+ * @Description 使用低级客户端批量写入
+ * 请求体直接由数据包装类中的文档ID和_source字节拼接为 NDJSON,不经过 IndexRequest 的转换,
+ * 响应只返回错误信息(filter_path),没有错误时不解析响应
+ * _source 为 SMILE 格式时请求体也使用 SMILE,每个文档之间以 0xFF 分隔;bulk 不支持 CBOR,CBOR 格式的_source转换为 JSON 后写入
+ * @Date 2026/10/19 14:58
+ * @Version 1.0
+ **/
+@Slf4j
+public class LowLevelBulkWriter {
+
+    private static final ContentType NDJSON = ContentType.create("application/x-ndjson", StandardCharsets.UTF_8);
+
+    private static final ContentType SMILE = ContentType.create(XContentType.SMILE.mediaTypeWithoutParameters());
+
+    /**
+     * SMILE 格式请求体中文档之间的分隔符
+     */
+    private static final int SMILE_SEPARATOR = 0xFF;
+
+    private static final SmileFactory SMILE_FACTORY = new SmileFactory();
+
+    static {
+        //与es的SMILE编码设置一致
+        SMILE_FACTORY.configure(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT, false);
+    }
+
+    /**
+     * 请求体为 SMILE 时响应仍使用 JSON,便于判断是否有错误
+     */
+    private static final RequestOptions ACCEPT_JSON = RequestOptions.DEFAULT.toBuilder().addHeader("Accept", XContentType.JSON.mediaTypeWithoutParameters()).build();
+
+    /**
+     * 只返回是否有错误、每个文档的状态和错误信息
+     */
+    private static final String FILTER_PATH = "errors,items.*.error.type,items.*.error.reason,items.*.status";
+
+    /**
+     * 没有错误时的响应前缀
+     */
+    private static final byte[] NO_ERRORS_PREFIX = "{\"errors\":false".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 每个文档的 action 行预估字节数,用于初始化缓冲区大小
+     */
+    private static final int ESTIMATED_ACTION_BYTES = 96;
+
+    /**
+     * 文档已存在时的状态码,create 方式或 external 版本号不大于目标时返回,视为成功
+     */
+    private static final int STATUS_CONFLICT = 409;
+
+    /**
+     * 写入请求被拒绝时的状态码
+     */
+    private static final int STATUS_TOO_MANY_REQUESTS = 429;
+
+    /**
+     * 批量写入
+     * @param client 低级客户端
+     * @param dataWrapper 数据
+     * @param outputIndexName 目标索引名称
+     * @param preserveVersion 是否以 external 版本写入
+     * @return 写入的文档数,不包含没有_source和写入失败的文档
+     * @throws IOException 请求失败,或有文档因集群繁忙(429)或服务端错误(5xx)写入失败,需要重试
+     */
+    public int bulk(RestClient client, ElasticsearchDataWrapper dataWrapper, String outputIndexName, boolean preserveVersion) throws IOException {
+        return this.bulk(client, dataWrapper, outputIndexName, null, preserveVersion);
+    }
+
+    /**
+     * 批量写入,每个文档可以写入不同的目标索引
+     * @param client 低级客户端
+     * @param dataWrapper 数据
+     * @param outputIndexName 目标索引名称,用于日志
+     * @param docIndices 与文档一一对应的目标索引名称,为空时全部写入 outputIndexName
+     * @param preserveVersion 是否以 external 版本写入
+     * @return 写入的文档数,不包含没有_source和写入失败的文档
+     * @throws IOException 请求失败,或有文档因集群繁忙(429)或服务端错误(5xx)写入失败,需要重试
+     */
+    public int bulk(RestClient client, ElasticsearchDataWrapper dataWrapper, String outputIndexName, String[] docIndices, boolean preserveVersion) throws IOException {
+        BatchTracer.Trace serializeTrace = BatchTracer.begin(BatchTracer.Stage.SERIALIZE);
+        BulkBody body = newBody(dataWrapper);
+        int actions = this.writeBody(body, dataWrapper, outputIndexName, docIndices, preserveVersion);
+        serializeTrace.finish(outputIndexName, null, null, actions, body.size());
+        if(actions == 0){
+            return 0;
+        }
+        BatchTracer.Trace bulkTrace = BatchTracer.begin(BatchTracer.Stage.BULK);
+        Request request = new Request("POST", "/_bulk");
+        request.addParameter("filter_path", FILTER_PATH);
+        request.setEntity(new ByteArrayEntity(body.buffer(), 0, body.size(), dataWrapper.getSourceType() == XContentType.SMILE ? SMILE : NDJSON));
+        request.setOptions(ACCEPT_JSON);
+        byte[] responseBytes;
+        try {
+            Response response = client.performRequest(request);
+            responseBytes = EntityUtils.toByteArray(response.getEntity());
+        }finally {
+            //请求失败也记录耗时,便于定位重试前的慢请求
+            bulkTrace.finish(outputIndexName, null, null, actions, body.size());
+        }
+        if(startsWith(responseBytes, NO_ERRORS_PREFIX)){
+            return actions;
+        }
+        //映射错误等无法重试的文档不计入写入数
+        return actions - this.checkErrors(outputIndexName, responseBytes);
+    }
+
+    /**
+     * 生成批量写入的请求体,不发送请求
+     * @param dataWrapper 数据
+     * @param outputIndexName 目标索引名称
+     * @param preserveVersion 是否以 external 版本写入
+     * @return 请求体
+     */
+    public byte[] buildBody(ElasticsearchDataWrapper dataWrapper, String outputIndexName, boolean preserveVersion) throws IOException {
+        BulkBody body = newBody(dataWrapper);
+        this.writeBody(body, dataWrapper, outputIndexName, null, preserveVersion);
+        return Arrays.copyOf(body.buffer(), body.size());
+    }
+
+    private static BulkBody newBody(ElasticsearchDataWrapper dataWrapper){
+        return new BulkBody((int) Math.min(Integer.MAX_VALUE - 8, dataWrapper.getByteSize() + (long) dataWrapper.size() * ESTIMATED_ACTION_BYTES));
+    }
+
+    /**
+     * 依次写入每个文档的 action 和_source
+     * @return 写入的文档数
+     */
+    private int writeBody(BulkBody body, ElasticsearchDataWrapper dataWrapper, String outputIndexName, String[] docIndices, boolean preserveVersion) throws IOException {
+        XContentType sourceType = dataWrapper.getSourceType();
+        boolean smile = sourceType == XContentType.SMILE;
+        int noSourceCount = 0;
+        int actions = 0;
+        for (int i = 0; i < dataWrapper.size(); i++) {
+            int sourceLength = dataWrapper.getSourceLength(i);
+            if(sourceLength < 0){
+                //没有_source的文档无法迁移
+                noSourceCount++;
+                continue;
+            }
+            long version = dataWrapper.getVersion(i);
+            boolean external = preserveVersion && version >= 0;
+            String indexName = docIndices != null ? docIndices[i] : outputIndexName;
+            if(smile){
+                this.writeSmileAction(body, external, indexName, dataWrapper.getDocId(i), dataWrapper.getRouting(i), version);
+                body.write(dataWrapper.getSourceBuffer(), dataWrapper.getSourceOffset(i), sourceLength);
+                body.write(SMILE_SEPARATOR);
+            }else {
+                this.writeJsonAction(body, external, indexName, dataWrapper.getDocId(i), dataWrapper.getRouting(i), version);
+                if(sourceType == XContentType.JSON){
+                    body.writeSource(dataWrapper.getSourceBuffer(), dataWrapper.getSourceOffset(i), sourceLength);
+                }else {
+                    byte[] json = XContentHelper.convertToJson(new BytesArray(dataWrapper.getSourceBuffer(), dataWrapper.getSourceOffset(i), sourceLength), false, sourceType).getBytes(StandardCharsets.UTF_8);
+                    body.writeSource(json, 0, json.length);
+                }
+            }
+            actions++;
+        }
+        if(noSourceCount > 0){
+            log.warn("索引名称为[{}]的本批次数据中,有[{}]条文档没有_source,在本次同步中忽略!",outputIndexName,noSourceCount);
+        }
+        return actions;
+    }
+
+    /**
+     * 写入一行 JSON 格式的 action
+     * 不覆盖已存在数据时使用 create,保留版本号时使用 index + external 版本
+     */
+    private void writeJsonAction(BulkBody body, boolean external, String outputIndexName, String docId, String routing, long version) throws IOException {
+        StringBuilder action = new StringBuilder(ESTIMATED_ACTION_BYTES);
+        action.append(external ? "{\"index\":{\"_index\":" : "{\"create\":{\"_index\":").append(JSON.toJSONString(outputIndexName))
+                .append(",\"_id\":").append(JSON.toJSONString(docId));
+        if(routing != null){
+            //保留路由,否则指定了路由的文档(如父子文档)会写入错误的分片
+            action.append(",\"routing\":").append(JSON.toJSONString(routing));
+        }
+        if(external){
+            action.append(",\"version\":").append(version).append(",\"version_type\":\"external\"");
+        }
+        action.append("}}\n");
+        body.write(action.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 写入一个 SMILE 格式的 action,字段与 JSON 格式相同
+     */
+    private void writeSmileAction(BulkBody body, boolean external, String outputIndexName, String docId, String routing, long version) throws IOException {
+        try (JsonGenerator generator = SMILE_FACTORY.createGenerator(body)) {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart(external ? "index" : "create");
+            generator.writeStringField("_index", outputIndexName);
+            generator.writeStringField("_id", docId);
+            if(routing != null){
+                generator.writeStringField("routing", routing);
+            }
+            if(external){
+                generator.writeNumberField("version", version);
+                generator.writeStringField("version_type", "external");
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+        body.write(SMILE_SEPARATOR);
+    }
+
+    /**
+     * 解析有错误的响应,文档已存在时忽略,集群繁忙或服务端错误时抛出异常重试整个批次,其他错误打印日志后忽略
+     * @return 写入失败且忽略的文档数
+     */
+    private int checkErrors(String outputIndexName, byte[] responseBytes) throws IOException {
+        JSONObject result = JSON.parseObject(new String(responseBytes, StandardCharsets.UTF_8));
+        if(result == null || result.getBooleanValue("errors") == false){
+            return 0;
+        }
+        JSONArray items = result.getJSONArray("items");
+        int retryableCount = 0;
+        int failedCount = 0;
+        String firstError = null;
+        for (int i = 0; items != null && i < items.size(); i++) {
+            JSONObject item = items.getJSONObject(i);
+            for (String op : item.keySet()) {
+                JSONObject itemResult = item.getJSONObject(op);
+                int status = itemResult.getIntValue("status");
+                JSONObject error = itemResult.getJSONObject("error");
+                if(error == null || status == STATUS_CONFLICT){
+                    continue;
+                }
+                if(status == STATUS_TOO_MANY_REQUESTS || status >= 500){
+                    retryableCount++;
+                }else {
+                    failedCount++;
+                }
+                if(firstError == null){
+                    firstError = "[" + status + "] " + error.getString("type") + ": " + error.getString("reason");
+                }
+            }
+        }
+        if(retryableCount > 0){
+            //已写入的文档重试时返回409,不会重复写入
+            throw new IOException("索引名称为[" + outputIndexName + "]的本批次数据中,有[" + retryableCount + "]条文档写入被拒绝或服务端异常,第一条错误:" + firstError);
+        }
+        if(failedCount > 0){
+            log.warn("索引名称为[{}]的本批次数据中,有[{}]条文档写入失败,在本次同步中忽略! 第一条错误:{}",outputIndexName,failedCount,firstError);
+        }
+        return failedCount;
+    }
+
+    private static boolean startsWith(byte[] bytes, byte[] prefix){
+        if(bytes.length < prefix.length){
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if(bytes[i] != prefix[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 请求体缓冲区,直接使用内部数组作为请求体,不再复制
+     */
+    private static class BulkBody extends ByteArrayOutputStream {
+
+        BulkBody(int size) {
+            super(Math.max(size, 32));
+        }
+
+        /**
+         * 写入一个文档的_source并换行
+         * _source 中的换行符只可能是json格式化的空白(字符串中的换行已转义),替换为空格,保证每个文档占一行
+         */
+        void writeSource(byte[] source, int offset, int length){
+            int start = this.count;
+            this.write(source, offset, length);
+            for (int i = start; i < this.count; i++) {
+                if(this.buf[i] == '\n'){
+                    this.buf[i] = ' ';
+                }
+            }
+            this.write('\n');
+        }
+
+        byte[] buffer(){
+            return this.buf;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.app.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.RestClient;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.xcontent.XContentType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName StreamingSearchReader
+ * @Description 使用低级客户端查询并逐个token解析响应
+ * 不再构建 SearchResponse 和 SearchHit 对象,每个文档的_source直接引用响应字节中的片段,
+ * 只保留文档ID、路由、版本号、最后一个文档的排序值和 scrollId
+ * 响应格式支持 JSON、SMILE、CBOR,SMILE 的字段名会引用前面出现过的字段名,_source 不能直接截取,需要重新编码为独立的文档
+ * @Date 2026/10/19 15:00
+ * @Version 1.0
+ **/
+public class StreamingSearchReader {
+
+    /**
+     * 解析出的一个文档
+     */
+    @FunctionalInterface
+    public interface HitConsumer {
+
+        /**
+         * 处理一个文档
+         * @param docId 文档ID
+         * @param routing 文档路由,未指定路由时为空
+         * @param version 文档版本号,未获取时为 -1
+         * @param source 文档数据,引用响应字节中的片段,为空表示文档没有_source
+         */
+        void accept(String docId, String routing, long version, BytesReference source) throws IOException;
+    }
+
+    /**
+     * 一页查询结果的游标
+     */
+    public static class PageCursor {
+
+        private int hitCount;
+
+        private String scrollId;
+
+        private Object[] lastSortValues;
+
+        public int getHitCount() {
+            return hitCount;
+        }
+
+        public String getScrollId() {
+            return scrollId;
+        }
+
+        public Object[] getLastSortValues() {
+            return lastSortValues;
+        }
+    }
+
+    /**
+     * 响应的格式
+     */
+    private final XContentType responseType;
+
+    private final JsonFactory factory;
+
+    private final RequestOptions requestOptions;
+
+    /**
+     * 构造方法
+     * @param responseType 响应的格式,JSON、SMILE 或 CBOR
+     */
+    public StreamingSearchReader(XContentType responseType) {
+        this.responseType = responseType;
+        this.factory = newFactory(responseType);
+        this.requestOptions = RequestOptions.DEFAULT.toBuilder().addHeader("Accept", responseType.mediaTypeWithoutParameters()).build();
+    }
+
+    /**
+     * 文档数据(_source)的格式,与响应的格式相同
+     */
+    public XContentType getSourceType() {
+        return responseType;
+    }
+
+    /**
+     * 执行查询并解析响应
+     * @param client 低级客户端
+     * @param endpoint 请求路径,如 /index/_search
+     * @param scroll scroll 的保留时间,为空时不使用scroll
+     * @param body 请求体
+     * @param consumer 处理每个文档
+     * @return 查询结果的游标
+     */
+    public PageCursor search(RestClient client, String endpoint, String scroll, String body, HitConsumer consumer) throws IOException {
+        Request request = new Request("POST", endpoint);
+        if(scroll != null){
+            request.addParameter("scroll", scroll);
+        }
+        request.setJsonEntity(body);
+        request.setOptions(this.requestOptions);
+        Response response = client.performRequest(request);
+        byte[] bytes = EntityUtils.toByteArray(response.getEntity());
+        return this.parse(bytes, consumer);
+    }
+
+    /**
+     * 解析查询响应,只处理 _scroll_id 和 hits.hits,其他字段跳过
+     * @param bytes 响应字节
+     * @param consumer 处理每个文档
+     * @return 查询结果的游标
+     */
+    public PageCursor parse(byte[] bytes, HitConsumer consumer) throws IOException {
+        PageCursor cursor = new PageCursor();
+        try (JsonParser parser = this.factory.createParser(bytes)) {
+            expect(parser.nextToken(), JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME){
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if("_scroll_id".equals(name)){
+                    cursor.scrollId = parser.getValueAsString();
+                }else if("hits".equals(name) && token == JsonToken.START_OBJECT){
+                    this.parseHits(parser, bytes, cursor, consumer);
+                }else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return cursor;
+    }
+
+    /**
+     * 解析外层 hits 对象
+     */
+    private void parseHits(JsonParser parser, byte[] bytes, PageCursor cursor, HitConsumer consumer) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME){
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if("hits".equals(name) && token == JsonToken.START_ARRAY){
+                while (parser.nextToken() == JsonToken.START_OBJECT){
+                    this.parseHit(parser, bytes, cursor, consumer);
+                    cursor.hitCount++;
+                }
+            }else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * 解析一个文档,_source 只记录起止位置后跳过
+     */
+    private void parseHit(JsonParser parser, byte[] bytes, PageCursor cursor, HitConsumer consumer) throws IOException {
+        String docId = null;
+        String routing = null;
+        long version = -1L;
+        BytesReference source = null;
+        Object[] sortValues = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME){
+            String name = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (name){
+                case "_id":
+                    docId = parser.getValueAsString();
+                    break;
+                case "_routing":
+                    routing = parser.getValueAsString();
+                    break;
+                case "_version":
+                    version = parser.getValueAsLong(-1L);
+                    break;
+                case "_source":
+                    if(token == JsonToken.START_OBJECT && this.responseType == XContentType.SMILE){
+                        source = this.copySmileSource(parser);
+                    }else if(token == JsonToken.START_OBJECT){
+                        int start = (int) parser.getTokenLocation().getByteOffset();
+                        parser.skipChildren();
+                        int end = (int) parser.getCurrentLocation().getByteOffset();
+                        source = new BytesArray(bytes, start, end - start);
+                    }else {
+                        parser.skipChildren();
+                    }
+                    break;
+                case "sort":
+                    sortValues = readSortValues(parser);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        consumer.accept(docId, routing, version, source);
+        //只需要最后一个文档的排序值
+        cursor.lastSortValues = sortValues;
+    }
+
+    /**
+     * 将 SMILE 响应中的_source重新编码为独立的 SMILE 文档
+     */
+    private BytesReference copySmileSource(JsonParser parser) throws IOException {
+        BytesStreamOutput output = new BytesStreamOutput();
+        try (JsonGenerator generator = this.factory.createGenerator(output)) {
+            generator.copyCurrentStructure(parser);
+        }
+        return output.bytes();
+    }
+
+    private static JsonFactory newFactory(XContentType type){
+        switch (type){
+            case SMILE:
+                //与es的SMILE编码设置一致
+                SmileFactory smileFactory = new SmileFactory();
+                smileFactory.configure(SmileGenerator.Feature.ENCODE_BINARY_AS_7BIT, false);
+                return smileFactory;
+            case CBOR:
+                return new CBORFactory();
+            case JSON:
+                return new JsonFactory();
+            default:
+                throw new IllegalArgumentException("不支持的响应格式[" + type + "]");
+        }
+    }
+
+    /**
+     * 读取排序值数组,数值保持为 Long/Double 等类型,用于下一次 search_after
+     */
+    private static Object[] readSortValues(JsonParser parser) throws IOException {
+        if(parser.currentToken() != JsonToken.START_ARRAY){
+            parser.skipChildren();
+            return null;
+        }
+        List<Object> values = new ArrayList<>(2);
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY){
+            switch (token){
+                case VALUE_NUMBER_INT:
+                case VALUE_NUMBER_FLOAT:
+                    values.add(parser.getNumberValue());
+                    break;
+                case VALUE_STRING:
+                    values.add(parser.getText());
+                    break;
+                case VALUE_TRUE:
+                case VALUE_FALSE:
+                    values.add(parser.getBooleanValue());
+                    break;
+                case VALUE_NULL:
+                    values.add(null);
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        return values.toArray();
+    }
+
+    private static void expect(JsonToken actual, JsonToken expected) throws IOException {
+        if(actual != expected){
+            throw new IOException("查询响应格式错误,期望[" + expected + "],实际为[" + actual + "]");
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.app.task;
 
+import com.app.core.BatchTracer;
 import com.app.core.DataSyncProcessor;
 import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.SyncTarget;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Author miaoyoulin
@@ -29,21 +32,60 @@ public class DataQueueListener implements Callable<String> {
     @Override
     public String call() throws Exception {
         while (true){
+            if(this.config.isAborted()){
+                //丢弃队列中未写出的批次,归还到池中,唤醒阻塞在入队上的读取任务
+                this.discardQueued();
+                log.info("es data sync Aborted!");
+                break;
+            }
             try {
-                //最长阻塞时间根据初始化时的配置来，阻塞时候过后队列中还没数据，说明数据迁移任务已全部完成
+                //最长阻塞时间根据初始化时的配置来，阻塞时候过后队列中还没数据,且没有未完成的索引任务，说明数据迁移任务已全部完成
+                BatchTracer.Trace dequeueTrace = BatchTracer.begin(BatchTracer.Stage.DEQUEUE);
                 ElasticsearchDataWrapper dataWrapper = this.config.getBlockingDeque().poll(this.config.getDequeListenerTimeout(), this.config.getDequeListenerTimeoutUnit());
+                //等待超时也记录,说明这段时间没有读取到数据
+                dequeueTrace.finish(dataWrapper != null ? dataWrapper.getIndexName() : null, null, null, dataWrapper != null ? dataWrapper.size() : 0, dataWrapper != null ? dataWrapper.getByteSize() : 0L);
+                if(dataWrapper == null && (this.config.hasPendingIndexTasks() || this.config.getBlockingDeque().isEmpty() == false)){
+                    //还有初始化中或读取中的索引,或者读取任务在本次等待超时后放入了数据,继续等待
+                    continue;
+                }
                 if(dataWrapper == null){
                     //数据读取完成
                     log.info("es data sync Finish!");
                     break;
                 }
-                //开启一个线程执行output任务
-                DataWriteTask dataWriteTask = new DataWriteTask(config,dataWrapper);
-                this.config.getExecutorService().execute(dataWriteTask);
+                //每个目标集群开启一个线程执行output任务,各目标集群独立重试,全部写出完成后归还数据包装类
+                dataWrapper.getPendingWrites().set(this.config.getTargets().size());
+                for (SyncTarget target : this.config.getTargets()) {
+                    //写入中的批次数达到上限时在此等待,形成反压
+                    BatchTracer.Trace dispatchTrace = BatchTracer.begin(BatchTracer.Stage.DISPATCH);
+                    //提交写出任务后数据包装类可能已被归还,提前取出事件中使用的值
+                    String indexName = dataWrapper.getIndexName();
+                    int size = dataWrapper.size();
+                    long byteSize = dataWrapper.getByteSize();
+                    this.config.acquireWriter();
+                    target.acquire();
+                    DataWriteTask dataWriteTask = new DataWriteTask(config,target,dataWrapper);
+                    this.config.getExecutorService().execute(dataWriteTask);
+                    dispatchTrace.finish(indexName, null, target.getName(), size, byteSize);
+                }
             } catch (Exception e) {
                 log.error("数据同步队列读取数据异常:" + e.getMessage(),e);
             }
         }
         return "OK";
     }
+
+    /**
+     * 丢弃队列中未写出的批次,与入队时任务终止的处理相同,归还数据包装类并减少未写出的批次数
+     */
+    private void discardQueued(){
+        ElasticsearchDataWrapper dataWrapper;
+        while ((dataWrapper = this.config.getBlockingDeque().poll()) != null){
+            AtomicInteger pendingBatches = dataWrapper.getPendingBatches();
+            this.config.getDataWrapperPool().release(dataWrapper);
+            if(pendingBatches != null){
+                pendingBatches.decrementAndGet();
+            }
+        }
+    }
 }
@@ -1,11 +1,14 @@
 package com.app.task;
 
+import com.app.core.BatchTracer;
 import com.app.core.DataSyncProcessor;
-import com.app.model.ConstantModel;
 import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.SyncTarget;
 import lombok.extern.slf4j.Slf4j;
 
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Author miaoyoulin
@@ -21,14 +24,14 @@ public class DataWriteTask implements Runnable{
     private DataSyncProcessor.DataSyncConfig config;
 
     /**
-     * es数据包装类
+     * 目标集群
      */
-    private ElasticsearchDataWrapper dataWrapper;
+    private SyncTarget target;
 
     /**
-     * 输出索引名称
+     * es数据包装类
      */
-    private String outputIndexName;
+    private ElasticsearchDataWrapper dataWrapper;
 
     /**
      * 重试次数
@@ -39,38 +42,83 @@ public class DataWriteTask implements Runnable{
     /**
      * 构造函数
      * @param config es数据同步相关配置
+     * @param target 目标集群
      * @param dataWrapper 数据包装类
      */
-    public DataWriteTask(DataSyncProcessor.DataSyncConfig config, ElasticsearchDataWrapper dataWrapper) {
+    public DataWriteTask(DataSyncProcessor.DataSyncConfig config, SyncTarget target, ElasticsearchDataWrapper dataWrapper) {
         this.config = config;
+        this.target = target;
         this.dataWrapper = dataWrapper;
-        String[] split = dataWrapper.getIndexName().split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
-        this.outputIndexName = split.length > 1 ? split[1] : split[0];
     }
 
     @Override
     public void run() {
+        try {
+            this.write();
+        }finally {
+            //释放目标集群的写入许可
+            this.target.release();
+            this.config.releaseWriter();
+            //所有目标集群都写出完成后,归还数据包装类
+            if(this.dataWrapper.getPendingWrites().decrementAndGet() == 0){
+                AtomicInteger pendingBatches = this.dataWrapper.getPendingBatches();
+                this.config.getDataWrapperPool().release(this.dataWrapper);
+                if(pendingBatches != null){
+                    pendingBatches.decrementAndGet();
+                }
+            }
+        }
+    }
 
+    /**
+     * 写出数据,失败时重试
+     */
+    private void write() {
+        //写入限速,重试时不重复计算
+        this.config.getThroughputLimiter().acquireWrite(dataWrapper.size(), dataWrapper.getByteSize());
+        //按文档字段路由时每个文档的目标索引,不路由时为空,同一批次的所有目标集群只计算一次
+        String[] docIndices = this.config.getTargetIndexRouter().route(dataWrapper);
         while (true){
             try {
+                //目标集群压力大时等待,避免请求被拒绝后进入重试
+                this.config.awaitTargetPressure(this.target.getName());
                 long start = System.currentTimeMillis();
-                this.config.getElasticsearchService().bulkSave(this.config.getOutputClient(),dataWrapper);
-                //写出数据统计
-                this.writeCount(outputIndexName,dataWrapper.getEntityList().size());
+                if(docIndices != null){
+                    //目标索引第一次出现时创建
+                    this.config.getTargetIndexRouter().createTargetIndices(this.target, dataWrapper, docIndices);
+                }
+                int written = this.config.getElasticsearchService().bulkSave(this.target.getClient(),dataWrapper,docIndices);
+                //写出数据统计,只统计实际写入的文档,没有_source和写入失败的文档不计入
+                this.writeCount(written);
                 long end = System.currentTimeMillis();
-                log.info("索引同步任务 -> [{}], 本批次写出的数据量 -> [{}],重试次数[{}]次, 耗时[{}ms],[{}s]",dataWrapper.getIndexName(),dataWrapper.getEntityList().size(),this.retriesNum, end - start, (end - start) / 1000);
+                //每批次的明细只在debug级别打印,进度汇总由 ProgressReporter 定时打印
+                if(log.isDebugEnabled()){
+                    log.debug("索引同步任务 -> [{}], 目标集群 -> [{}], 本批次写出的数据量 -> [{}],重试次数[{}]次, 耗时[{}ms],[{}s]",dataWrapper.getIndexName(),this.target.getName(),written,this.retriesNum, end - start, (end - start) / 1000);
+                }
                 //写出成功,退出循环
                 break;
             }catch (Exception e){
+                if(this.config.isAborted()){
+                    //任务已终止,不再重试,尽快结束写出线程
+                    log.warn("索引同步任务 -> [{}], 目标集群 -> [{}],任务已终止,放弃本批次写出:{}",dataWrapper.getIndexName(),this.target.getName(),e.getMessage());
+                    break;
+                }
+                BatchTracer.Trace trace = BatchTracer.begin(BatchTracer.Stage.RETRY);
                 //暂停10秒
                 try {
                     TimeUnit.SECONDS.sleep(10);
                 }catch (InterruptedException interruptedException){
                     log.error("索引数据写出任务暂停异常,msg:" + interruptedException.getMessage(),e);
                 }
+                trace.finish(dataWrapper.getIndexName(), null, this.target.getName(), dataWrapper.size(), dataWrapper.getByteSize());
                 this.retriesNum++;
-                log.error("索引同步任务 -> [" + dataWrapper.getIndexName() + "],准备第[" + this.retriesNum +"]次重试.write-Exception-ErrorMsg:" + e.getMessage(),e);
+                log.error("索引同步任务 -> [" + dataWrapper.getIndexName() + "], 目标集群 -> [" + this.target.getName() + "],准备第[" + this.retriesNum +"]次重试.write-Exception-ErrorMsg:" + e.getMessage(),e);
                 if(this.retriesNum > 10){
+                    //放弃该批次,分布式迁移时对应的工作单元不能标记为完成
+                    AtomicBoolean writeFailed = dataWrapper.getWriteFailed();
+                    if(writeFailed != null){
+                        writeFailed.set(true);
+                    }
                     break;
                 }
             }
@@ -79,16 +127,9 @@ public class DataWriteTask implements Runnable{
 
     /**
      * 写出数据统计
-     * @param indexName 索引名称
      * @param size 数据量
      */
-    private void writeCount(String indexName, Integer size){
-        Integer index = this.config.getTotalCountArrayIndexMap().get(indexName);
-        //计算步长,自定义输出索引，index步长为1，非自定义输出索引步长为2
-        Integer step = this.config.getIsCustomOutputIndex() ? 1 : 2;
-        //先记录已写出的数据
-        Integer sum = Integer.parseInt(this.config.getTotalCountArray()[index + step].toString());
-        sum += size;
-        this.config.getTotalCountArray()[index + step] = sum;
+    private void writeCount(Integer size){
+        this.config.getTotalCount(dataWrapper.getSourceName(), dataWrapper.getIndexName()).writeTotalCountIncr(this.target.getName(), size);
     }
 }
@@ -0,0 +1,206 @@
+package com.app.task;
+
+import com.app.model.DataWrapperPool;
+import com.app.model.ElasticsearchDataWrapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName PagePrefetcher
+ * @Description 分页预读,读取线程处理当前页(限速、放入队列)时,下一页的查询已经在执行
+ * 预读的页数由 depth 控制,超过时预读线程等待,为0时不预读,在调用线程中依次查询
+ * @param <C> 游标类型,scrollId 或排序值
+ * @Date 2026/10/19 14:52
+ * @Version 1.0
+ **/
+@Slf4j
+public class PagePrefetcher<C> {
+
+    /**
+     * 分页查询
+     */
+    @FunctionalInterface
+    public interface PageFetcher<C> {
+
+        /**
+         * 查询一页数据
+         * @param cursor 上一页的游标(scrollId 或排序值),为空时查询第一页
+         * @return 为空或没有数据时表示读取完成
+         */
+        ElasticsearchDataWrapper fetch(C cursor) throws Exception;
+    }
+
+    /**
+     * 读取完成的标记
+     */
+    private static final ElasticsearchDataWrapper END = new ElasticsearchDataWrapper("", 0);
+
+    private final PageFetcher<C> fetcher;
+
+    /**
+     * 获取一页数据的游标,为空时表示没有下一页
+     */
+    private final Function<ElasticsearchDataWrapper, C> cursorExtractor;
+
+    /**
+     * 停止预读时归还未取出的页
+     */
+    private final DataWrapperPool dataWrapperPool;
+
+    /**
+     * 预读的页,为空时不预读
+     */
+    private final BlockingQueue<ElasticsearchDataWrapper> prefetchedPages;
+
+    /**
+     * 不预读时的下一页游标
+     */
+    private C cursor;
+
+    private boolean finished;
+
+    /**
+     * 预读线程的异常,读取到结束标记后抛出
+     */
+    private volatile Exception failure;
+
+    private volatile boolean closed;
+
+    /**
+     * 构造方法
+     * @param executor 预读线程池,depth 大于0时使用
+     * @param depth 预读的页数
+     * @param fetcher 分页查询
+     * @param cursorExtractor 获取一页数据的游标
+     * @param dataWrapperPool 数据包装类对象池
+     */
+    public PagePrefetcher(ExecutorService executor, int depth, PageFetcher<C> fetcher, Function<ElasticsearchDataWrapper, C> cursorExtractor, DataWrapperPool dataWrapperPool) {
+        this.fetcher = fetcher;
+        this.cursorExtractor = cursorExtractor;
+        this.dataWrapperPool = dataWrapperPool;
+        if(depth > 0 && executor != null){
+            this.prefetchedPages = new ArrayBlockingQueue<>(depth);
+            executor.execute(this::prefetch);
+        }else {
+            this.prefetchedPages = null;
+        }
+    }
+
+    /**
+     * 获取下一页数据
+     * @return 为空时表示读取完成
+     */
+    public ElasticsearchDataWrapper next() throws Exception {
+        if(this.finished){
+            return null;
+        }
+        if(this.prefetchedPages == null){
+            ElasticsearchDataWrapper page = this.fetcher.fetch(this.cursor);
+            if(isLastPage(page)){
+                this.finished = true;
+                return null;
+            }
+            //放入队列后数据包装类可能已被写出并归还到池中,需要提前取出游标
+            this.cursor = this.cursorExtractor.apply(page);
+            this.finished = this.cursor == null;
+            return page;
+        }
+        ElasticsearchDataWrapper page = this.prefetchedPages.take();
+        if(page == END){
+            this.finished = true;
+            if(this.failure != null){
+                throw this.failure;
+            }
+            return null;
+        }
+        return page;
+    }
+
+    /**
+     * 停止预读,读取线程提前结束时调用,未取出的页归还到对象池
+     */
+    public void close(){
+        this.closed = true;
+        this.drain();
+    }
+
+    /**
+     * 归还预读队列中未取出的页
+     */
+    private void drain(){
+        if(this.prefetchedPages == null){
+            return;
+        }
+        ElasticsearchDataWrapper page;
+        while ((page = this.prefetchedPages.poll()) != null){
+            if(page != END){
+                this.release(page);
+            }
+        }
+    }
+
+    private void release(ElasticsearchDataWrapper page){
+        if(this.dataWrapperPool != null){
+            this.dataWrapperPool.release(page);
+        }
+    }
+
+    /**
+     * 预读线程,依次查询每一页并放入预读队列
+     */
+    private void prefetch(){
+        C nextCursor = null;
+        try {
+            while (this.closed == false){
+                ElasticsearchDataWrapper page = this.fetcher.fetch(nextCursor);
+                if(isLastPage(page)){
+                    break;
+                }
+                //放入预读队列后数据包装类可能已被写出并归还到池中,需要提前取出游标
+                nextCursor = this.cursorExtractor.apply(page);
+                if(this.offer(page) == false){
+                    //已停止预读,放不进队列的页直接归还
+                    this.release(page);
+                    break;
+                }
+                if(nextCursor == null){
+                    break;
+                }
+            }
+        }catch (Exception e){
+            this.failure = e;
+        }finally {
+            this.offer(END);
+            if(this.closed){
+                //停止预读与放入队列同时发生时,队列中可能还有未归还的页
+                this.drain();
+            }
+        }
+    }
+
+    /**
+     * 放入预读队列,队列已满时等待,停止预读后返回false
+     */
+    private boolean offer(ElasticsearchDataWrapper page){
+        try {
+            while (this.closed == false){
+                if(this.prefetchedPages.offer(page, 1L, TimeUnit.SECONDS)){
+                    return true;
+                }
+            }
+        }catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private static boolean isLastPage(ElasticsearchDataWrapper page){
+        return page == null || page.isEmpty();
+    }
+}
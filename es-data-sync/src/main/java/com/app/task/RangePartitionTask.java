@@ -0,0 +1,234 @@
+package com.app.task;
+
+import com.app.core.BatchTracer;
+import com.app.core.DataSyncProcessor;
+import com.app.model.ConstantModel;
+import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.IndexQueryOption;
+import com.app.model.RangePartition;
+import com.app.model.SyncSource;
+import com.app.service.DocIdTooLongException;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName RangePartitionTask
+ * @Description 按字段范围分区并发读取,用于分片数少的大索引
+ * 启动时根据字段值的百分位把索引切分为多个范围,每个范围使用各自的 searchAfter 游标由一个线程读取,
+ * 线程读完自己的范围且没有待读取的范围时,拆分剩余范围最大的分区继续读取,避免个别分区拖慢整个索引
+ * @Date 2026/10/19 14:56
+ * @Version 1.0
+ **/
+@Slf4j
+public class RangePartitionTask implements Runnable {
+
+    /**
+     * 整数类型(含日期)的字段,拆分点取整
+     */
+    private static final Set<String> INTEGRAL_TYPES = new HashSet<>(Arrays.asList("long", "integer", "short", "byte", "date"));
+
+    /**
+     * 浮点类型的字段
+     */
+    private static final Set<String> FLOATING_TYPES = new HashSet<>(Arrays.asList("double", "float", "half_float", "scaled_float"));
+
+    private DataSyncProcessor.DataSyncConfig config;
+
+    /**
+     * 数据源
+     */
+    private SyncSource source;
+
+    /**
+     * 索引名称
+     */
+    private String indexName;
+
+    /**
+     * 待读取的分区
+     */
+    private final Queue<RangePartition> pendingPartitions = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 读取中的分区
+     */
+    private final Set<RangePartition> activePartitions = ConcurrentHashMap.newKeySet();
+
+    private String field;
+
+    private boolean integral;
+
+    private boolean dateField;
+
+    /**
+     * 构造方法
+     * @param config es数据同步相关配置
+     * @param source 数据源
+     * @param indexName 同步的索引名称
+     */
+    public RangePartitionTask(DataSyncProcessor.DataSyncConfig config, SyncSource source, String indexName){
+        this.config = config;
+        this.source = source;
+        this.indexName = indexName;
+    }
+
+    @Override
+    public void run() {
+        String inputIndexName = indexName.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS)[0];
+        IndexQueryOption queryOption = this.config.getSyncOptions().getIndexQueryOption(inputIndexName);
+        this.field = queryOption.getPartitionField();
+        try {
+            String fieldType = this.config.getElasticsearchService().getFieldType(this.source.getClient(), inputIndexName, field);
+            if(INTEGRAL_TYPES.contains(fieldType) == false && FLOATING_TYPES.contains(fieldType) == false){
+                //不支持的字段类型,使用scroll方式读取
+                log.warn("索引同步任务 -> [{}],分区字段[{}]的类型为[{}],不是数值或日期类型,使用scroll方式读取",indexName,field,fieldType);
+                new ScrollSearchTask(this.config, this.source, this.indexName).run();
+                return;
+            }
+            this.integral = INTEGRAL_TYPES.contains(fieldType);
+            this.dateField = "date".equals(fieldType);
+            double[] bounds = this.config.getElasticsearchService().partitionBounds(this.source.getClient(), inputIndexName, field, queryOption.getPartitions(), integral, queryOption);
+            for (int i = 0; i + 1 < bounds.length; i++) {
+                this.pendingPartitions.add(new RangePartition(bounds[i], bounds[i + 1], i + 2 == bounds.length));
+            }
+            if(bounds.length == 1){
+                //所有文档的字段值相同
+                this.pendingPartitions.add(new RangePartition(bounds[0], bounds[0], true));
+            }
+            //没有该字段的文档单独读取
+            this.pendingPartitions.add(RangePartition.missingField());
+        }catch (Exception e){
+            log.error("索引同步任务 -> [" + indexName + "],计算分区异常." + e.getMessage(),e);
+            this.config.abort("索引[" + indexName + "]计算分区失败: " + e.getMessage());
+            return;
+        }
+        log.info("索引同步任务 -> [{}],按字段[{}]分为[{}]个分区并发读取:{}",indexName,field,this.pendingPartitions.size(),this.pendingPartitions);
+        if(queryOption.getPartitionTiebreaker() == null || queryOption.getPartitionTiebreaker().isEmpty()){
+            log.warn("索引同步任务 -> [{}],未配置partitionTiebreaker,分区内按_id排序,会在数据源集群的堆内存中加载_id的fielddata,建议配置值唯一且有doc_values的字段",indexName);
+        }
+        int threadNum = Math.min(queryOption.getPartitions(), this.pendingPartitions.size());
+        ExecutorService partitionExecutor = Executors.newFixedThreadPool(threadNum, new ThreadFactoryBuilder().setNameFormat("es-dump-partition-%d").setDaemon(true).build());
+        for (int i = 0; i < threadNum; i++) {
+            partitionExecutor.execute(() -> this.readPartitions(queryOption));
+        }
+        partitionExecutor.shutdown();
+        try {
+            while (partitionExecutor.awaitTermination(1L, TimeUnit.MINUTES) == false){
+                log.debug("索引同步任务 -> [{}],读取中的分区:{}",indexName,this.activePartitions);
+            }
+        }catch (InterruptedException e){
+            partitionExecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        log.info("索引同步任务 -> [{}],读取完成! 读取的数据量 -> [{}]",indexName,this.config.getTotalCount(this.source.getName(), this.indexName).getReadTotalCount());
+    }
+
+    /**
+     * 读取线程,依次读取待读取的分区,没有待读取的分区时拆分读取中的分区
+     */
+    private void readPartitions(IndexQueryOption queryOption){
+        while (this.config.isAborted() == false){
+            RangePartition partition = this.pendingPartitions.poll();
+            if(partition == null){
+                partition = this.splitLargestPartition();
+                if(partition == null){
+                    return;
+                }
+            }
+            this.activePartitions.add(partition);
+            try {
+                this.readPartition(partition, queryOption);
+            }catch (DocIdTooLongException e){
+                this.config.abort(e.getMessage());
+            }catch (Exception e){
+                //分区剩余的数据无法读取,终止任务,避免少读数据的任务被报告为成功
+                log.error("索引同步任务 -> [" + indexName + "],分区" + partition + "重试次数用完,终止迁移任务." + e.getMessage(),e);
+                this.config.abort("索引[" + indexName + "]分区" + partition + "读取失败: " + e.getMessage());
+            }finally {
+                this.activePartitions.remove(partition);
+            }
+        }
+    }
+
+    /**
+     * 读取一个分区,查询时在分区上加锁,拆分只会发生在两次查询之间
+     */
+    private void readPartition(RangePartition partition, IndexQueryOption queryOption) throws Exception {
+        int exceptionCount = 10;
+        while (this.config.isAborted() == false){
+            ElasticsearchDataWrapper dataWrapper;
+            try {
+                //数据源集群压力大时等待
+                this.config.awaitSourcePressure(this.source.getName());
+                synchronized (partition){
+                    BatchTracer.Trace trace = BatchTracer.begin(BatchTracer.Stage.READ);
+                    dataWrapper = this.config.getElasticsearchService().searchRange(this.source.getClient(), this.indexName, this.field, this.dateField, partition, this.config.getSingleTransferSize(), queryOption);
+                    trace.finish(this.indexName, partition.toString(), null, dataWrapper.size(), dataWrapper.getByteSize());
+                    if(dataWrapper.isEmpty()){
+                        partition.setFinished(true);
+                        return;
+                    }
+                    //放入队列后数据包装类可能已被写出并归还到池中,需要提前取出后续使用的值
+                    partition.setSearchAfter(dataWrapper.getSortValues());
+                }
+            }catch (DocIdTooLongException e){
+                throw e;
+            }catch (Exception e){
+                log.error("索引同步任务 -> [" + indexName + "],分区" + partition + "读取异常." + e.getMessage(),e);
+                if(--exceptionCount <= 0){
+                    throw e;
+                }
+                continue;
+            }
+            int size = dataWrapper.size();
+            //读取限速,超出限速时在此等待,降低数据源集群的压力
+            this.config.getThroughputLimiter().acquireRead(size, dataWrapper.getByteSize());
+            //存放进入队列中
+            dataWrapper.setSourceName(this.source.getName());
+            if(this.config.enqueue(dataWrapper, partition.toString()) == false){
+                //任务已终止
+                return;
+            }
+            //记录查询出的数据量
+            this.config.getTotalCount(this.source.getName(), this.indexName).readTotalIncr(size);
+            log.debug("索引同步任务 -> [{}],分区{},本批次读取的数据量 -> [{}]",indexName,partition,size);
+        }
+    }
+
+    /**
+     * 拆分剩余范围最大的读取中的分区
+     * @return 拆分出的新分区,没有可拆分的分区时返回null
+     */
+    private RangePartition splitLargestPartition(){
+        //读取中的分区的剩余范围随时在变化,先记录下来再排序
+        Map<RangePartition, Double> remainingWidths = new HashMap<>();
+        for (RangePartition partition : this.activePartitions) {
+            remainingWidths.put(partition, partition.remainingWidth());
+        }
+        List<RangePartition> candidates = new ArrayList<>(remainingWidths.keySet());
+        candidates.sort((a, b) -> Double.compare(remainingWidths.get(b), remainingWidths.get(a)));
+        for (RangePartition candidate : candidates) {
+            RangePartition partition = candidate.split(this.integral);
+            if(partition != null){
+                log.info("索引同步任务 -> [{}],拆分读取中的分区,剩余范围{},新分区{}",indexName,candidate,partition);
+                return partition;
+            }
+        }
+        return null;
+    }
+}
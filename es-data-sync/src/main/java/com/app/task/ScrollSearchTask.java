@@ -1,11 +1,18 @@
 package com.app.task;
 
+import com.app.core.BatchTracer;
 import com.app.core.DataSyncProcessor;
 import com.app.model.ConstantModel;
 import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.SyncSource;
+import com.app.service.DocIdTooLongException;
 import lombok.extern.slf4j.Slf4j;
+import org.elasticsearch.search.slice.SliceBuilder;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Author miaoyoulin
@@ -21,6 +28,11 @@ public class ScrollSearchTask implements Runnable{
 
     private DataSyncProcessor.DataSyncConfig config;
 
+    /**
+     * 数据源
+     */
+    private SyncSource source;
+
     /**
      * 索引名称
      */
@@ -31,16 +43,70 @@ public class ScrollSearchTask implements Runnable{
      */
     private  Integer exceptionCount = 10;
 
+    /**
+     * 切片,为空时不切片
+     */
+    private SliceBuilder slice;
+
+    /**
+     * 未写出完成的批次数,为空时不统计
+     */
+    private AtomicInteger pendingBatches;
+
+    /**
+     * 是否有批次写出失败,为空时不统计
+     */
+    private AtomicBoolean writeFailed;
+
+    /**
+     * 是否停止读取
+     */
+    private volatile boolean stopped;
+
+    /**
+     * 读取是否失败(异常或重试次数用完)
+     */
+    private volatile boolean failed;
+
     /**
      * 构造方法
      * @param config
+     * @param source 数据源
      * @param indexName
      */
-    public ScrollSearchTask(DataSyncProcessor.DataSyncConfig config, String indexName){
+    public ScrollSearchTask(DataSyncProcessor.DataSyncConfig config, SyncSource source, String indexName){
         this.config = config;
+        this.source = source;
         this.indexName = indexName;
     }
 
+    /**
+     * 切片读取的构造方法
+     * @param config
+     * @param source 数据源
+     * @param indexName
+     * @param slice 切片
+     * @param pendingBatches 未写出完成的批次数,每放入队列一批加1,所有目标集群写出完成后减1
+     * @param writeFailed 是否有批次写出失败,重试次数用尽时置为true
+     */
+    public ScrollSearchTask(DataSyncProcessor.DataSyncConfig config, SyncSource source, String indexName, SliceBuilder slice, AtomicInteger pendingBatches, AtomicBoolean writeFailed){
+        this(config, source, indexName);
+        this.slice = slice;
+        this.pendingBatches = pendingBatches;
+        this.writeFailed = writeFailed;
+    }
+
+    /**
+     * 停止读取,当前批次放入队列后结束
+     */
+    public void stop(){
+        this.stopped = true;
+    }
+
+    public boolean isFailed() {
+        return failed;
+    }
+
 
 
     @Override
@@ -48,45 +114,114 @@ public class ScrollSearchTask implements Runnable{
         String[] split = indexName.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
         String inputIndexName = split[0];
         Set<String> scrollIds = new HashSet<>(1000);
+        //下一页的查询在预读线程中执行,与当前页的限速和放入队列同时进行
+        PagePrefetcher<String> prefetcher = new PagePrefetcher<>(this.config.getPrefetchExecutor(), this.config.getSyncOptions().getPrefetchDepth(),
+                cursor -> this.fetchPage(cursor, inputIndexName),
+                ElasticsearchDataWrapper::getScrollId, this.config.getDataWrapperPool());
         try {
             long start = System.currentTimeMillis();
-            ElasticsearchDataWrapper dataWrapper = this.config.getElasticsearchService().scrollBefore(this.config.getInputClient(), this.indexName, this.config.getSingleTransferSize());
-            while (dataWrapper.getScrollId() !=null && dataWrapper.getEntityList().isEmpty() == false){
-                try {
-                    //存放进入队列中
-                    this.config.getBlockingDeque().put(dataWrapper);
-                    //记录查询出的数据量
-                    this.readCount(inputIndexName, dataWrapper.getEntityList().size());
-                    long end = System.currentTimeMillis();
-                    log.info("索引同步任务 -> [{}],本批次读取的数据量 -> [{}], 耗时[{}ms], [{}s]",this.indexName,dataWrapper.getEntityList().size(), end - start, (end - start) / 1000);
-                    //重新计时
-                    start = System.currentTimeMillis();
-                    //记录下旧的scrollId
-                    scrollIds.add(dataWrapper.getScrollId());
-                    dataWrapper = this.config.getElasticsearchService().scrollSearch(this.config.getInputClient(), this.indexName, dataWrapper.getScrollId());
-                }catch (Exception e){
-                    log.error("索引同步任务 -> [" + indexName + "], 读取异常." + e.getMessage(),e);
-                    this.exceptionCount--;
-                    if(exceptionCount <= 0){
-                        break;
-                    }
+            ElasticsearchDataWrapper dataWrapper;
+            while (this.config.isAborted() == false && this.stopped == false && (dataWrapper = prefetcher.next()) != null){
+                //放入队列后数据包装类可能已被写出并归还到池中,需要提前取出后续使用的值
+                String scrollId = dataWrapper.getScrollId();
+                //记录下scrollId,读取结束或异常时清除
+                scrollIds.add(scrollId);
+                int size = dataWrapper.size();
+                //读取限速,超出限速时在此等待,降低数据源集群的压力
+                this.config.getThroughputLimiter().acquireRead(size, dataWrapper.getByteSize());
+                //存放进入队列中
+                dataWrapper.setSourceName(this.source.getName());
+                if(this.pendingBatches != null){
+                    this.pendingBatches.incrementAndGet();
+                    dataWrapper.setPendingBatches(this.pendingBatches);
+                    dataWrapper.setWriteFailed(this.writeFailed);
+                }
+                if(this.config.enqueue(dataWrapper, this.sliceName()) == false){
+                    //任务已终止
+                    break;
                 }
+                //记录查询出的数据量
+                this.readCount(size);
+                long end = System.currentTimeMillis();
+                if(log.isDebugEnabled()){
+                    log.debug("索引同步任务 -> [{}],本批次读取的数据量 -> [{}], 耗时[{}ms], [{}s]",this.indexName,size, end - start, (end - start) / 1000);
+                }
+                //重新计时
+                start = System.currentTimeMillis();
             }
-            //清空scrollId
-            this.config.getElasticsearchService().closeScroll(this.config.getInputClient(),new ArrayList<>(scrollIds));
-            log.info("任务[{}]清空的scrollId个数:[{}]",this.indexName,scrollIds.size());
+        }catch (DocIdTooLongException e){
+            this.failed = true;
+            this.config.abort(e.getMessage());
         }catch (Exception e){
+            this.failed = true;
             log.error("索引同步任务 -> [" + indexName + "],第一次执行时,读取异常." + e.getMessage(),e);
+        }finally {
+            prefetcher.close();
+            //清空scrollId,异常结束时也需要清除,否则数据源中的scroll上下文在保留时间到期前一直占用资源
+            this.closeScrolls(scrollIds);
+        }
+        log.info("索引同步任务 -> [{}],读取完成! 读取的数据量 -> [{}]",indexName,this.config.getTotalCount(this.source.getName(), this.indexName).getReadTotalCount());
+    }
+
+    private void closeScrolls(Set<String> scrollIds){
+        scrollIds.remove(null);
+        if(scrollIds.isEmpty()){
+            return;
+        }
+        try {
+            this.config.getElasticsearchService().closeScroll(this.source.getClient(),new ArrayList<>(scrollIds));
+            log.info("任务[{}]清空的scrollId个数:[{}]",this.indexName,scrollIds.size());
+        }catch (Exception e){
+            log.warn("任务[{}]清空scrollId异常:{}",this.indexName,e.getMessage());
+        }
+    }
+
+    /**
+     * 读取一页数据,第一页创建scroll,之后按scrollId读取
+     * @param cursor 上一页的scrollId,第一页为空
+     * @param inputIndexName 数据源索引名称
+     * @return 一页数据
+     */
+    private ElasticsearchDataWrapper fetchPage(String cursor, String inputIndexName) throws IOException {
+        BatchTracer.Trace trace = BatchTracer.begin(BatchTracer.Stage.READ);
+        ElasticsearchDataWrapper page = cursor == null ? this.config.getElasticsearchService().scrollBefore(this.source.getClient(), this.indexName, this.config.getSingleTransferSize(), this.config.getSyncOptions().getIndexQueryOption(inputIndexName), this.slice)
+                : this.scrollSearch(cursor);
+        if(page != null){
+            trace.finish(this.indexName, this.sliceName(), null, page.size(), page.getByteSize());
+        }
+        return page;
+    }
+
+    private String sliceName(){
+        return this.slice != null ? this.slice.getId() + "/" + this.slice.getMax() : null;
+    }
+
+    /**
+     * 读取下一页数据,异常时重试,异常次数用完后返回null
+     * @param scrollId 深度分页查询所需的ID
+     * @return 下一页数据
+     */
+    private ElasticsearchDataWrapper scrollSearch(String scrollId){
+        while (true){
+            try {
+                //数据源集群压力大时等待
+                this.config.awaitSourcePressure(this.source.getName());
+                return this.config.getElasticsearchService().scrollSearch(this.source.getClient(), this.indexName, scrollId);
+            }catch (DocIdTooLongException e){
+                //重试无法恢复,直接抛出
+                throw e;
+            }catch (Exception e){
+                log.error("索引同步任务 -> [" + indexName + "], 读取异常." + e.getMessage(),e);
+                this.exceptionCount--;
+                if(exceptionCount <= 0){
+                    this.failed = true;
+                    return null;
+                }
+            }
         }
-        log.info("索引同步任务 -> [{}],读取完成! 读取的数据量 -> [{}]",indexName,Integer.parseInt(this.config.getTotalCountArray()[this.config.getTotalCountArrayIndexMap().get(inputIndexName) + 1].toString()));
     }
 
-    private void readCount(String indexName, Integer size){
-        Integer index = this.config.getTotalCountArrayIndexMap().get(indexName);
-        //计算步长,读取数据，步长固定为1
-        //先记录已写出的数据
-        Integer sum = Integer.parseInt(this.config.getTotalCountArray()[index + 1].toString());
-        sum += size;
-        this.config.getTotalCountArray()[index + 1] = sum;
+    private void readCount(Integer size){
+        this.config.getTotalCount(this.source.getName(), this.indexName).readTotalIncr(size);
     }
 }
@@ -1,9 +1,13 @@
 package com.app.task;
 
+import com.app.core.BatchTracer;
 import com.app.core.DataSyncProcessor;
 import com.app.model.ConstantModel;
 import com.app.model.DataTotalCount;
 import com.app.model.ElasticsearchDataWrapper;
+import com.app.model.SyncSource;
+import com.app.model.IndexQueryOption;
+import com.app.service.DocIdTooLongException;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -20,6 +24,11 @@ public class SearchAfterTask implements Runnable {
 
     private DataSyncProcessor.DataSyncConfig config;
 
+    /**
+     * 数据源
+     */
+    private SyncSource source;
+
     /**
      * 索引名称
      */
@@ -33,9 +42,11 @@ public class SearchAfterTask implements Runnable {
     /**
      * 构造函数
      * @param config 数据同步相关配置
+     * @param source 数据源
      * @param indexName 同步的索引名称
      */
-    public SearchAfterTask(DataSyncProcessor.DataSyncConfig config, String indexName){
+    public SearchAfterTask(DataSyncProcessor.DataSyncConfig config, SyncSource source, String indexName){
+        this.source = source;
 
         this.config = config;
         this.indexName = indexName;
@@ -47,38 +58,66 @@ public class SearchAfterTask implements Runnable {
     public void run() {
         String[] split = indexName.split(ConstantModel.INDEX_NAME_SPLICE_SYMBOLS);
         String inputIndexName = split[0];
-        // 数据读取逻辑
-        Object[] objects = {"start"};
-        while (true){
-            try {
-                ElasticsearchDataWrapper dataWrapper = this.config.getElasticsearchService().searchAfter(this.config.getInputClient(), indexName, objects, this.config.getSingleTransferSize());
-                if(dataWrapper.getEntityList().size() <= 0){
+        IndexQueryOption queryOption = this.config.getSyncOptions().getIndexQueryOption(inputIndexName);
+        //下一页的查询在预读线程中执行,与当前页的限速和放入队列同时进行
+        PagePrefetcher<Object[]> prefetcher = new PagePrefetcher<>(this.config.getPrefetchExecutor(), this.config.getSyncOptions().getPrefetchDepth(),
+                cursor -> this.searchAfter(cursor == null ? new Object[]{"start"} : cursor, queryOption),
+                ElasticsearchDataWrapper::getSortValues, this.config.getDataWrapperPool());
+        try {
+            ElasticsearchDataWrapper dataWrapper;
+            while (this.config.isAborted() == false && (dataWrapper = prefetcher.next()) != null){
+                int size = dataWrapper.size();
+                //读取限速,超出限速时在此等待,降低数据源集群的压力
+                this.config.getThroughputLimiter().acquireRead(size, dataWrapper.getByteSize());
+                //存放进入队列中
+                dataWrapper.setSourceName(this.source.getName());
+                if(this.config.enqueue(dataWrapper, null) == false){
+                    //任务已终止
                     break;
                 }
-                //获取最后一组的排序规则
-                objects = dataWrapper.getSortValues();
-                //存放进入队列中
-                this.config.getBlockingDeque().put(dataWrapper);
                 //记录查询出的数据量
-                this.readCount(inputIndexName, dataWrapper.getEntityList().size());
-                log.info("索引同步任务 -> [{}],本批次读取的数据量 -> [{}]",indexName,dataWrapper.getEntityList().size());
+                this.readCount(size);
+                log.debug("索引同步任务 -> [{}],本批次读取的数据量 -> [{}]",indexName,size);
+            }
+        }catch (DocIdTooLongException e){
+            this.config.abort(e.getMessage());
+        }catch (Exception e){
+            log.error("索引同步任务 -> [" + indexName + "], 读取异常." + e.getMessage(),e);
+        }finally {
+            prefetcher.close();
+        }
+        log.info("索引同步任务 -> [{}],读取完成! 读取的数据量 -> [{}]",indexName,this.config.getTotalCount(this.source.getName(), this.indexName).getReadTotalCount());
+    }
+
+    /**
+     * 读取下一页数据,异常时重试,异常次数用完后返回null
+     * @param objects 上一页最后一条数据的排序值
+     * @param queryOption 查询配置
+     * @return 下一页数据
+     */
+    private ElasticsearchDataWrapper searchAfter(Object[] objects, IndexQueryOption queryOption) throws Exception {
+        while (true){
+            try {
+                //数据源集群压力大时等待
+                this.config.awaitSourcePressure(this.source.getName());
+                BatchTracer.Trace trace = BatchTracer.begin(BatchTracer.Stage.READ);
+                ElasticsearchDataWrapper page = this.config.getElasticsearchService().searchAfter(this.source.getClient(), indexName, objects, this.config.getSingleTransferSize(), queryOption);
+                trace.finish(indexName, null, null, page.size(), page.getByteSize());
+                return page;
+            }catch (DocIdTooLongException e){
+                //重试无法恢复,直接抛出
+                throw e;
             }catch (Exception e){
                 log.error("索引同步任务 -> [" + indexName + "], 读取异常." + e.getMessage(),e);
                 this.exceptionCount--;
                 if(exceptionCount <= 0){
-                    break;
+                    return null;
                 }
             }
         }
-        log.info("索引同步任务 -> [{}],读取完成! 读取的数据量 -> [{}]",indexName,Integer.parseInt(this.config.getTotalCountArray()[this.config.getTotalCountArrayIndexMap().get(inputIndexName) + 1].toString()));
     }
 
-    private void readCount(String indexName, Integer size){
-        Integer index = this.config.getTotalCountArrayIndexMap().get(indexName);
-        //计算步长,读取数据，步长固定为1
-        //先记录已写出的数据
-        Integer sum = Integer.parseInt(this.config.getTotalCountArray()[index + 1].toString());
-        sum += size;
-        this.config.getTotalCountArray()[index + 1] = sum;
+    private void readCount(Integer size){
+        this.config.getTotalCount(this.source.getName(), this.indexName).readTotalIncr(size);
     }
 }
@@ -0,0 +1,195 @@
+package com.app.service;
+
+import com.app.model.ElasticsearchDataWrapper;
+import org.apache.commons.io.IOUtils;
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.xcontent.DeprecationHandler;
+import org.elasticsearch.common.xcontent.NamedXContentRegistry;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.mapper.RoutingFieldMapper;
+import org.elasticsearch.search.SearchHit;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @Author miaoyoulin
+ * @ClassName StreamingSearchReaderTest
+ * @Description 流式解析与高级客户端解析同一份查询响应的结果对比,以及批量写入请求体由es解析后的结果对比
+ * SMILE 和 CBOR 响应由记录的 JSON 响应使用es的编码重新生成
+ * @Date 2026/10/19 15:50
+ * @Version 1.0
+ **/
+public class StreamingSearchReaderTest {
+
+    private static final String OUTPUT_INDEX = "orders-copy";
+
+    @Test
+    public void parseJsonResponse() throws IOException {
+        byte[] response = recordedResponse(XContentType.JSON);
+        List<Hit> hits = this.assertSameAsSearchResponse(response, XContentType.JSON);
+        //JSON 的_source 是响应中的原始片段,不重新编码
+        String json = new String(response, StandardCharsets.UTF_8);
+        for (Hit hit : hits) {
+            if(hit.source != null){
+                assertTrue(json.contains(hit.source.utf8ToString()));
+            }
+        }
+    }
+
+    @Test
+    public void parseSmileResponse() throws IOException {
+        this.assertSameAsSearchResponse(recordedResponse(XContentType.SMILE), XContentType.SMILE);
+    }
+
+    @Test
+    public void parseCborResponse() throws IOException {
+        this.assertSameAsSearchResponse(recordedResponse(XContentType.CBOR), XContentType.CBOR);
+    }
+
+    @Test
+    public void buildJsonBulkBody() throws IOException {
+        this.assertBulkBody(XContentType.JSON, XContentType.JSON);
+    }
+
+    @Test
+    public void buildSmileBulkBody() throws IOException {
+        this.assertBulkBody(XContentType.SMILE, XContentType.SMILE);
+    }
+
+    @Test
+    public void buildCborBulkBody() throws IOException {
+        //bulk 不支持 CBOR,写入前转换为 JSON
+        this.assertBulkBody(XContentType.CBOR, XContentType.JSON);
+    }
+
+    /**
+     * 流式解析的文档ID、路由、版本号、_source 和最后的排序值与高级客户端解析的结果一致
+     */
+    private List<Hit> assertSameAsSearchResponse(byte[] response, XContentType type) throws IOException {
+        List<Hit> hits = new ArrayList<>();
+        StreamingSearchReader.PageCursor cursor = new StreamingSearchReader(type).parse(response, (docId, routing, version, source) -> hits.add(new Hit(docId, routing, version, source)));
+        SearchResponse searchResponse = parseSearchResponse(response, type);
+        SearchHit[] expectedHits = searchResponse.getHits().getHits();
+        assertEquals(4, expectedHits.length);
+        assertEquals(expectedHits.length, cursor.getHitCount());
+        assertEquals(expectedHits.length, hits.size());
+        assertEquals(searchResponse.getScrollId(), cursor.getScrollId());
+        assertArrayEquals(expectedHits[expectedHits.length - 1].getSortValues(), cursor.getLastSortValues());
+        for (int i = 0; i < expectedHits.length; i++) {
+            SearchHit expected = expectedHits[i];
+            Hit actual = hits.get(i);
+            DocumentField routingField = expected.field(RoutingFieldMapper.NAME);
+            assertEquals(expected.getId(), actual.docId);
+            assertEquals(routingField != null ? routingField.getValue() : null, actual.routing);
+            assertEquals(expected.getVersion(), actual.version);
+            if(expected.hasSource()){
+                assertNotNull(actual.source);
+                assertEquals(expected.getSourceAsMap(), XContentHelper.convertToMap(actual.source, true, type).v2());
+            }else {
+                assertNull(actual.source);
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * 由流式解析的结果生成批量写入请求体,es解析请求体后每个文档的 action 和_source 与查询结果一致
+     */
+    private void assertBulkBody(XContentType responseType, XContentType bulkType) throws IOException {
+        byte[] response = recordedResponse(responseType);
+        ElasticsearchDataWrapper dataWrapper = new ElasticsearchDataWrapper("orders-2021", 2);
+        dataWrapper.setSourceType(responseType);
+        new StreamingSearchReader(responseType).parse(response, dataWrapper::add);
+        SearchHit[] expectedHits = parseSearchResponse(response, responseType).getHits().getHits();
+        LowLevelBulkWriter writer = new LowLevelBulkWriter();
+        for (boolean preserveVersion : new boolean[]{true, false}) {
+            byte[] body = writer.buildBody(dataWrapper, OUTPUT_INDEX, preserveVersion);
+            List<DocWriteRequest<?>> requests = new BulkRequest().add(new BytesArray(body), null, bulkType).requests();
+            int index = 0;
+            for (SearchHit expected : expectedHits) {
+                if(expected.hasSource() == false){
+                    //没有_source的文档不写入
+                    continue;
+                }
+                IndexRequest request = (IndexRequest) requests.get(index++);
+                DocumentField routingField = expected.field(RoutingFieldMapper.NAME);
+                assertEquals(OUTPUT_INDEX, request.index());
+                assertEquals(expected.getId(), request.id());
+                assertEquals(routingField != null ? routingField.getValue() : null, request.routing());
+                if(preserveVersion){
+                    assertEquals(DocWriteRequest.OpType.INDEX, request.opType());
+                    assertEquals(VersionType.EXTERNAL, request.versionType());
+                    assertEquals(expected.getVersion(), request.version());
+                }else {
+                    assertEquals(DocWriteRequest.OpType.CREATE, request.opType());
+                }
+                assertEquals(expected.getSourceAsMap(), request.sourceAsMap());
+            }
+            assertEquals(index, requests.size());
+        }
+    }
+
+    /**
+     * 读取记录的 JSON 响应,非 JSON 格式时使用es的编码转换
+     */
+    private static byte[] recordedResponse(XContentType type) throws IOException {
+        byte[] json;
+        try (InputStream input = StreamingSearchReaderTest.class.getResourceAsStream("/search-response.json")) {
+            json = IOUtils.toByteArray(input);
+        }
+        if(type == XContentType.JSON){
+            return json;
+        }
+        try (XContentParser parser = XContentType.JSON.xContent().createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, json);
+             XContentBuilder builder = XContentBuilder.builder(type.xContent())) {
+            parser.nextToken();
+            builder.copyCurrentStructure(parser);
+            return BytesReference.toBytes(BytesReference.bytes(builder));
+        }
+    }
+
+    private static SearchResponse parseSearchResponse(byte[] response, XContentType type) throws IOException {
+        try (XContentParser parser = type.xContent().createParser(NamedXContentRegistry.EMPTY, DeprecationHandler.THROW_UNSUPPORTED_OPERATION, response)) {
+            return SearchResponse.fromXContent(parser);
+        }
+    }
+
+    private static class Hit {
+
+        private final String docId;
+
+        private final String routing;
+
+        private final long version;
+
+        private final BytesReference source;
+
+        Hit(String docId, String routing, long version, BytesReference source) {
+            this.docId = docId;
+            this.routing = routing;
+            this.version = version;
+            this.source = source;
+        }
+    }
+}